@@ -17,6 +17,7 @@ public class CorsConfig {
                         .allowedOrigins("http://localhost:5173", "http://localhost:3000")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS", "HEAD")
                         .allowedHeaders("*")
+                        .exposedHeaders("ETag", "Content-Disposition")
                         .allowCredentials(true)
                         .maxAge(3600);
             }
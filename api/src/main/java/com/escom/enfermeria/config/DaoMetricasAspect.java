@@ -0,0 +1,89 @@
+package com.escom.enfermeria.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Mide cada método público de los @Repository de com.escom.enfermeria.dao:
+// - enfermeria.dao (timer con histograma y percentiles), etiquetas dao, method y outcome
+//   (SUCCESS o ERROR)
+// - enfermeria.dao.rows, filas devueltas por los métodos que regresan una colección
+// Se publican en /actuator/prometheus. Las llamadas internas de un DAO a sí mismo no pasan
+// por el proxy y no se miden por separado (quedan dentro del método que las llama).
+@Aspect
+@Component
+public class DaoMetricasAspect {
+    
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+    
+    private record Medidores(String dao, String metodo, Timer exito, DistributionSummary filas) {}
+    
+    private final MeterRegistry registry;
+    
+    // Los medidores se crean una vez por método; registrar en cada llamada busca en el registro
+    private final Map<Method, Medidores> medidores = new ConcurrentHashMap<>();
+    
+    public DaoMetricasAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Around("execution(public * com.escom.enfermeria.dao..*(..)) && @within(org.springframework.stereotype.Repository)")
+    public Object medir(ProceedingJoinPoint punto) throws Throwable {
+        Method metodo = ((MethodSignature) punto.getSignature()).getMethod();
+        Medidores m = medidores.computeIfAbsent(metodo, this::crearMedidores);
+        
+        long inicio = System.nanoTime();
+        Object resultado;
+        try {
+            resultado = punto.proceed();
+        } catch (Throwable e) {
+            // Los errores son raros: su timer se busca en el registro solo cuando ocurre uno
+            timer(m.dao(), m.metodo(), "ERROR").record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        m.exito().record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        
+        if (m.filas() != null && resultado instanceof Collection<?> filas) {
+            m.filas().record(filas.size());
+        }
+        return resultado;
+    }
+    
+    private Medidores crearMedidores(Method metodo) {
+        String dao = metodo.getDeclaringClass().getSimpleName();
+        String nombre = metodo.getName();
+        DistributionSummary filas = null;
+        if (Collection.class.isAssignableFrom(metodo.getReturnType())) {
+            filas = DistributionSummary.builder("enfermeria.dao.rows")
+                .description("Filas devueltas por consulta")
+                .tags("dao", dao, "method", nombre)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(10_000.0)
+                .register(registry);
+        }
+        return new Medidores(dao, nombre, timer(dao, nombre, "SUCCESS"), filas);
+    }
+    
+    private Timer timer(String dao, String metodo, String outcome) {
+        return Timer.builder("enfermeria.dao")
+            .description("Duración de los métodos de los DAOs")
+            .tags("dao", dao, "method", metodo, "outcome", outcome)
+            .publishPercentiles(PERCENTILES)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofSeconds(30))
+            .register(registry);
+    }
+}
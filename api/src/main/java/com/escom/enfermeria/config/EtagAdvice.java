@@ -0,0 +1,39 @@
+package com.escom.enfermeria.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+// Pone el ETag que calculó EtagInterceptor justo antes de escribir el cuerpo, cuando ya se
+// conoce el estado de la respuesta. Solo las respuestas 2xx lo llevan: un 404 o un 500
+// (incluidos los de los @ExceptionHandler) no debe responderse después con 304.
+@RestControllerAdvice
+public class EtagAdvice implements ResponseBodyAdvice<Object> {
+    
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+    
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+                && response instanceof ServletServerHttpResponse servletResponse
+                && servletRequest.getServletRequest().getAttribute(EtagInterceptor.ETAG) instanceof String etag
+                && HttpStatusCode.valueOf(servletResponse.getServletResponse().getStatus()).is2xxSuccessful()) {
+            response.getHeaders().set(HttpHeaders.ETAG, etag);
+            response.getHeaders().set(HttpHeaders.CACHE_CONTROL, EtagInterceptor.CACHE_CONTROL);
+        }
+        return body;
+    }
+}
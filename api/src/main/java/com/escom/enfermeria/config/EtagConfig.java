@@ -0,0 +1,22 @@
+package com.escom.enfermeria.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class EtagConfig implements WebMvcConfigurer {
+    
+    private final EtagInterceptor etagInterceptor;
+    
+    public EtagConfig(EtagInterceptor etagInterceptor) {
+        this.etagInterceptor = etagInterceptor;
+    }
+    
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(etagInterceptor)
+                .addPathPatterns(EtagInterceptor.RUTAS)
+                .excludePathPatterns(EtagInterceptor.EXCLUIDAS);
+    }
+}
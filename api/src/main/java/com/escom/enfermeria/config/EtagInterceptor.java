@@ -0,0 +1,110 @@
+package com.escom.enfermeria.config;
+
+import com.escom.enfermeria.services.VersionDatosService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// ETag débil para los GET de inventario, pacientes y recetas. Se calcula con los
+// contadores de VersionDatosService de las tablas que lee cada ruta, la URL completa
+// y el día actual (caducidades y edades cambian con la fecha). Si el cliente manda el
+// mismo ETag en If-None-Match se responde 304 antes de llegar al controlador, sin
+// consultar la base ni mapear filas. Si no, el ETag queda en la petición y EtagAdvice lo
+// pone en la respuesta solo si es 2xx: un 404 o un 500 no debe quedar en caché.
+@Component
+public class EtagInterceptor implements HandlerInterceptor {
+    
+    // Tablas de las que depende cada grupo de rutas (incluye las de los JOIN de nombres)
+    private static final Map<String, String[]> TABLAS_POR_RUTA = Map.of(
+        "/medicamentos", new String[]{"medicamento", "categoria"},
+        "/materiales", new String[]{"material", "categoria"},
+        "/categorias", new String[]{"categoria"},
+        "/pacientes", new String[]{"paciente"},
+        "/recetas", new String[]{"receta", "paciente", "medicamento"},
+        "/movimientos", new String[]{"movimiento", "medicamento", "material"}
+    );
+    
+    // Rutas para las que se registra el interceptor.
+    // Los contadores de VersionDatosService viven en memoria de esta instancia y solo
+    // cambian con las escrituras que pasan por sus DAOs. Un cambio hecho por otra instancia
+    // de la API o directamente con SQL no cambia el ETag, y el cliente sigue recibiendo 304
+    // con datos viejos hasta el día siguiente o hasta que esta instancia escriba en la tabla
+    // o se reinicie. Con más de una instancia no se deben registrar estas rutas.
+    static final List<String> RUTAS = TABLAS_POR_RUTA.keySet().stream()
+        .flatMap(ruta -> Stream.of(ruta, ruta + "/**"))
+        .toList();
+    
+    // /cambios devuelve una marca de tiempo nueva en cada llamada
+    static final List<String> EXCLUIDAS = List.of("/medicamentos/cambios", "/materiales/cambios");
+    
+    // Atributo de la petición con el ETag calculado, para EtagAdvice
+    static final String ETAG = EtagInterceptor.class.getName() + ".etag";
+    
+    static final String CACHE_CONTROL = CacheControl.noCache().cachePrivate().getHeaderValue();
+    
+    private static final Set<String> METODOS = Set.of("GET", "HEAD");
+    
+    private final VersionDatosService versionDatosService;
+    
+    public EtagInterceptor(VersionDatosService versionDatosService) {
+        this.versionDatosService = versionDatosService;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!METODOS.contains(request.getMethod())) {
+            return true;
+        }
+        
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        String[] tablas = tablasDe(ruta);
+        if (tablas == null) {
+            return true;
+        }
+        
+        String recurso = request.getQueryString() != null ? ruta + "?" + request.getQueryString() : ruta;
+        String etag = "W/\"" + versionDatosService.version(tablas) + "-"
+            + Integer.toHexString((recurso + "|" + LocalDate.now()).hashCode()) + "\"";
+        
+        if (coincideEtag(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        request.setAttribute(ETAG, etag);
+        return true;
+    }
+    
+    private static String[] tablasDe(String ruta) {
+        int fin = ruta.indexOf('/', 1);
+        return TABLAS_POR_RUTA.get(fin < 0 ? ruta : ruta.substring(0, fin));
+    }
+    
+    // Comparación débil: se ignora el prefijo W/ de ambos lados
+    private static boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String esperado = etag.substring(2);
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(esperado)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
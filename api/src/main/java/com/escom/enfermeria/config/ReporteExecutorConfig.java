@@ -0,0 +1,41 @@
+package com.escom.enfermeria.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ReporteExecutorConfig {
+    
+    // Pool acotado para generar reportes fuera de los hilos de Tomcat.
+    // Si la cola se llena, el executor rechaza la tarea y el controlador responde 503.
+    @Bean(name = "reporteExecutor")
+    public ThreadPoolTaskExecutor reporteExecutor(
+            @Value("${reportes.jobs.hilos:2}") int hilos,
+            @Value("${reportes.jobs.cola:20}") int cola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(cola);
+        executor.setThreadNamePrefix("reporte-job-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+    
+    // Pool acotado para las consultas independientes del reporte consolidado,
+    // separado del de trabajos para que un job no espere a otro job
+    @Bean(name = "consultaReporteExecutor")
+    public ThreadPoolTaskExecutor consultaReporteExecutor(
+            @Value("${reportes.consolidado.hilos:4}") int hilos) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(hilos * 10);
+        executor.setThreadNamePrefix("reporte-consulta-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,26 @@
+package com.escom.enfermeria.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class TokenConfig implements WebMvcConfigurer {
+    
+    private final TokenInterceptor tokenInterceptor;
+    
+    public TokenConfig(TokenInterceptor tokenInterceptor) {
+        this.tokenInterceptor = tokenInterceptor;
+    }
+    
+    // Antes que el resto de interceptores. El login se excluye: el cliente puede
+    // mandar todavía el token viejo de una sesión que ya expiró.
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(tokenInterceptor)
+                .addPathPatterns("/**")
+                .excludePathPatterns("/auth/login-dev")
+                .order(Ordered.HIGHEST_PRECEDENCE);
+    }
+}
@@ -0,0 +1,52 @@
+package com.escom.enfermeria.config;
+
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.models.Sesion;
+import com.escom.enfermeria.services.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+
+// Lee el token "Authorization: Bearer ..." y deja la sesión verificada en el atributo
+// SESION de la petición, para que los controladores la reciban con @RequestAttribute.
+// Una petición sin token sigue como anónima (cada endpoint decide si la exige); un token
+// inválido, expirado o revocado responde 401 para que el cliente vuelva a iniciar sesión.
+@Component
+public class TokenInterceptor implements HandlerInterceptor {
+    
+    public static final String SESION = "sesion";
+    private static final String PREFIJO = "Bearer ";
+    
+    private final TokenService tokenService;
+    private final ObjectMapper objectMapper;
+    
+    public TokenInterceptor(TokenService tokenService, ObjectMapper objectMapper) {
+        this.tokenService = tokenService;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        String autorizacion = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (autorizacion == null || !autorizacion.startsWith(PREFIJO)) {
+            return true;
+        }
+        
+        Sesion sesion = tokenService.verificar(autorizacion.substring(PREFIJO.length()).trim());
+        if (sesion == null) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), ErrorResponse.de("Sesión inválida o expirada"));
+            return false;
+        }
+        request.setAttribute(SESION, sesion);
+        return true;
+    }
+}
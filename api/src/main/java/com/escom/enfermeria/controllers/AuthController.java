@@ -1,8 +1,13 @@
 package com.escom.enfermeria.controllers;
 
+import com.escom.enfermeria.config.TokenInterceptor;
 import com.escom.enfermeria.dao.UsuarioDAO;
 import com.escom.enfermeria.models.LoginRequest;
+import com.escom.enfermeria.models.Sesion;
 import com.escom.enfermeria.models.Usuario;
+import com.escom.enfermeria.services.SaludService;
+import com.escom.enfermeria.services.TokenService;
+import com.escom.enfermeria.services.UsuarioCacheService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,9 +22,16 @@ import java.util.Map;
 public class AuthController {
     
     private final UsuarioDAO usuarioDAO;
+    private final UsuarioCacheService usuarioCacheService;
+    private final TokenService tokenService;
+    private final SaludService saludService;
     
-    public AuthController(UsuarioDAO usuarioDAO) {
+    public AuthController(UsuarioDAO usuarioDAO, UsuarioCacheService usuarioCacheService,
+                          TokenService tokenService, SaludService saludService) {
         this.usuarioDAO = usuarioDAO;
+        this.usuarioCacheService = usuarioCacheService;
+        this.tokenService = tokenService;
+        this.saludService = saludService;
     }
     
     // ========== LOGIN PARA DESARROLLO (sin verificación real de password) ==========
@@ -50,7 +62,8 @@ public class AuthController {
             if (usuario != null) {
                 System.out.println("✅ [DEV] Login exitoso para: " + usuario.getUsuarioCorreo());
                 System.out.println("📝 Rol del usuario: " + usuario.getRolNombre());
-                return successResponse(usuario, "Login exitoso (modo desarrollo)");
+                String token = tokenService.emitir(usuario.getUsuarioId(), usuario.getRolNombre());
+                return successResponse(usuario, token, "Login exitoso (modo desarrollo)");
             } else {
                 System.out.println("❌ [DEV] Usuario no encontrado o inactivo: " + correo);
                 return errorResponse("Usuario no encontrado o inactivo", HttpStatus.UNAUTHORIZED);
@@ -63,6 +76,19 @@ public class AuthController {
         }
     }
     
+    // Cerrar sesión: el token deja de aceptarse aunque no haya expirado
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, Object>> logout(
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion != null) {
+            tokenService.revocar(sesion);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "Sesión cerrada");
+        return ResponseEntity.ok(response);
+    }
+    
     // ========== ENDPOINTS PARA PRUEBAS ==========
     
     @GetMapping("/test")
@@ -77,15 +103,20 @@ public class AuthController {
         // Agregar endpoints disponibles
         Map<String, String> endpoints = new HashMap<>();
         endpoints.put("login", "POST /auth/login-dev");
+        endpoints.put("logout", "POST /auth/logout");
         endpoints.put("health", "GET  /auth/health");
         endpoints.put("usuarios", "GET  /auth/usuarios");
         endpoints.put("test", "GET  /auth/test");
         endpoints.put("check-user", "GET  /auth/check-user/{correo}");
+        endpoints.put("desactivar", "PUT  /auth/usuarios/{id}/desactivar");
+        endpoints.put("cache", "GET  /auth/cache");
         
         response.put("endpoints", endpoints);
         return ResponseEntity.ok(response);
     }
     
+    // Resumen para el dashboard. Las sondas del orquestador deben usar /health/live y
+    // /health/ready (SaludController), que no consultan la base en cada llamada.
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> healthCheck() {
         Map<String, Object> response = new HashMap<>();
@@ -93,12 +124,18 @@ public class AuthController {
         response.put("service", "enfermeria-api");
         response.put("timestamp", java.time.LocalDateTime.now().toString());
         
+        // Estado de la base según la última prueba guardada; sin base no se consulta nada más
+        if (!saludService.baseDatos().conectada()) {
+            response.put("database", "DISCONNECTED");
+            response.put("mensaje", "⚠️  Error en conexión a BD");
+            return ResponseEntity.ok(response);
+        }
+        
         try {
-            Integer dbTest = usuarioDAO.testConnection();
             Integer userCount = usuarioDAO.countUsuarios();
             List<Usuario> usuarios = usuarioDAO.getAllUsuarios();
             
-            response.put("database", dbTest != null ? "CONNECTED" : "DISCONNECTED");
+            response.put("database", "CONNECTED");
             response.put("totalUsuarios", userCount);
             response.put("databaseName", "enfermeria_escom");
             
@@ -153,6 +190,42 @@ public class AuthController {
         }
     }
     
+    // PUT: Dar de baja a un usuario (también lo saca de la caché de login). Solo administradores.
+    @PutMapping("/usuarios/{id}/desactivar")
+    public ResponseEntity<?> desactivarUsuario(
+            @PathVariable int id,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para desactivar usuarios", HttpStatus.UNAUTHORIZED);
+        }
+        if (!esAdmin(sesion)) {
+            return errorResponse("Solo un administrador puede desactivar usuarios", HttpStatus.FORBIDDEN);
+        }
+        try {
+            if (!usuarioDAO.desactivar(id)) {
+                return errorResponse("Usuario no encontrado o ya inactivo", HttpStatus.NOT_FOUND);
+            }
+            tokenService.revocarUsuario(id);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Usuario desactivado");
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            System.err.println("❌ Error desactivando usuario: " + e.getMessage());
+            return errorResponse("Error desactivando usuario: " + e.getMessage(),
+                               HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // GET: Estadísticas de la caché de usuarios del login
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCache() {
+        Map<String, Object> response = new HashMap<>(usuarioCacheService.getEstadisticas());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
     @GetMapping("/check-user/{correo}")
     public ResponseEntity<?> checkUsuario(@PathVariable String correo) {
         try {
@@ -200,10 +273,16 @@ public class AuthController {
     
     // ========== MÉTODOS PRIVADOS DE AYUDA ==========
     
-    private ResponseEntity<Map<String, Object>> successResponse(Usuario usuario, String message) {
+    // Mismos nombres de rol que acepta authService.isAdmin en el frontend
+    private static boolean esAdmin(Sesion sesion) {
+        return "ADMIN".equalsIgnoreCase(sesion.rol()) || "ADMINISTRADOR".equalsIgnoreCase(sesion.rol());
+    }
+    
+    private ResponseEntity<Map<String, Object>> successResponse(Usuario usuario, String token, String message) {
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("message", message);
+        response.put("token", token);
         response.put("timestamp", java.time.LocalDateTime.now().toString());
         
         Map<String, Object> userData = new HashMap<>();
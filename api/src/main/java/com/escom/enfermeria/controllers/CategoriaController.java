@@ -1,14 +1,17 @@
 package com.escom.enfermeria.controllers;
 
 import com.escom.enfermeria.dao.CategoriaDAO;
+import com.escom.enfermeria.dto.CategoriaRequest;
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.dto.ItemResponse;
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MensajeResponse;
 import com.escom.enfermeria.models.Categoria;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/categorias")
@@ -27,12 +30,7 @@ public class CategoriaController {
         try {
             List<Categoria> categorias = categoriaDAO.findAll();
             
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", categorias.size());
-            response.put("categorias", categorias);
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("categorias", categorias));
         } catch (Exception e) {
             return errorResponse("Error al obtener categorías: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -44,10 +42,7 @@ public class CategoriaController {
         try {
             Categoria categoria = categoriaDAO.findById(id);
             if (categoria != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("categoria", categoria);
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ItemResponse.de("categoria", categoria));
             } else {
                 return errorResponse("Categoría no encontrada", HttpStatus.NOT_FOUND);
             }
@@ -58,24 +53,14 @@ public class CategoriaController {
     
     // POST: Crear nueva categoría
     @PostMapping
-    public ResponseEntity<?> createCategoria(@RequestBody Map<String, Object> categoriaData) {
+    public ResponseEntity<?> createCategoria(@RequestBody CategoriaRequest categoriaData) {
         try {
-            if (!categoriaData.containsKey("categoriaNom")) {
+            if (categoriaData.categoriaNom() == null) {
                 return errorResponse("El nombre de la categoría es requerido", HttpStatus.BAD_REQUEST);
             }
             
-            Categoria categoria = new Categoria();
-            categoria.setCategoriaNom((String) categoriaData.get("categoriaNom"));
-            categoria.setCategoriaDesc((String) categoriaData.getOrDefault("categoriaDesc", ""));
-            
-            Categoria nuevaCategoria = categoriaDAO.create(categoria);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Categoría creada exitosamente");
-            response.put("categoria", nuevaCategoria);
-            
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            Categoria nuevaCategoria = categoriaDAO.create(categoriaData.nueva());
+            return ResponseEntity.status(HttpStatus.CREATED).body(ItemResponse.de("categoria", nuevaCategoria, "Categoría creada exitosamente"));
         } catch (Exception e) {
             return errorResponse("Error al crear categoría: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -83,28 +68,17 @@ public class CategoriaController {
     
     // PUT: Actualizar categoría
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateCategoria(@PathVariable Integer id, @RequestBody Map<String, Object> categoriaData) {
+    public ResponseEntity<?> updateCategoria(@PathVariable Integer id, @RequestBody CategoriaRequest categoriaData) {
         try {
             Categoria existing = categoriaDAO.findById(id);
             if (existing == null) {
                 return errorResponse("Categoría no encontrada", HttpStatus.NOT_FOUND);
             }
             
-            if (categoriaData.containsKey("categoriaNom")) {
-                existing.setCategoriaNom((String) categoriaData.get("categoriaNom"));
-            }
-            if (categoriaData.containsKey("categoriaDesc")) {
-                existing.setCategoriaDesc((String) categoriaData.get("categoriaDesc"));
-            }
+            categoriaData.aplicarA(existing);
             
             Categoria updated = categoriaDAO.update(existing);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Categoría actualizada exitosamente");
-            response.put("categoria", updated);
-            
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ItemResponse.de("categoria", updated, "Categoría actualizada exitosamente"));
         } catch (Exception e) {
             return errorResponse("Error al actualizar categoría: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -123,10 +97,7 @@ public class CategoriaController {
             
             boolean deleted = categoriaDAO.delete(id);
             if (deleted) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Categoría eliminada exitosamente");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(MensajeResponse.ok("Categoría eliminada exitosamente"));
             } else {
                 return errorResponse("Categoría no encontrada", HttpStatus.NOT_FOUND);
             }
@@ -136,10 +107,7 @@ public class CategoriaController {
     }
     
     // Método auxiliar para respuestas de error
-    private ResponseEntity<Map<String, Object>> errorResponse(String message, HttpStatus status) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", false);
-        response.put("error", message);
-        return ResponseEntity.status(status).body(response);
+    private ResponseEntity<ErrorResponse> errorResponse(String message, HttpStatus status) {
+        return ResponseEntity.status(status).body(ErrorResponse.de(message));
     }
 }
\ No newline at end of file
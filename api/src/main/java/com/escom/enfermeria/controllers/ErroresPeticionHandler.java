@@ -0,0 +1,27 @@
+package com.escom.enfermeria.controllers;
+
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+// Cuerpos que no se pueden convertir al record de la petición (JSON mal formado,
+// "abc" en un campo numérico, fecha inválida): 400 con el mismo formato de error.
+@RestControllerAdvice
+public class ErroresPeticionHandler {
+    
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<ErrorResponse> cuerpoInvalido(HttpMessageNotReadableException e) {
+        String mensaje = "Cuerpo de la petición inválido";
+        if (e.getCause() instanceof InvalidFormatException formato && !formato.getPath().isEmpty()) {
+            String campo = formato.getPath().get(formato.getPath().size() - 1).getFieldName();
+            if (campo != null) {
+                mensaje = "Valor inválido para " + campo;
+            }
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ErrorResponse.de(mensaje));
+    }
+}
@@ -1,13 +1,24 @@
 package com.escom.enfermeria.controllers;
 
+import com.escom.enfermeria.dao.EstadisticasDAO;
 import com.escom.enfermeria.dao.MaterialDAO;
+import com.escom.enfermeria.dto.CambiosResponse;
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.dto.ItemResponse;
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MaterialRequest;
+import com.escom.enfermeria.dto.MensajeResponse;
+import com.escom.enfermeria.models.Cambios;
+import com.escom.enfermeria.models.EstadisticasMateriales;
 import com.escom.enfermeria.models.Material;
+import com.escom.enfermeria.services.SincronizacionService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,36 +29,67 @@ import java.util.Map;
 public class MaterialController {
     
     private final MaterialDAO materialDAO;
+    private final EstadisticasDAO estadisticasDAO;
+    private final SincronizacionService sincronizacionService;
     
-    public MaterialController(MaterialDAO materialDAO) {
+    public MaterialController(MaterialDAO materialDAO, EstadisticasDAO estadisticasDAO,
+                              SincronizacionService sincronizacionService) {
         this.materialDAO = materialDAO;
+        this.estadisticasDAO = estadisticasDAO;
+        this.sincronizacionService = sincronizacionService;
     }
     
-    // GET: Obtener todos los materiales
+    // GET: Obtener todos los materiales. Con limit y/o after se pagina por cursor:
+    // la respuesta trae "siguiente", que se envía como after para la página que sigue.
     @GetMapping
-    public ResponseEntity<?> getAllMateriales() {
+    public ResponseEntity<?> getAllMateriales(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        if (limit != null || after != null) {
+            try {
+                int limite = Paginacion.limite(limit);
+                List<Material> pagina = materialDAO.findPagina(Paginacion.decodificar(after), limite);
+                return ResponseEntity.ok(Paginacion.respuesta("materiales", pagina, limite, Material::getMaterialId));
+            } catch (IllegalArgumentException e) {
+                return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+            } catch (Exception e) {
+                return errorResponse("Error al obtener materiales: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+        
         try {
             List<Material> materiales = materialDAO.findAll();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", materiales.size());
-            response.put("materiales", materiales);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("materiales", materiales));
         } catch (Exception e) {
             return errorResponse("Error al obtener materiales: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    // GET: Cambios desde la última sincronización. Devuelve los materiales creados o
+    // modificados después de since, los IDs eliminados y la marca para la próxima
+    // llamada. Sin since (o si es muy vieja) devuelve todos con completo = true.
+    @GetMapping("/cambios")
+    public ResponseEntity<?> getMaterialesCambios(@RequestParam(required = false) String since) {
+        try {
+            LocalDateTime desde = since != null && !since.isBlank() ? LocalDateTime.parse(since) : null;
+            Cambios<Material> cambios = sincronizacionService.cambios("material", desde,
+                materialDAO::findModificadosDesde, materialDAO::findAll);
+            
+            return ResponseEntity.ok(CambiosResponse.de("materiales", cambios));
+        } catch (DateTimeParseException e) {
+            return errorResponse("Marca since inválida: " + since, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return errorResponse("Error al obtener cambios: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // GET: Obtener material por ID
     @GetMapping("/{id}")
     public ResponseEntity<?> getMaterialById(@PathVariable Integer id) {
         try {
             Material material = materialDAO.findById(id);
             if (material != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("material", material);
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ItemResponse.de("material", material));
             } else {
                 return errorResponse("Material no encontrado", HttpStatus.NOT_FOUND);
             }
@@ -58,48 +100,15 @@ public class MaterialController {
     
     // POST: Crear nuevo material
     @PostMapping
-    public ResponseEntity<?> createMaterial(@RequestBody Map<String, Object> materialData) {
+    public ResponseEntity<?> createMaterial(@RequestBody MaterialRequest materialData) {
         try {
             // Validar datos requeridos
-            if (!materialData.containsKey("materialNom") || !materialData.containsKey("materialStock")) {
+            if (materialData.materialNom() == null || materialData.materialStock() == null) {
                 return errorResponse("Nombre y stock son requeridos", HttpStatus.BAD_REQUEST);
             }
             
-            Material material = new Material();
-            material.setMaterialNom((String) materialData.get("materialNom"));
-            material.setMaterialDesc((String) materialData.getOrDefault("materialDesc", ""));
-            
-            // Manejar fecha
-            if (materialData.get("materialFecComp") != null) {
-                material.setMaterialFecComp(LocalDate.parse((String) materialData.get("materialFecComp")));
-            }
-            
-            // Estado por defecto
-            String estado = (String) materialData.getOrDefault("materialEstado", "DISPONIBLE");
-            material.setMaterialEstado(estado);
-            
-            // Stock y precios
-            material.setMaterialStock(Integer.parseInt(materialData.get("materialStock").toString()));
-            material.setMaterialStockMin(Integer.parseInt(materialData.getOrDefault("materialStockMin", "5").toString()));
-            
-            if (materialData.get("materialPrecio") != null) {
-                material.setMaterialPrecio(new BigDecimal(materialData.get("materialPrecio").toString()));
-            } else {
-                material.setMaterialPrecio(BigDecimal.ZERO);
-            }
-            
-            // Categoría (puede ser null)
-            if (materialData.get("categoriaId") != null) {
-                material.setCategoriaId(Integer.parseInt(materialData.get("categoriaId").toString()));
-            }
-            
-            Material nuevoMaterial = materialDAO.create(material);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Material creado exitosamente");
-            response.put("material", nuevoMaterial);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            Material nuevoMaterial = materialDAO.create(materialData.nuevo());
+            return ResponseEntity.status(HttpStatus.CREATED).body(ItemResponse.de("material", nuevoMaterial, "Material creado exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al crear material: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -108,7 +117,7 @@ public class MaterialController {
     
     // PUT: Actualizar material
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateMaterial(@PathVariable Integer id, @RequestBody Map<String, Object> materialData) {
+    public ResponseEntity<?> updateMaterial(@PathVariable Integer id, @RequestBody MaterialRequest materialData) {
         try {
             // Verificar que existe
             Material existing = materialDAO.findById(id);
@@ -117,38 +126,10 @@ public class MaterialController {
             }
             
             // Actualizar solo los campos proporcionados
-            if (materialData.containsKey("materialNom")) {
-                existing.setMaterialNom((String) materialData.get("materialNom"));
-            }
-            if (materialData.containsKey("materialDesc")) {
-                existing.setMaterialDesc((String) materialData.get("materialDesc"));
-            }
-            if (materialData.containsKey("materialFecComp")) {
-                existing.setMaterialFecComp(LocalDate.parse((String) materialData.get("materialFecComp")));
-            }
-            if (materialData.containsKey("materialEstado")) {
-                existing.setMaterialEstado((String) materialData.get("materialEstado"));
-            }
-            if (materialData.containsKey("materialStock")) {
-                existing.setMaterialStock(Integer.parseInt(materialData.get("materialStock").toString()));
-            }
-            if (materialData.containsKey("materialStockMin")) {
-                existing.setMaterialStockMin(Integer.parseInt(materialData.get("materialStockMin").toString()));
-            }
-            if (materialData.containsKey("materialPrecio")) {
-                existing.setMaterialPrecio(new BigDecimal(materialData.get("materialPrecio").toString()));
-            }
-            if (materialData.containsKey("categoriaId")) {
-                existing.setCategoriaId(Integer.parseInt(materialData.get("categoriaId").toString()));
-            }
+            materialData.aplicarA(existing);
             
             Material updated = materialDAO.update(existing);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Material actualizado exitosamente");
-            response.put("material", updated);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ItemResponse.de("material", updated, "Material actualizado exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al actualizar material: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -161,13 +142,14 @@ public class MaterialController {
         try {
             boolean deleted = materialDAO.delete(id);
             if (deleted) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Material eliminado exitosamente");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(MensajeResponse.ok("Material eliminado exitosamente"));
             } else {
                 return errorResponse("Material no encontrado", HttpStatus.NOT_FOUND);
             }
+        } catch (DataIntegrityViolationException e) {
+            // Lo referencian movimientos de inventario (o recetas): borrarlo rompería el historial
+            return errorResponse("El material tiene movimientos o recetas registrados y no se puede eliminar",
+                HttpStatus.CONFLICT);
         } catch (Exception e) {
             return errorResponse("Error al eliminar material: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -175,14 +157,12 @@ public class MaterialController {
     
     // GET: Buscar por nombre
     @GetMapping("/buscar")
-    public ResponseEntity<?> buscarPorNombre(@RequestParam String nombre) {
+    public ResponseEntity<?> buscarPorNombre(
+            @RequestParam String nombre,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<Material> materiales = materialDAO.findByNombre(nombre);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", materiales.size());
-            response.put("materiales", materiales);
-            return ResponseEntity.ok(response);
+            List<Material> materiales = materialDAO.findByNombre(nombre, Paginacion.limite(limit));
+            return ResponseEntity.ok(ListaResponse.de("materiales", materiales));
         } catch (Exception e) {
             return errorResponse("Error en búsqueda: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -193,11 +173,7 @@ public class MaterialController {
     public ResponseEntity<?> getByEstado(@PathVariable String estado) {
         try {
             List<Material> materiales = materialDAO.findByEstado(estado.toUpperCase());
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", materiales.size());
-            response.put("materiales", materiales);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("materiales", materiales));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -208,11 +184,7 @@ public class MaterialController {
     public ResponseEntity<?> getStockBajo() {
         try {
             List<Material> materiales = materialDAO.findStockBajo();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", materiales.size());
-            response.put("materiales", materiales);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("materiales", materiales));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -223,11 +195,7 @@ public class MaterialController {
     public ResponseEntity<?> getEnMantenimiento() {
         try {
             List<Material> materiales = materialDAO.findEnMantenimiento();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", materiales.size());
-            response.put("materiales", materiales);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("materiales", materiales));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -237,15 +205,14 @@ public class MaterialController {
     @GetMapping("/estadisticas")
     public ResponseEntity<?> getEstadisticas() {
         try {
-            Integer total = materialDAO.count();
-            List<Material> stockBajo = materialDAO.findStockBajo();
-            List<Material> enMantenimiento = materialDAO.findEnMantenimiento();
+            EstadisticasMateriales estadisticas = estadisticasDAO.materiales();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("totalMateriales", total);
-            response.put("stockBajo", stockBajo.size());
-            response.put("enMantenimiento", enMantenimiento.size());
+            response.put("totalMateriales", estadisticas.total());
+            response.put("stockBajo", estadisticas.stockBajo());
+            response.put("enMantenimiento", estadisticas.enMantenimiento());
+            response.put("agotados", estadisticas.agotados());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -254,10 +221,7 @@ public class MaterialController {
     }
     
     // Método auxiliar para respuestas de error
-    private ResponseEntity<Map<String, Object>> errorResponse(String message, HttpStatus status) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", false);
-        response.put("error", message);
-        return ResponseEntity.status(status).body(response);
+    private ResponseEntity<ErrorResponse> errorResponse(String message, HttpStatus status) {
+        return ResponseEntity.status(status).body(ErrorResponse.de(message));
     }
 }
\ No newline at end of file
@@ -1,13 +1,25 @@
 package com.escom.enfermeria.controllers;
 
+import com.escom.enfermeria.dao.EstadisticasDAO;
 import com.escom.enfermeria.dao.MedicamentoDAO;
+import com.escom.enfermeria.dto.CambiosResponse;
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.dto.ItemResponse;
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MedicamentoRequest;
+import com.escom.enfermeria.dto.MensajeResponse;
+import com.escom.enfermeria.models.Cambios;
+import com.escom.enfermeria.models.EstadisticasMedicamentos;
 import com.escom.enfermeria.models.Medicamento;
+import com.escom.enfermeria.services.MedicamentoSugerenciasService;
+import com.escom.enfermeria.services.SincronizacionService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,36 +30,70 @@ import java.util.Map;
 public class MedicamentoController {
     
     private final MedicamentoDAO medicamentoDAO;
+    private final EstadisticasDAO estadisticasDAO;
+    private final MedicamentoSugerenciasService medicamentoSugerenciasService;
+    private final SincronizacionService sincronizacionService;
     
-    public MedicamentoController(MedicamentoDAO medicamentoDAO) {
+    public MedicamentoController(MedicamentoDAO medicamentoDAO, EstadisticasDAO estadisticasDAO,
+                                 MedicamentoSugerenciasService medicamentoSugerenciasService,
+                                 SincronizacionService sincronizacionService) {
         this.medicamentoDAO = medicamentoDAO;
+        this.estadisticasDAO = estadisticasDAO;
+        this.medicamentoSugerenciasService = medicamentoSugerenciasService;
+        this.sincronizacionService = sincronizacionService;
     }
     
-    // GET: Obtener todos los medicamentos
+    // GET: Obtener todos los medicamentos. Con limit y/o after se pagina por cursor:
+    // la respuesta trae "siguiente", que se envía como after para la página que sigue.
     @GetMapping
-    public ResponseEntity<?> getAllMedicamentos() {
+    public ResponseEntity<?> getAllMedicamentos(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        if (limit != null || after != null) {
+            try {
+                int limite = Paginacion.limite(limit);
+                List<Medicamento> pagina = medicamentoDAO.findPagina(Paginacion.decodificar(after), limite);
+                return ResponseEntity.ok(Paginacion.respuesta("medicamentos", pagina, limite, Medicamento::getMedicamentoId));
+            } catch (IllegalArgumentException e) {
+                return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+            } catch (Exception e) {
+                return errorResponse("Error al obtener medicamentos: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+        
         try {
             List<Medicamento> medicamentos = medicamentoDAO.findAll();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", medicamentos.size());
-            response.put("medicamentos", medicamentos);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("medicamentos", medicamentos));
         } catch (Exception e) {
             return errorResponse("Error al obtener medicamentos: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    // GET: Cambios desde la última sincronización. Devuelve los medicamentos creados o
+    // modificados después de since, los IDs eliminados y la marca para la próxima
+    // llamada. Sin since (o si es muy vieja) devuelve todos con completo = true.
+    @GetMapping("/cambios")
+    public ResponseEntity<?> getMedicamentosCambios(@RequestParam(required = false) String since) {
+        try {
+            LocalDateTime desde = since != null && !since.isBlank() ? LocalDateTime.parse(since) : null;
+            Cambios<Medicamento> cambios = sincronizacionService.cambios("medicamento", desde,
+                medicamentoDAO::findModificadosDesde, medicamentoDAO::findAll);
+            
+            return ResponseEntity.ok(CambiosResponse.de("medicamentos", cambios));
+        } catch (DateTimeParseException e) {
+            return errorResponse("Marca since inválida: " + since, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return errorResponse("Error al obtener cambios: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // GET: Obtener medicamento por ID
     @GetMapping("/{id}")
     public ResponseEntity<?> getMedicamentoById(@PathVariable Integer id) {
         try {
             Medicamento medicamento = medicamentoDAO.findById(id);
             if (medicamento != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("medicamento", medicamento);
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ItemResponse.de("medicamento", medicamento));
             } else {
                 return errorResponse("Medicamento no encontrado", HttpStatus.NOT_FOUND);
             }
@@ -58,54 +104,15 @@ public class MedicamentoController {
     
     // POST: Crear nuevo medicamento
     @PostMapping
-    public ResponseEntity<?> createMedicamento(@RequestBody Map<String, Object> medicamentoData) {
+    public ResponseEntity<?> createMedicamento(@RequestBody MedicamentoRequest medicamentoData) {
         try {
             // Validar datos requeridos
-            if (!medicamentoData.containsKey("medicamentoNom") || !medicamentoData.containsKey("medicamentoStock")) {
+            if (medicamentoData.medicamentoNom() == null || medicamentoData.medicamentoStock() == null) {
                 return errorResponse("Nombre y stock son requeridos", HttpStatus.BAD_REQUEST);
             }
             
-            Medicamento medicamento = new Medicamento();
-            medicamento.setMedicamentoNom((String) medicamentoData.get("medicamentoNom"));
-            medicamento.setMedicamentoDesc((String) medicamentoData.getOrDefault("medicamentoDesc", ""));
-            
-            // Manejar fechas
-            if (medicamentoData.get("medicamentoFecComp") != null) {
-                medicamento.setMedicamentoFecComp(LocalDate.parse((String) medicamentoData.get("medicamentoFecComp")));
-            }
-            if (medicamentoData.get("medicamentoFecCad") != null) {
-                medicamento.setMedicamentoFecCad(LocalDate.parse((String) medicamentoData.get("medicamentoFecCad")));
-            }
-            
-            medicamento.setMedicamentoLote((String) medicamentoData.getOrDefault("medicamentoLote", ""));
-            medicamento.setMedicamentoLaboratorio((String) medicamentoData.getOrDefault("medicamentoLaboratorio", ""));
-            
-            // Estado por defecto
-            String estado = (String) medicamentoData.getOrDefault("medicamentoEstado", "DISPONIBLE");
-            medicamento.setMedicamentoEstado(estado);
-            
-            // Stock y precios
-            medicamento.setMedicamentoStock(Integer.parseInt(medicamentoData.get("medicamentoStock").toString()));
-            medicamento.setMedicamentoStockMin(Integer.parseInt(medicamentoData.getOrDefault("medicamentoStockMin", "10").toString()));
-            
-            if (medicamentoData.get("medicamentoPrecio") != null) {
-                medicamento.setMedicamentoPrecio(new BigDecimal(medicamentoData.get("medicamentoPrecio").toString()));
-            } else {
-                medicamento.setMedicamentoPrecio(BigDecimal.ZERO);
-            }
-            
-            // Categoría (puede ser null)
-            if (medicamentoData.get("categoriaId") != null) {
-                medicamento.setCategoriaId(Integer.parseInt(medicamentoData.get("categoriaId").toString()));
-            }
-            
-            Medicamento nuevoMedicamento = medicamentoDAO.create(medicamento);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Medicamento creado exitosamente");
-            response.put("medicamento", nuevoMedicamento);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            Medicamento nuevoMedicamento = medicamentoDAO.create(medicamentoData.nuevo());
+            return ResponseEntity.status(HttpStatus.CREATED).body(ItemResponse.de("medicamento", nuevoMedicamento, "Medicamento creado exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al crear medicamento: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -114,7 +121,7 @@ public class MedicamentoController {
     
     // PUT: Actualizar medicamento
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateMedicamento(@PathVariable Integer id, @RequestBody Map<String, Object> medicamentoData) {
+    public ResponseEntity<?> updateMedicamento(@PathVariable Integer id, @RequestBody MedicamentoRequest medicamentoData) {
         try {
             // Verificar que existe
             Medicamento existing = medicamentoDAO.findById(id);
@@ -123,47 +130,10 @@ public class MedicamentoController {
             }
             
             // Actualizar solo los campos proporcionados
-            if (medicamentoData.containsKey("medicamentoNom")) {
-                existing.setMedicamentoNom((String) medicamentoData.get("medicamentoNom"));
-            }
-            if (medicamentoData.containsKey("medicamentoDesc")) {
-                existing.setMedicamentoDesc((String) medicamentoData.get("medicamentoDesc"));
-            }
-            if (medicamentoData.containsKey("medicamentoFecComp")) {
-                existing.setMedicamentoFecComp(LocalDate.parse((String) medicamentoData.get("medicamentoFecComp")));
-            }
-            if (medicamentoData.containsKey("medicamentoFecCad")) {
-                existing.setMedicamentoFecCad(LocalDate.parse((String) medicamentoData.get("medicamentoFecCad")));
-            }
-            if (medicamentoData.containsKey("medicamentoLote")) {
-                existing.setMedicamentoLote((String) medicamentoData.get("medicamentoLote"));
-            }
-            if (medicamentoData.containsKey("medicamentoLaboratorio")) {
-                existing.setMedicamentoLaboratorio((String) medicamentoData.get("medicamentoLaboratorio"));
-            }
-            if (medicamentoData.containsKey("medicamentoEstado")) {
-                existing.setMedicamentoEstado((String) medicamentoData.get("medicamentoEstado"));
-            }
-            if (medicamentoData.containsKey("medicamentoStock")) {
-                existing.setMedicamentoStock(Integer.parseInt(medicamentoData.get("medicamentoStock").toString()));
-            }
-            if (medicamentoData.containsKey("medicamentoStockMin")) {
-                existing.setMedicamentoStockMin(Integer.parseInt(medicamentoData.get("medicamentoStockMin").toString()));
-            }
-            if (medicamentoData.containsKey("medicamentoPrecio")) {
-                existing.setMedicamentoPrecio(new BigDecimal(medicamentoData.get("medicamentoPrecio").toString()));
-            }
-            if (medicamentoData.containsKey("categoriaId")) {
-                existing.setCategoriaId(Integer.parseInt(medicamentoData.get("categoriaId").toString()));
-            }
+            medicamentoData.aplicarA(existing);
             
             Medicamento updated = medicamentoDAO.update(existing);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Medicamento actualizado exitosamente");
-            response.put("medicamento", updated);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ItemResponse.de("medicamento", updated, "Medicamento actualizado exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al actualizar medicamento: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -176,13 +146,14 @@ public class MedicamentoController {
         try {
             boolean deleted = medicamentoDAO.delete(id);
             if (deleted) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Medicamento eliminado exitosamente");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(MensajeResponse.ok("Medicamento eliminado exitosamente"));
             } else {
                 return errorResponse("Medicamento no encontrado", HttpStatus.NOT_FOUND);
             }
+        } catch (DataIntegrityViolationException e) {
+            // Lo referencian movimientos de inventario (o recetas): borrarlo rompería el historial
+            return errorResponse("El medicamento tiene movimientos o recetas registrados y no se puede eliminar",
+                HttpStatus.CONFLICT);
         } catch (Exception e) {
             return errorResponse("Error al eliminar medicamento: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -190,29 +161,36 @@ public class MedicamentoController {
     
     // GET: Buscar por nombre
     @GetMapping("/buscar")
-    public ResponseEntity<?> buscarPorNombre(@RequestParam String nombre) {
+    public ResponseEntity<?> buscarPorNombre(
+            @RequestParam String nombre,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<Medicamento> medicamentos = medicamentoDAO.findByNombre(nombre);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", medicamentos.size());
-            response.put("medicamentos", medicamentos);
-            return ResponseEntity.ok(response);
+            List<Medicamento> medicamentos = medicamentoDAO.findByNombre(nombre, Paginacion.limite(limit));
+            return ResponseEntity.ok(ListaResponse.de("medicamentos", medicamentos));
         } catch (Exception e) {
             return errorResponse("Error en búsqueda: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    // GET: Sugerencias para autocompletar (índice en memoria, no consulta la base)
+    @GetMapping("/sugerencias")
+    public ResponseEntity<?> sugerir(
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit) {
+        int limite = limit != null
+            ? Math.max(1, Math.min(limit, MedicamentoSugerenciasService.LIMITE_MAXIMO))
+            : MedicamentoSugerenciasService.LIMITE_DEFECTO;
+        
+        List<MedicamentoSugerenciasService.Sugerencia> sugerencias = medicamentoSugerenciasService.sugerir(q, limite);
+        return ResponseEntity.ok(ListaResponse.de("sugerencias", sugerencias));
+    }
+    
     // GET: Obtener por estado
     @GetMapping("/estado/{estado}")
     public ResponseEntity<?> getByEstado(@PathVariable String estado) {
         try {
             List<Medicamento> medicamentos = medicamentoDAO.findByEstado(estado.toUpperCase());
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", medicamentos.size());
-            response.put("medicamentos", medicamentos);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("medicamentos", medicamentos));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -223,11 +201,7 @@ public class MedicamentoController {
     public ResponseEntity<?> getProximosCaducar() {
         try {
             List<Medicamento> medicamentos = medicamentoDAO.findProximosCaducar();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", medicamentos.size());
-            response.put("medicamentos", medicamentos);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("medicamentos", medicamentos));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -238,11 +212,7 @@ public class MedicamentoController {
     public ResponseEntity<?> getStockBajo() {
         try {
             List<Medicamento> medicamentos = medicamentoDAO.findStockBajo();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", medicamentos.size());
-            response.put("medicamentos", medicamentos);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("medicamentos", medicamentos));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -252,15 +222,14 @@ public class MedicamentoController {
     @GetMapping("/estadisticas")
     public ResponseEntity<?> getEstadisticas() {
         try {
-            Integer total = medicamentoDAO.count();
-            List<Medicamento> stockBajo = medicamentoDAO.findStockBajo();
-            List<Medicamento> proximosCaducar = medicamentoDAO.findProximosCaducar();
+            EstadisticasMedicamentos estadisticas = estadisticasDAO.medicamentos();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("totalMedicamentos", total);
-            response.put("stockBajo", stockBajo.size());
-            response.put("proximosCaducar", proximosCaducar.size());
+            response.put("totalMedicamentos", estadisticas.total());
+            response.put("stockBajo", estadisticas.stockBajo());
+            response.put("proximosCaducar", estadisticas.proximosCaducar());
+            response.put("agotados", estadisticas.agotados());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -269,10 +238,7 @@ public class MedicamentoController {
     }
     
     // Método auxiliar para respuestas de error
-    private ResponseEntity<Map<String, Object>> errorResponse(String message, HttpStatus status) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", false);
-        response.put("error", message);
-        return ResponseEntity.status(status).body(response);
+    private ResponseEntity<ErrorResponse> errorResponse(String message, HttpStatus status) {
+        return ResponseEntity.status(status).body(ErrorResponse.de(message));
     }
 }
\ No newline at end of file
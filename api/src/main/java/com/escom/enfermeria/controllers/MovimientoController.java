@@ -0,0 +1,175 @@
+package com.escom.enfermeria.controllers;
+
+import com.escom.enfermeria.config.TokenInterceptor;
+import com.escom.enfermeria.dao.MovimientoDAO;
+import com.escom.enfermeria.dao.StockInsuficienteException;
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MovimientoRequest;
+import com.escom.enfermeria.models.Movimiento;
+import com.escom.enfermeria.models.Sesion;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/movimientos")
+@CrossOrigin(origins = "http://localhost:5173")
+public class MovimientoController {
+    
+    // Movimientos aceptados en una sola petición de lote
+    private static final int LOTE_MAXIMO = 1000;
+    
+    private final MovimientoDAO movimientoDAO;
+    
+    public MovimientoController(MovimientoDAO movimientoDAO) {
+        this.movimientoDAO = movimientoDAO;
+    }
+    
+    // GET: Movimientos de todo el inventario en un rango de fechas, opcionalmente por tipo.
+    // desde/hasta aceptan fecha (yyyy-MM-dd, hasta incluye el día completo) o fecha y hora.
+    @GetMapping
+    public ResponseEntity<?> getMovimientos(
+            @RequestParam(required = false) String tipo,
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            if (tipo != null && !"ENTRADA".equals(tipo) && !"SALIDA".equals(tipo)) {
+                return errorResponse("Tipo inválido", HttpStatus.BAD_REQUEST);
+            }
+            List<Movimiento> movimientos = movimientoDAO.findByPeriodo(
+                tipo, parseDesde(desde), parseHasta(hasta), Paginacion.limite(limit));
+            return listaResponse(movimientos);
+        } catch (DateTimeParseException e) {
+            return errorResponse("Fecha inválida: " + e.getParsedString(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return errorResponse("Error al obtener movimientos: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // GET: Historial de stock de un medicamento
+    @GetMapping("/medicamento/{id}")
+    public ResponseEntity<?> getMovimientosMedicamento(
+            @PathVariable Integer id,
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            List<Movimiento> movimientos = movimientoDAO.findByMedicamento(
+                id, parseDesde(desde), parseHasta(hasta), Paginacion.limite(limit));
+            return listaResponse(movimientos);
+        } catch (DateTimeParseException e) {
+            return errorResponse("Fecha inválida: " + e.getParsedString(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return errorResponse("Error al obtener movimientos: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // GET: Historial de stock de un material
+    @GetMapping("/material/{id}")
+    public ResponseEntity<?> getMovimientosMaterial(
+            @PathVariable Integer id,
+            @RequestParam(required = false) String desde,
+            @RequestParam(required = false) String hasta,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            List<Movimiento> movimientos = movimientoDAO.findByMaterial(
+                id, parseDesde(desde), parseHasta(hasta), Paginacion.limite(limit));
+            return listaResponse(movimientos);
+        } catch (DateTimeParseException e) {
+            return errorResponse("Fecha inválida: " + e.getParsedString(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return errorResponse("Error al obtener movimientos: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // GET: Salidas generadas al surtir una receta
+    @GetMapping("/receta/{id}")
+    public ResponseEntity<?> getMovimientosReceta(@PathVariable Integer id) {
+        try {
+            return listaResponse(movimientoDAO.findByReceta(id));
+        } catch (Exception e) {
+            return errorResponse("Error al obtener movimientos: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // POST: Registrar una entrada o salida y ajustar el stock del artículo.
+    // Ajustar inventario exige sesión: el movimiento queda a nombre de quien lo hace.
+    @PostMapping
+    public ResponseEntity<?> createMovimiento(
+            @RequestBody MovimientoRequest movimientoData,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para registrar movimientos", HttpStatus.UNAUTHORIZED);
+        }
+        return registrar(List.of(movimientoData), sesion.usuarioId(), "Movimiento registrado exitosamente");
+    }
+    
+    // POST: Registrar varios movimientos en una sola transacción (todo o nada)
+    @PostMapping("/lote")
+    public ResponseEntity<?> createMovimientos(
+            @RequestBody List<MovimientoRequest> movimientosData,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para registrar movimientos", HttpStatus.UNAUTHORIZED);
+        }
+        if (movimientosData.isEmpty()) {
+            return errorResponse("El lote está vacío", HttpStatus.BAD_REQUEST);
+        }
+        if (movimientosData.size() > LOTE_MAXIMO) {
+            return errorResponse("El lote excede " + LOTE_MAXIMO + " movimientos", HttpStatus.BAD_REQUEST);
+        }
+        return registrar(movimientosData, sesion.usuarioId(), movimientosData.size() + " movimientos registrados exitosamente");
+    }
+    
+    private ResponseEntity<?> registrar(List<MovimientoRequest> movimientosData, Integer usuarioId, String mensaje) {
+        try {
+            List<Movimiento> movimientos = new ArrayList<>(movimientosData.size());
+            for (MovimientoRequest data : movimientosData) {
+                movimientos.add(data.movimiento(usuarioId));
+            }
+            
+            List<Movimiento> registrados = movimientoDAO.registrar(movimientos);
+            
+            return ResponseEntity.status(HttpStatus.CREATED).body(ListaResponse.registrados("movimientos", registrados, mensaje));
+        
+        } catch (IllegalArgumentException e) {
+            return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (StockInsuficienteException e) {
+            return errorResponse(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            return errorResponse("Error al registrar movimiento: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Inicio del rango: una fecha sola cuenta desde las 00:00
+    private LocalDateTime parseDesde(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        return valor.length() == 10 ? LocalDate.parse(valor).atStartOfDay() : LocalDateTime.parse(valor);
+    }
+    
+    // Fin del rango (exclusivo): una fecha sola incluye todo ese día
+    private LocalDateTime parseHasta(String valor) {
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        return valor.length() == 10 ? LocalDate.parse(valor).plusDays(1).atStartOfDay() : LocalDateTime.parse(valor);
+    }
+    
+    private ResponseEntity<?> listaResponse(List<Movimiento> movimientos) {
+        return ResponseEntity.ok(ListaResponse.de("movimientos", movimientos));
+    }
+    
+    private ResponseEntity<ErrorResponse> errorResponse(String message, HttpStatus status) {
+        return ResponseEntity.status(status).body(ErrorResponse.de(message));
+    }
+}
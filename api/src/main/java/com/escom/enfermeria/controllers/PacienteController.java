@@ -1,6 +1,13 @@
 package com.escom.enfermeria.controllers;
 
+import com.escom.enfermeria.dao.EstadisticasDAO;
 import com.escom.enfermeria.dao.PacienteDAO;
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.dto.ItemResponse;
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MensajeResponse;
+import com.escom.enfermeria.dto.PacienteRequest;
+import com.escom.enfermeria.models.EstadisticasPacientes;
 import com.escom.enfermeria.models.Paciente;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,21 +23,34 @@ import java.util.Map;
 public class PacienteController {
     
     private final PacienteDAO pacienteDAO;
+    private final EstadisticasDAO estadisticasDAO;
     
-    public PacienteController(PacienteDAO pacienteDAO) {
+    public PacienteController(PacienteDAO pacienteDAO, EstadisticasDAO estadisticasDAO) {
         this.pacienteDAO = pacienteDAO;
+        this.estadisticasDAO = estadisticasDAO;
     }
     
-    // GET: Obtener todos los pacientes
+    // GET: Obtener todos los pacientes. Con limit y/o after se pagina por cursor:
+    // la respuesta trae "siguiente", que se envía como after para la página que sigue.
     @GetMapping
-    public ResponseEntity<?> getAllPacientes() {
+    public ResponseEntity<?> getAllPacientes(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        if (limit != null || after != null) {
+            try {
+                int limite = Paginacion.limite(limit);
+                List<Paciente> pagina = pacienteDAO.findPagina(Paginacion.decodificar(after), limite);
+                return ResponseEntity.ok(Paginacion.respuesta("pacientes", pagina, limite, Paciente::getPacienteId));
+            } catch (IllegalArgumentException e) {
+                return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+            } catch (Exception e) {
+                return errorResponse("Error al obtener pacientes: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+        
         try {
             List<Paciente> pacientes = pacienteDAO.findAll();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", pacientes.size());
-            response.put("pacientes", pacientes);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("pacientes", pacientes));
         } catch (Exception e) {
             return errorResponse("Error al obtener pacientes: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -42,10 +62,7 @@ public class PacienteController {
         try {
             Paciente paciente = pacienteDAO.findById(id);
             if (paciente != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("paciente", paciente);
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ItemResponse.de("paciente", paciente));
             } else {
                 return errorResponse("Paciente no encontrado", HttpStatus.NOT_FOUND);
             }
@@ -56,40 +73,20 @@ public class PacienteController {
     
     // POST: Crear nuevo paciente
     @PostMapping
-    public ResponseEntity<?> createPaciente(@RequestBody Map<String, Object> pacienteData) {
+    public ResponseEntity<?> createPaciente(@RequestBody PacienteRequest pacienteData) {
         try {
             // Validar datos requeridos
-            if (!pacienteData.containsKey("pacienteNombre") || 
-                !pacienteData.containsKey("pacienteEscuela") ||
-                !pacienteData.containsKey("pacienteEdad")) {
+            if (pacienteData.pacienteNombre() == null ||
+                pacienteData.pacienteEscuela() == null ||
+                pacienteData.pacienteEdad() == null) {
                 return errorResponse("Nombre, escuela y edad son requeridos", HttpStatus.BAD_REQUEST);
             }
-            
-            Paciente paciente = new Paciente();
-            paciente.setPacienteNombre((String) pacienteData.get("pacienteNombre"));
-            paciente.setPacienteEscuela((String) pacienteData.get("pacienteEscuela"));
-            
-            // Validar y convertir edad
-            try {
-                Integer edad = Integer.parseInt(pacienteData.get("pacienteEdad").toString());
-                if (edad < 1 || edad > 120) {
-                    return errorResponse("La edad debe estar entre 1 y 120 años", HttpStatus.BAD_REQUEST);
-                }
-                paciente.setPacienteEdad(edad);
-            } catch (NumberFormatException e) {
-                return errorResponse("La edad debe ser un número válido", HttpStatus.BAD_REQUEST);
+            if (!pacienteData.edadValida()) {
+                return errorResponse("La edad debe estar entre 1 y 120 años", HttpStatus.BAD_REQUEST);
             }
             
-            paciente.setPacienteTelefono((String) pacienteData.getOrDefault("pacienteTelefono", ""));
-            paciente.setPacienteEmail((String) pacienteData.getOrDefault("pacienteEmail", ""));
-            
-            Paciente nuevoPaciente = pacienteDAO.create(paciente);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Paciente creado exitosamente");
-            response.put("paciente", nuevoPaciente);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            Paciente nuevoPaciente = pacienteDAO.create(pacienteData.nuevo());
+            return ResponseEntity.status(HttpStatus.CREATED).body(ItemResponse.de("paciente", nuevoPaciente, "Paciente creado exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al crear paciente: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -98,46 +95,22 @@ public class PacienteController {
     
     // PUT: Actualizar paciente
     @PutMapping("/{id}")
-    public ResponseEntity<?> updatePaciente(@PathVariable Integer id, @RequestBody Map<String, Object> pacienteData) {
+    public ResponseEntity<?> updatePaciente(@PathVariable Integer id, @RequestBody PacienteRequest pacienteData) {
         try {
             // Verificar que existe
             Paciente existing = pacienteDAO.findById(id);
             if (existing == null) {
                 return errorResponse("Paciente no encontrado", HttpStatus.NOT_FOUND);
             }
+            if (!pacienteData.edadValida()) {
+                return errorResponse("La edad debe estar entre 1 y 120 años", HttpStatus.BAD_REQUEST);
+            }
             
             // Actualizar solo los campos proporcionados
-            if (pacienteData.containsKey("pacienteNombre")) {
-                existing.setPacienteNombre((String) pacienteData.get("pacienteNombre"));
-            }
-            if (pacienteData.containsKey("pacienteEscuela")) {
-                existing.setPacienteEscuela((String) pacienteData.get("pacienteEscuela"));
-            }
-            if (pacienteData.containsKey("pacienteEdad")) {
-                try {
-                    Integer edad = Integer.parseInt(pacienteData.get("pacienteEdad").toString());
-                    if (edad < 1 || edad > 120) {
-                        return errorResponse("La edad debe estar entre 1 y 120 años", HttpStatus.BAD_REQUEST);
-                    }
-                    existing.setPacienteEdad(edad);
-                } catch (NumberFormatException e) {
-                    return errorResponse("La edad debe ser un número válido", HttpStatus.BAD_REQUEST);
-                }
-            }
-            if (pacienteData.containsKey("pacienteTelefono")) {
-                existing.setPacienteTelefono((String) pacienteData.get("pacienteTelefono"));
-            }
-            if (pacienteData.containsKey("pacienteEmail")) {
-                existing.setPacienteEmail((String) pacienteData.get("pacienteEmail"));
-            }
+            pacienteData.aplicarA(existing);
             
             Paciente updated = pacienteDAO.update(existing);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Paciente actualizado exitosamente");
-            response.put("paciente", updated);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ItemResponse.de("paciente", updated, "Paciente actualizado exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al actualizar paciente: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -158,10 +131,7 @@ public class PacienteController {
             
             boolean deleted = pacienteDAO.delete(id);
             if (deleted) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Paciente eliminado exitosamente");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(MensajeResponse.ok("Paciente eliminado exitosamente"));
             } else {
                 return errorResponse("Paciente no encontrado", HttpStatus.NOT_FOUND);
             }
@@ -172,14 +142,12 @@ public class PacienteController {
     
     // GET: Buscar por término
     @GetMapping("/buscar")
-    public ResponseEntity<?> buscarPorTermino(@RequestParam String termino) {
+    public ResponseEntity<?> buscarPorTermino(
+            @RequestParam String termino,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<Paciente> pacientes = pacienteDAO.findByTermino(termino);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", pacientes.size());
-            response.put("pacientes", pacientes);
-            return ResponseEntity.ok(response);
+            List<Paciente> pacientes = pacienteDAO.findByTermino(termino, Paginacion.limite(limit));
+            return ResponseEntity.ok(ListaResponse.de("pacientes", pacientes));
         } catch (Exception e) {
             return errorResponse("Error en búsqueda: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -190,11 +158,7 @@ public class PacienteController {
     public ResponseEntity<?> getByEscuela(@PathVariable String escuela) {
         try {
             List<Paciente> pacientes = pacienteDAO.findByEscuela(escuela);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", pacientes.size());
-            response.put("pacientes", pacientes);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("pacientes", pacientes));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -204,26 +168,18 @@ public class PacienteController {
     @GetMapping("/estadisticas")
     public ResponseEntity<?> getEstadisticas() {
         try {
-            Integer total = pacienteDAO.count();
-            Double promedioEdad = pacienteDAO.promedioEdad();
-            List<String> escuelasUnicas = pacienteDAO.findEscuelasUnicas();
-            
-            // Distribución por edad
-            Integer menores = pacienteDAO.countByEdadRange(1, 17);
-            Integer jovenes = pacienteDAO.countByEdadRange(18, 25);
-            Integer adultos = pacienteDAO.countByEdadRange(26, 40);
-            Integer mayores = pacienteDAO.countByEdadRange(41, 120);
+            EstadisticasPacientes estadisticas = estadisticasDAO.pacientes();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("totalPacientes", total);
-            response.put("promedioEdad", promedioEdad != null ? Math.round(promedioEdad * 10.0) / 10.0 : 0);
-            response.put("escuelasUnicas", escuelasUnicas.size());
+            response.put("totalPacientes", estadisticas.total());
+            response.put("promedioEdad", Math.round(estadisticas.promedioEdad() * 10.0) / 10.0);
+            response.put("escuelasUnicas", estadisticas.escuelasUnicas());
             response.put("distribucionEdad", Map.of(
-                "menores", menores,
-                "jovenes", jovenes,
-                "adultos", adultos,
-                "mayores", mayores
+                "menores", estadisticas.menores(),
+                "jovenes", estadisticas.jovenes(),
+                "adultos", estadisticas.adultos(),
+                "mayores", estadisticas.mayores()
             ));
             
             return ResponseEntity.ok(response);
@@ -237,20 +193,14 @@ public class PacienteController {
     public ResponseEntity<?> getEscuelas() {
         try {
             List<String> escuelas = pacienteDAO.findEscuelasUnicas();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("escuelas", escuelas);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ItemResponse.de("escuelas", escuelas));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Método auxiliar para respuestas de error
-    private ResponseEntity<Map<String, Object>> errorResponse(String message, HttpStatus status) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", false);
-        response.put("error", message);
-        return ResponseEntity.status(status).body(response);
+    private ResponseEntity<ErrorResponse> errorResponse(String message, HttpStatus status) {
+        return ResponseEntity.status(status).body(ErrorResponse.de(message));
     }
 }
\ No newline at end of file
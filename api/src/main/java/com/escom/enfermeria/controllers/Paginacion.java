@@ -0,0 +1,59 @@
+package com.escom.enfermeria.controllers;
+
+import com.escom.enfermeria.dto.ListaResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+// Paginación por cursor (keyset) para los listados. El cursor es opaco para el
+// cliente: codifica el último ID entregado y la siguiente página pide "id < cursor",
+// así que cada página cuesta lo mismo sin importar qué tan adelante esté.
+final class Paginacion {
+    
+    static final int LIMITE_DEFECTO = 50;
+    static final int LIMITE_MAXIMO = 200;
+    
+    private static final String PREFIJO = "id:";
+    
+    private Paginacion() {}
+    
+    // Ajustar el límite pedido al rango permitido
+    static int limite(Integer limit) {
+        if (limit == null) {
+            return LIMITE_DEFECTO;
+        }
+        return Math.max(1, Math.min(limit, LIMITE_MAXIMO));
+    }
+    
+    // Obtener el ID a partir del cursor (null = primera página)
+    static Integer decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!valor.startsWith(PREFIJO)) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+            return Integer.valueOf(valor.substring(PREFIJO.length()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido");
+        }
+    }
+    
+    static String codificar(Integer id) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((PREFIJO + id).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // Armar la respuesta de una página. Los DAOs devuelven limite + 1 filas:
+    // si llega la fila extra hay más páginas y se descarta.
+    static <T> ListaResponse<T> respuesta(String clave, List<T> filas, int limite, Function<T, Integer> id) {
+        boolean hayMas = filas.size() > limite;
+        List<T> pagina = hayMas ? filas.subList(0, limite) : filas;
+        String siguiente = hayMas ? codificar(id.apply(pagina.get(pagina.size() - 1))) : null;
+        return ListaResponse.pagina(clave, pagina, limite, siguiente);
+    }
+}
@@ -1,15 +1,25 @@
 package com.escom.enfermeria.controllers;
 
+import com.escom.enfermeria.config.TokenInterceptor;
+import com.escom.enfermeria.dao.EstadisticasDAO;
 import com.escom.enfermeria.dao.RecetaDAO;
+import com.escom.enfermeria.dao.StockInsuficienteException;
+import com.escom.enfermeria.dto.ErrorResponse;
+import com.escom.enfermeria.dto.EstadoRequest;
+import com.escom.enfermeria.dto.ItemResponse;
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MensajeResponse;
+import com.escom.enfermeria.dto.RecetaRequest;
+import com.escom.enfermeria.models.EstadisticasRecetas;
 import com.escom.enfermeria.models.Receta;
 import com.escom.enfermeria.models.DetalleReceta;
 import com.escom.enfermeria.models.RecetaCompleta;
+import com.escom.enfermeria.models.Sesion;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,21 +30,34 @@ import java.util.Map;
 public class RecetaController {
     
     private final RecetaDAO recetaDAO;
+    private final EstadisticasDAO estadisticasDAO;
     
-    public RecetaController(RecetaDAO recetaDAO) {
+    public RecetaController(RecetaDAO recetaDAO, EstadisticasDAO estadisticasDAO) {
         this.recetaDAO = recetaDAO;
+        this.estadisticasDAO = estadisticasDAO;
     }
     
-    // GET: Obtener todas las recetas
+    // GET: Obtener todas las recetas. Con limit y/o after se pagina por cursor:
+    // la respuesta trae "siguiente", que se envía como after para la página que sigue.
     @GetMapping
-    public ResponseEntity<?> getAllRecetas() {
+    public ResponseEntity<?> getAllRecetas(
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after) {
+        if (limit != null || after != null) {
+            try {
+                int limite = Paginacion.limite(limit);
+                List<Receta> pagina = recetaDAO.findPagina(Paginacion.decodificar(after), limite);
+                return ResponseEntity.ok(Paginacion.respuesta("recetas", pagina, limite, Receta::getRecetaId));
+            } catch (IllegalArgumentException e) {
+                return errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+            } catch (Exception e) {
+                return errorResponse("Error al obtener recetas: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+        
         try {
             List<Receta> recetas = recetaDAO.findAll();
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", recetas.size());
-            response.put("recetas", recetas);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("recetas", recetas));
         } catch (Exception e) {
             return errorResponse("Error al obtener recetas: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -46,10 +69,7 @@ public class RecetaController {
         try {
             Receta receta = recetaDAO.findById(id);
             if (receta != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("receta", receta);
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ItemResponse.de("receta", receta));
             } else {
                 return errorResponse("Receta no encontrada", HttpStatus.NOT_FOUND);
             }
@@ -64,10 +84,7 @@ public class RecetaController {
         try {
             RecetaCompleta recetaCompleta = recetaDAO.findRecetaCompletaById(id);
             if (recetaCompleta != null) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("recetaCompleta", recetaCompleta);
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(ItemResponse.de("recetaCompleta", recetaCompleta));
             } else {
                 return errorResponse("Receta no encontrada", HttpStatus.NOT_FOUND);
             }
@@ -81,11 +98,7 @@ public class RecetaController {
     public ResponseEntity<?> getRecetasByPaciente(@PathVariable Integer pacienteId) {
         try {
             List<Receta> recetas = recetaDAO.findByPaciente(pacienteId);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", recetas.size());
-            response.put("recetas", recetas);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ListaResponse.de("recetas", recetas));
         } catch (Exception e) {
             return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -93,66 +106,33 @@ public class RecetaController {
     
     // POST: Crear nueva receta
     @PostMapping
-    public ResponseEntity<?> createReceta(@RequestBody Map<String, Object> recetaData) {
+    public ResponseEntity<?> createReceta(
+            @RequestBody RecetaRequest recetaData,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para crear recetas", HttpStatus.UNAUTHORIZED);
+        }
         try {
             // Validar datos requeridos
-            if (!recetaData.containsKey("pacienteId") || 
-                !recetaData.containsKey("recetaDiag")) {
+            if (recetaData.pacienteId() == null ||
+                recetaData.recetaDiag() == null) {
                 return errorResponse("Paciente y diagnóstico son requeridos", HttpStatus.BAD_REQUEST);
             }
             
             // Crear receta
             Receta receta = new Receta();
-            receta.setRecetaDiag((String) recetaData.get("recetaDiag"));
-            receta.setRecetaObs((String) recetaData.getOrDefault("recetaObs", ""));
-            receta.setPacienteId(Integer.parseInt(recetaData.get("pacienteId").toString()));
+            receta.setRecetaDiag(recetaData.recetaDiag());
+            receta.setRecetaObs(recetaData.recetaObs() != null ? recetaData.recetaObs() : "");
+            receta.setPacienteId(recetaData.pacienteId());
             receta.setRecetaFecha(LocalDateTime.now());
             
-            // TODO: Obtener usuario_id del usuario autenticado
-            // Por ahora usamos un usuario por defecto (ID 1)
-            receta.setUsuarioId(1);
+            // La receta queda a nombre del usuario del token
+            receta.setUsuarioId(sesion.usuarioId());
             
             // Crear detalles
-            List<DetalleReceta> detalles = new ArrayList<>();
-            if (recetaData.containsKey("detalles")) {
-            Object detallesObj = recetaData.get("detalles");
-            if (detallesObj instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> detallesData = (List<Map<String, Object>>) detallesObj;
-                
-                for (Map<String, Object> detalleData : detallesData) {
-                    DetalleReceta detalle = new DetalleReceta();
-                    detalle.setDetRecetaMed((String) detalleData.get("detRecetaMed"));
-                    
-                    // Validar cantidad
-                    Object cantidadObj = detalleData.get("detRecetaCant");
-                    if (cantidadObj != null) {
-                        detalle.setDetRecetaCant(Integer.parseInt(cantidadObj.toString()));
-                    } else {
-                        detalle.setDetRecetaCant(1); // Valor por defecto
-                    }
-                    
-                    detalle.setDetRecetaDosis((String) detalleData.getOrDefault("detRecetaDosis", ""));
-                    detalle.setDetRecetaDur((String) detalleData.getOrDefault("detRecetaDur", ""));
-                    detalle.setDetRecetaIndicaciones((String) detalleData.getOrDefault("detRecetaIndicaciones", ""));
-                    
-                    Object medicamentoIdObj = detalleData.get("medicamentoId");
-                    if (medicamentoIdObj != null) {
-                        detalle.setMedicamentoId(Integer.parseInt(medicamentoIdObj.toString()));
-                    }
-                    
-                    detalles.add(detalle);
-                }
-            }
-        }
-            
-            RecetaCompleta nuevaReceta = recetaDAO.create(receta, detalles);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Receta creada exitosamente");
-            response.put("recetaCompleta", nuevaReceta);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            List<DetalleReceta> detalles = recetaData.detallesReceta();
+            RecetaCompleta nuevaReceta = recetaDAO.create(receta, detalles != null ? detalles : List.of());
+            return ResponseEntity.status(HttpStatus.CREATED).body(ItemResponse.de("recetaCompleta", nuevaReceta, "Receta creada exitosamente"));
             
         } catch (Exception e) {
             return errorResponse("Error al crear receta: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -161,7 +141,7 @@ public class RecetaController {
     
     // PUT: Actualizar receta
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateReceta(@PathVariable Integer id, @RequestBody Map<String, Object> recetaData) {
+    public ResponseEntity<?> updateReceta(@PathVariable Integer id, @RequestBody RecetaRequest recetaData) {
         try {
             // Verificar que existe
             Receta existing = recetaDAO.findById(id);
@@ -175,59 +155,26 @@ public class RecetaController {
             }
             
             // Actualizar receta
-            if (recetaData.containsKey("recetaDiag")) {
-                existing.setRecetaDiag((String) recetaData.get("recetaDiag"));
+            if (recetaData.recetaDiag() != null) {
+                existing.setRecetaDiag(recetaData.recetaDiag());
             }
-            if (recetaData.containsKey("recetaObs")) {
-                existing.setRecetaObs((String) recetaData.get("recetaObs"));
+            if (recetaData.recetaObs() != null) {
+                existing.setRecetaObs(recetaData.recetaObs());
             }
-            if (recetaData.containsKey("pacienteId")) {
-                existing.setPacienteId(Integer.parseInt(recetaData.get("pacienteId").toString()));
+            if (recetaData.pacienteId() != null) {
+                existing.setPacienteId(recetaData.pacienteId());
             }
             
-            // Crear detalles
-            List<DetalleReceta> detalles = new ArrayList<>();
-            if (recetaData.containsKey("detalles")) {
-            Object detallesObj = recetaData.get("detalles");
-            if (detallesObj instanceof List) {
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> detallesData = (List<Map<String, Object>>) detallesObj;
-                
-                for (Map<String, Object> detalleData : detallesData) {
-                    DetalleReceta detalle = new DetalleReceta();
-                    detalle.setDetRecetaMed((String) detalleData.get("detRecetaMed"));
-                    
-                    // Validar cantidad
-                    Object cantidadObj = detalleData.get("detRecetaCant");
-                    if (cantidadObj != null) {
-                        detalle.setDetRecetaCant(Integer.parseInt(cantidadObj.toString()));
-                    } else {
-                        detalle.setDetRecetaCant(1); // Valor por defecto
-                    }
-                    
-                    detalle.setDetRecetaDosis((String) detalleData.getOrDefault("detRecetaDosis", ""));
-                    detalle.setDetRecetaDur((String) detalleData.getOrDefault("detRecetaDur", ""));
-                    detalle.setDetRecetaIndicaciones((String) detalleData.getOrDefault("detRecetaIndicaciones", ""));
-                    
-                    Object medicamentoIdObj = detalleData.get("medicamentoId");
-                    if (medicamentoIdObj != null) {
-                        detalle.setMedicamentoId(Integer.parseInt(medicamentoIdObj.toString()));
-                    }
-                    
-                    detalles.add(detalle);
-                }
+            // Detalles (null = la petición no trae detalles, solo se edita el encabezado)
+            RecetaCompleta recetaActualizada = recetaDAO.update(existing, recetaData.detallesReceta());
+            if (recetaActualizada == null) {
+                return errorResponse("Receta no encontrada", HttpStatus.NOT_FOUND);
             }
-        }
-
-
-            RecetaCompleta recetaActualizada = recetaDAO.update(existing, detalles);
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Receta actualizada exitosamente");
-            response.put("recetaCompleta", recetaActualizada);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ItemResponse.de("recetaCompleta", recetaActualizada, "Receta actualizada exitosamente"));
             
+        } catch (IllegalStateException e) {
+            // Se surtió o canceló entre la verificación y la actualización
+            return errorResponse(e.getMessage(), HttpStatus.CONFLICT);
         } catch (Exception e) {
             return errorResponse("Error al actualizar receta: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -235,7 +182,10 @@ public class RecetaController {
     
     // PATCH: Cambiar estado de receta
     @PatchMapping("/{id}/estado")
-    public ResponseEntity<?> cambiarEstadoReceta(@PathVariable Integer id, @RequestBody Map<String, Object> estadoData) {
+    public ResponseEntity<?> cambiarEstadoReceta(
+            @PathVariable Integer id,
+            @RequestBody EstadoRequest estadoData,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
         try {
             // Verificar que existe
             Receta existing = recetaDAO.findById(id);
@@ -243,25 +193,42 @@ public class RecetaController {
                 return errorResponse("Receta no encontrada", HttpStatus.NOT_FOUND);
             }
             
-            if (!estadoData.containsKey("estado")) {
+            String nuevoEstado = estadoData.estado();
+            if (nuevoEstado == null) {
                 return errorResponse("El estado es requerido", HttpStatus.BAD_REQUEST);
             }
-            
-            String nuevoEstado = (String) estadoData.get("estado");
+
             if (!"ACTIVA".equals(nuevoEstado) && !"COMPLETADA".equals(nuevoEstado) && !"CANCELADA".equals(nuevoEstado)) {
                 return errorResponse("Estado inválido", HttpStatus.BAD_REQUEST);
             }
             
+            // Una receta surtida ya descontó inventario: no puede volver a otro estado
+            if ("COMPLETADA".equals(existing.getRecetaEstado())) {
+                return errorResponse("La receta ya fue surtida", HttpStatus.CONFLICT);
+            }
+            
+            // Completar = surtir: descuenta el stock y registra las salidas
+            if ("COMPLETADA".equals(nuevoEstado)) {
+                // Surtir descuenta inventario a nombre de quien lo hace: exige sesión
+                if (sesion == null) {
+                    return errorResponse("Inicia sesión para surtir recetas", HttpStatus.UNAUTHORIZED);
+                }
+                recetaDAO.surtir(id, sesion.usuarioId());
+                return ResponseEntity.ok(MensajeResponse.ok("Receta surtida y marcada como COMPLETADA"));
+            }
+            
             int rowsAffected = recetaDAO.cambiarEstado(id, nuevoEstado);
             if (rowsAffected > 0) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Estado cambiado exitosamente a " + nuevoEstado);
-                return ResponseEntity.ok(response);
-            } else {
+                return ResponseEntity.ok(MensajeResponse.ok("Estado cambiado exitosamente a " + nuevoEstado));
+            } else if (recetaDAO.findById(id) == null) {
                 return errorResponse("Receta no encontrada", HttpStatus.NOT_FOUND);
+            } else {
+                // Se surtió entre la verificación y el UPDATE
+                return errorResponse("La receta ya fue surtida", HttpStatus.CONFLICT);
             }
             
+        } catch (StockInsuficienteException | IllegalStateException e) {
+            return errorResponse(e.getMessage(), HttpStatus.CONFLICT);
         } catch (Exception e) {
             return errorResponse("Error al cambiar estado: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -273,10 +240,7 @@ public class RecetaController {
         try {
             boolean deleted = recetaDAO.delete(id);
             if (deleted) {
-                Map<String, Object> response = new HashMap<>();
-                response.put("success", true);
-                response.put("message", "Receta eliminada exitosamente");
-                return ResponseEntity.ok(response);
+                return ResponseEntity.ok(MensajeResponse.ok("Receta eliminada exitosamente"));
             } else {
                 return errorResponse("Receta no encontrada", HttpStatus.NOT_FOUND);
             }
@@ -287,14 +251,12 @@ public class RecetaController {
     
     // GET: Buscar por término
     @GetMapping("/buscar")
-    public ResponseEntity<?> buscarPorTermino(@RequestParam String termino) {
+    public ResponseEntity<?> buscarPorTermino(
+            @RequestParam String termino,
+            @RequestParam(required = false) Integer limit) {
         try {
-            List<Receta> recetas = recetaDAO.findByTermino(termino);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("total", recetas.size());
-            response.put("recetas", recetas);
-            return ResponseEntity.ok(response);
+            List<Receta> recetas = recetaDAO.findByTermino(termino, Paginacion.limite(limit));
+            return ResponseEntity.ok(ListaResponse.de("recetas", recetas));
         } catch (Exception e) {
             return errorResponse("Error en búsqueda: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -304,17 +266,14 @@ public class RecetaController {
     @GetMapping("/estadisticas")
     public ResponseEntity<?> getEstadisticas() {
         try {
-            Integer total = recetaDAO.count();
-            Integer activas = recetaDAO.countByEstado("ACTIVA");
-            Integer completadas = recetaDAO.countByEstado("COMPLETADA");
-            Integer canceladas = recetaDAO.countByEstado("CANCELADA");
+            EstadisticasRecetas estadisticas = estadisticasDAO.recetas(null, null, null);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("totalRecetas", total);
-            response.put("activas", activas);
-            response.put("completadas", completadas);
-            response.put("canceladas", canceladas);
+            response.put("totalRecetas", estadisticas.total());
+            response.put("activas", estadisticas.activas());
+            response.put("completadas", estadisticas.completadas());
+            response.put("canceladas", estadisticas.canceladas());
             
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -323,10 +282,7 @@ public class RecetaController {
     }
     
     // Método auxiliar para respuestas de error
-    private ResponseEntity<Map<String, Object>> errorResponse(String message, HttpStatus status) {
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", false);
-        response.put("error", message);
-        return ResponseEntity.status(status).body(response);
+    private ResponseEntity<ErrorResponse> errorResponse(String message, HttpStatus status) {
+        return ResponseEntity.status(status).body(ErrorResponse.de(message));
     }
 }
\ No newline at end of file
@@ -1,13 +1,30 @@
 package com.escom.enfermeria.controllers;
 
+import com.escom.enfermeria.config.TokenInterceptor;
+import com.escom.enfermeria.models.Reporte;
+import com.escom.enfermeria.models.Sesion;
+import com.escom.enfermeria.services.EstadisticasCacheService;
+import com.escom.enfermeria.services.ReporteCacheService;
+import com.escom.enfermeria.services.ReporteJobService;
 import com.escom.enfermeria.services.ReporteService;
+import com.itextpdf.text.DocumentException;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,99 +33,274 @@ import java.util.Map;
 public class ReporteController {
     
     private final ReporteService reporteService;
+    private final ReporteJobService reporteJobService;
+    private final ReporteCacheService reporteCacheService;
+    private final EstadisticasCacheService estadisticasCacheService;
     
-    public ReporteController(ReporteService reporteService) {
+    public ReporteController(ReporteService reporteService, ReporteJobService reporteJobService,
+                             ReporteCacheService reporteCacheService,
+                             EstadisticasCacheService estadisticasCacheService) {
         this.reporteService = reporteService;
+        this.reporteJobService = reporteJobService;
+        this.reporteCacheService = reporteCacheService;
+        this.estadisticasCacheService = estadisticasCacheService;
     }
     
     // GET: Obtener reporte de medicamentos en PDF
     @GetMapping("/medicamentos/pdf")
-    public ResponseEntity<byte[]> generarReporteMedicamentos(
+    public ResponseEntity<?> generarReporteMedicamentos(
             @RequestParam(required = false) Integer mes,
             @RequestParam(required = false) Integer año,
-            @RequestHeader(value = "X-User-Id", defaultValue = "1") Integer usuarioId) {
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
-        try {
-            byte[] pdfBytes = reporteService.generarReporteMedicamentos(usuarioId, mes, año);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("filename", "reporte-medicamentos.pdf");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        return pdfResponse("medicamentos", sesion, mes, año, ifNoneMatch, reporteService::generarReporteMedicamentos);
     }
     
     // GET: Obtener reporte de materiales en PDF
     @GetMapping("/materiales/pdf")
-    public ResponseEntity<byte[]> generarReporteMateriales(
+    public ResponseEntity<?> generarReporteMateriales(
             @RequestParam(required = false) Integer mes,
             @RequestParam(required = false) Integer año,
-            @RequestHeader(value = "X-User-Id", defaultValue = "1") Integer usuarioId) {
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         
-        try {
-            byte[] pdfBytes = reporteService.generarReporteMateriales(usuarioId, mes, año);
-            
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("filename", "reporte-materiales.pdf");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
-            
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        return pdfResponse("materiales", sesion, mes, año, ifNoneMatch, reporteService::generarReporteMateriales);
     }
     
     // GET: Obtener reporte de recetas en PDF
     @GetMapping("/recetas/pdf")
-    public ResponseEntity<byte[]> generarReporteRecetas(
+    public ResponseEntity<?> generarReporteRecetas(
+            @RequestParam(required = false) Integer mes,
+            @RequestParam(required = false) Integer año,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        
+        return pdfResponse("recetas", sesion, mes, año, ifNoneMatch, reporteService::generarReporteRecetas);
+    }
+    
+    // GET: Obtener reporte consolidado en PDF
+    @GetMapping("/consolidado/pdf")
+    public ResponseEntity<?> generarReporteConsolidado(
             @RequestParam(required = false) Integer mes,
             @RequestParam(required = false) Integer año,
-            @RequestHeader(value = "X-User-Id", defaultValue = "1") Integer usuarioId) {
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        
+        return pdfResponse("consolidado", sesion, mes, año, ifNoneMatch, reporteService::generarReporteConsolidado);
+    }
+    
+    // Generador de un PDF sobre un stream de salida (los métodos de ReporteService)
+    @FunctionalInterface
+    private interface GeneradorPdf {
+        void generar(Integer usuarioId, Integer mes, Integer año, OutputStream out) throws DocumentException;
+    }
+    
+    // Método auxiliar para armar la respuesta PDF con caché y ETag. El usuario sale de la
+    // sesión firmada: decide qué recetas entran al PDF y qué entrada de la caché se lee o
+    // se llena, así que no puede venir de un encabezado que el cliente elige.
+    // 1. Se calcula el ETag con una consulta de metadatos
+    // 2. Si coincide con If-None-Match se responde 304 sin generar nada
+    // 3. Si está en caché se envían los bytes guardados
+    // 4. Si no, el PDF se escribe directamente en la respuesta y se copia a la caché
+    // Los errores en el paso 4 llegan a media respuesta: con el 200 y los primeros bytes ya
+    // enviados no se puede responder 500, así que el cliente ve un PDF truncado y la conexión
+    // cortada. La copia solo se guarda al cerrar el stream, así que un PDF incompleto no entra
+    // a la caché. Para reportes grandes o datos poco confiables conviene /jobs, que sí informa
+    // el error en el estado del reporte.
+    private ResponseEntity<?> pdfResponse(String tipo, Sesion sesion, Integer mes, Integer año,
+                                          String ifNoneMatch, GeneradorPdf generador) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para generar reportes", HttpStatus.UNAUTHORIZED);
+        }
+        Integer usuarioId = sesion.usuarioId();
+        String etag = reporteCacheService.calcularEtag(tipo, usuarioId, mes, año);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        
+        if (coincideEtag(ifNoneMatch, etag)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        
+        headers.setContentType(MediaType.APPLICATION_PDF);
+        headers.setContentDispositionFormData("filename", "reporte-" + tipo + ".pdf");
+        
+        byte[] enCache = reporteCacheService.get(etag);
+        if (enCache != null) {
+            headers.setContentLength(enCache.length);
+            return new ResponseEntity<StreamingResponseBody>(out -> out.write(enCache), headers, HttpStatus.OK);
+        }
+        
+        // El PDF se escribe directamente en la respuesta, sin pasar por un byte[]
+        StreamingResponseBody body = out -> {
+            OutputStream captura = reporteCacheService.capturar(etag, out);
+            try {
+                generador.generar(usuarioId, mes, año, captura);
+            } catch (DocumentException e) {
+                throw new IOException("Error generando reporte de " + tipo, e);
+            }
+            captura.close();
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+    
+    private boolean coincideEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.startsWith("W/")) {
+                valor = valor.substring(2);
+            }
+            if (valor.equals("*") || valor.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    
+    // Los reportes en segundo plano son de quien los encola: todas las rutas /jobs
+    // exigen sesión y un reporte de otro usuario responde 404, como si no existiera
+    // (los IDs son consecutivos y se podrían recorrer).
+    
+    // POST: Encolar la generación de un reporte en segundo plano
+    @PostMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> encolarReporte(
+            @RequestBody Map<String, Object> jobData,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para generar reportes", HttpStatus.UNAUTHORIZED);
+        }
+        Integer usuarioId = sesion.usuarioId();
         
         try {
-            byte[] pdfBytes = reporteService.generarReporteRecetas(usuarioId, mes, año);
+            String tipo = jobData.get("tipo") != null ? jobData.get("tipo").toString().toLowerCase() : null;
+            if (tipo == null || !ReporteJobService.TIPOS.contains(tipo)) {
+                return errorResponse("Tipo de reporte inválido. Use: " + ReporteJobService.TIPOS, HttpStatus.BAD_REQUEST);
+            }
             
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("filename", "reporte-recetas.pdf");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
+            Integer mes = jobData.get("mes") != null ? Integer.parseInt(jobData.get("mes").toString()) : null;
+            Integer año = jobData.get("año") != null ? Integer.parseInt(jobData.get("año").toString()) : null;
+            if (mes != null && (mes < 1 || mes > 12)) {
+                return errorResponse("El mes debe estar entre 1 y 12", HttpStatus.BAD_REQUEST);
+            }
             
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            Reporte reporte = reporteJobService.encolar(tipo, usuarioId, mes, año);
             
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Reporte encolado");
+            response.put("reporte", reporte);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+            
+        } catch (TaskRejectedException e) {
+            return errorResponse("Hay demasiados reportes en proceso, intente más tarde", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (NumberFormatException e) {
+            return errorResponse("Mes y año deben ser números válidos", HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return errorResponse("Error encolando reporte: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
-    // GET: Obtener reporte consolidado en PDF
-    @GetMapping("/consolidado/pdf")
-    public ResponseEntity<byte[]> generarReporteConsolidado(
-            @RequestParam(required = false) Integer mes,
-            @RequestParam(required = false) Integer año,
-            @RequestHeader(value = "X-User-Id", defaultValue = "1") Integer usuarioId) {
+    // GET: Listar los reportes recientes del usuario
+    @GetMapping("/jobs")
+    public ResponseEntity<Map<String, Object>> listarReportes(
+            @RequestParam(defaultValue = "20") Integer limite,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para ver tus reportes", HttpStatus.UNAUTHORIZED);
+        }
         
         try {
-            byte[] pdfBytes = reporteService.generarReporteConsolidado(usuarioId, mes, año);
+            List<Reporte> reportes = reporteJobService.listarPorUsuario(sesion.usuarioId(), Math.min(limite, 100));
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("total", reportes.size());
+            response.put("reportes", reportes);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return errorResponse("Error obteniendo reportes: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // GET: Consultar el estado de un reporte encolado
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> obtenerEstadoReporte(
+            @PathVariable Integer id,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para ver tus reportes", HttpStatus.UNAUTHORIZED);
+        }
+        try {
+            Reporte reporte = reporteJobService.obtener(id);
+            if (!esDelUsuario(reporte, sesion)) {
+                return errorResponse("Reporte no encontrado", HttpStatus.NOT_FOUND);
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("reporte", reporte);
+            response.put("estado", reporte.getReporteEstado());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return errorResponse("Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // GET: Descargar el PDF de un reporte ya generado
+    @GetMapping("/jobs/{id}/pdf")
+    public ResponseEntity<?> descargarReporte(
+            @PathVariable Integer id,
+            @RequestAttribute(name = TokenInterceptor.SESION, required = false) Sesion sesion) {
+        if (sesion == null) {
+            return errorResponse("Inicia sesión para descargar tus reportes", HttpStatus.UNAUTHORIZED);
+        }
+        try {
+            Reporte reporte = reporteJobService.obtener(id);
+            if (!esDelUsuario(reporte, sesion)) {
+                return errorResponse("Reporte no encontrado", HttpStatus.NOT_FOUND);
+            }
+            if ("EXPIRADO".equals(reporte.getReporteEstado())) {
+                return errorResponse("El reporte expiró, vuelva a generarlo", HttpStatus.GONE);
+            }
+            Path archivo = reporteJobService.archivo(reporte);
+            if (!"COMPLETADO".equals(reporte.getReporteEstado()) || archivo == null) {
+                return errorResponse("El reporte aún no está disponible (estado: " + reporte.getReporteEstado() + ")", HttpStatus.CONFLICT);
+            }
             
+            if (!Files.isReadable(archivo)) {
+                return errorResponse("El archivo del reporte ya no existe", HttpStatus.GONE);
+            }
+            
+            Resource resource = new FileSystemResource(archivo);
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDispositionFormData("filename", "reporte-consolidado.pdf");
-            headers.setCacheControl("must-revalidate, post-check=0, pre-check=0");
-            
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            headers.setContentDispositionFormData("filename", archivo.getFileName().toString());
+            headers.setContentLength(Files.size(archivo));
+            return new ResponseEntity<>(resource, headers, HttpStatus.OK);
             
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return errorResponse("Error descargando reporte: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    private static boolean esDelUsuario(Reporte reporte, Sesion sesion) {
+        return reporte != null && reporte.getUsuarioId() != null
+            && reporte.getUsuarioId() == sesion.usuarioId();
+    }
+    
+    // GET: Estadísticas de la caché de reportes PDF
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> obtenerEstadisticasCache() {
+        Map<String, Object> response = new HashMap<>(reporteCacheService.getEstadisticas());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
     // GET: Obtener opciones de meses y años para filtros
     @GetMapping("/opciones-filtro")
     public ResponseEntity<Map<String, Object>> obtenerOpcionesFiltro() {
@@ -148,22 +340,20 @@ public class ReporteController {
             @RequestParam(required = false) Integer mes,
             @RequestParam(required = false) Integer año) {
         
+        if (mes != null && (mes < 1 || mes > 12)) {
+            return errorResponse("Mes inválido: " + mes, HttpStatus.BAD_REQUEST);
+        }
+        
         try {
-            // Este endpoint devolvería estadísticas en JSON para mostrar en la vista previa
-            // Por simplicidad, devolvemos datos de ejemplo
-            Map<String, Object> estadisticas = new HashMap<>();
-            estadisticas.put("medicamentos", 45);
-            estadisticas.put("materiales", 28);
-            estadisticas.put("recetas", 156);
-            estadisticas.put("pacientes", 89);
-            estadisticas.put("stockBajo", 12);
-            estadisticas.put("proximosCaducar", 8);
+            // Contadores en memoria: no consulta la base en cada llamada de la vista previa
+            Map<String, Object> estadisticas = estadisticasCacheService.getEstadisticas(mes, año);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("estadisticas", estadisticas);
             response.put("periodo", mes != null && año != null ? 
                 String.format("%d/%d", mes, año) : "Todos los períodos");
+            response.put("actualizado", estadisticasCacheService.getUltimaReconciliacion());
             
             return ResponseEntity.ok(response);
             
@@ -174,4 +364,12 @@ public class ReporteController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+    
+    // Método auxiliar para respuestas de error
+    private ResponseEntity<Map<String, Object>> errorResponse(String message, HttpStatus status) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("error", message);
+        return ResponseEntity.status(status).body(response);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+package com.escom.enfermeria.controllers;
+
+import com.escom.enfermeria.services.SaludService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Sondas para el orquestador de contenedores:
+// - /health/live: el proceso responde; no mira la base (un fallo de la base no debe reiniciar la API)
+// - /health/ready: la base responde según la última prueba guardada; 503 si no
+// - /health: detalle de ambos y del pool de conexiones
+@RestController
+@RequestMapping("/health")
+@CrossOrigin(origins = "http://localhost:5173")
+public class SaludController {
+    
+    private final SaludService saludService;
+    
+    public SaludController(SaludService saludService) {
+        this.saludService = saludService;
+    }
+    
+    @GetMapping("/live")
+    public ResponseEntity<Map<String, Object>> live() {
+        return ResponseEntity.ok(Map.of("status", "UP"));
+    }
+    
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        boolean lista = saludService.baseDatos().conectada();
+        return ResponseEntity.status(lista ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+            .body(Map.of("status", lista ? "UP" : "DOWN"));
+    }
+    
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> health() {
+        SaludService.EstadoBaseDatos baseDatos = saludService.baseDatos();
+        SaludService.EstadoPool pool = saludService.pool();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", baseDatos.conectada() ? "UP" : "DOWN");
+        response.put("database", baseDatos.conectada() ? "CONNECTED" : "DISCONNECTED");
+        response.put("verificadoHaceMs", System.currentTimeMillis() - baseDatos.verificadoEn());
+        if (baseDatos.error() != null) {
+            response.put("error", baseDatos.error());
+        }
+        if (pool != null) {
+            response.put("pool", Map.of(
+                "activas", pool.activas(),
+                "inactivas", pool.inactivas(),
+                "total", pool.total(),
+                "esperando", pool.esperando()
+            ));
+        }
+        return ResponseEntity.status(baseDatos.conectada() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+            .body(response);
+    }
+}
@@ -0,0 +1,21 @@
+package com.escom.enfermeria.dao;
+
+// Utilidades compartidas por las búsquedas de texto de los DAOs. Las búsquedas
+// usan ILIKE (resuelto con los índices GIN de pg_trgm, ver 06_busqueda_trigram.sql)
+// y ordenan por word_similarity para que lo más parecido salga primero.
+// El límite de resultados lo ajustan los controladores con Paginacion.limite, igual que
+// en los listados.
+public final class Busqueda {
+    
+    private Busqueda() {}
+    
+    // Patrón '%término%' con los comodines de LIKE escapados, para que
+    // un "%" o "_" escrito por el usuario se busque literalmente
+    static String patron(String termino) {
+        String escapado = termino.trim()
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+        return "%" + escapado + "%";
+    }
+}
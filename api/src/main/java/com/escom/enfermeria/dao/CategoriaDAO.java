@@ -1,23 +1,44 @@
 package com.escom.enfermeria.dao;
 
 import com.escom.enfermeria.models.Categoria;
+import com.escom.enfermeria.services.VersionDatosService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Repository
 public class CategoriaDAO {
     
+    private static final Logger log = LoggerFactory.getLogger(CategoriaDAO.class);
+    
     private final JdbcTemplate jdbcTemplate;
+    private final VersionDatosService versionDatos;
     
-    public CategoriaDAO(JdbcTemplate jdbcTemplate) {
+    public CategoriaDAO(JdbcTemplate jdbcTemplate, VersionDatosService versionDatos) {
         this.jdbcTemplate = jdbcTemplate;
+        this.versionDatos = versionDatos;
     }
     
+    // Diccionario de categorías en memoria. Son pocas y casi no cambian, así que se
+    // leen completas una vez y cada escritura de este DAO vuelve a leer la tabla y
+    // reemplaza el diccionario de un golpe. Nunca se modifica en su lugar: quien lo
+    // está leyendo sigue con la versión anterior, completa y consistente.
+    private record Diccionario(List<Categoria> ordenadas, Map<Integer, Categoria> porId,
+                               Map<Integer, String> nombres) {}
+    
+    private volatile Diccionario diccionario;
+    
     private final RowMapper<Categoria> categoriaRowMapper = new RowMapper<Categoria>() {
         @Override
         public Categoria mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -29,20 +50,27 @@ public class CategoriaDAO {
         }
     };
     
-    // Obtener todas las categorías
+    // Obtener todas las categorías (del diccionario en memoria)
     public List<Categoria> findAll() {
-        String sql = "SELECT * FROM categoria ORDER BY categoria_nom";
-        return jdbcTemplate.query(sql, categoriaRowMapper);
+        List<Categoria> ordenadas = diccionario().ordenadas();
+        List<Categoria> categorias = new ArrayList<>(ordenadas.size());
+        for (Categoria categoria : ordenadas) {
+            categorias.add(copia(categoria));
+        }
+        return categorias;
     }
     
-    // Obtener categoría por ID
+    // Obtener categoría por ID (del diccionario en memoria). Es una copia: el
+    // controlador la modifica antes de llamar a update.
     public Categoria findById(Integer id) {
-        try {
-            String sql = "SELECT * FROM categoria WHERE categoria_id = ?";
-            return jdbcTemplate.queryForObject(sql, categoriaRowMapper, id);
-        } catch (Exception e) {
-            return null;
-        }
+        Categoria categoria = diccionario().porId().get(id);
+        return categoria != null ? copia(categoria) : null;
+    }
+    
+    // Nombres por ID para armar las listas de medicamentos y materiales sin JOIN.
+    // Es una instantánea inmutable: una consulta usa la misma de principio a fin.
+    public Map<Integer, String> nombres() {
+        return diccionario().nombres();
     }
     
     // Crear nueva categoría
@@ -52,10 +80,13 @@ public class CategoriaDAO {
             VALUES (?, ?) 
             RETURNING *
             """;
-        return jdbcTemplate.queryForObject(sql, categoriaRowMapper,
+        Categoria nueva = jdbcTemplate.queryForObject(sql, categoriaRowMapper,
             categoria.getCategoriaNom(),
             categoria.getCategoriaDesc()
         );
+        recargar();
+        versionDatos.modificada("categoria");
+        return nueva;
     }
     
     // Actualizar categoría
@@ -67,17 +98,24 @@ public class CategoriaDAO {
             WHERE categoria_id = ?
             RETURNING *
             """;
-        return jdbcTemplate.queryForObject(sql, categoriaRowMapper,
+        Categoria actualizada = jdbcTemplate.queryForObject(sql, categoriaRowMapper,
             categoria.getCategoriaNom(),
             categoria.getCategoriaDesc(),
             categoria.getCategoriaId()
         );
+        recargar();
+        versionDatos.modificada("categoria");
+        return actualizada;
     }
     
     // Eliminar categoría
     public boolean delete(Integer id) {
         String sql = "DELETE FROM categoria WHERE categoria_id = ?";
         int rowsAffected = jdbcTemplate.update(sql, id);
+        if (rowsAffected > 0) {
+            recargar();
+            versionDatos.modificada("categoria");
+        }
         return rowsAffected > 0;
     }
 
@@ -91,6 +129,41 @@ public class CategoriaDAO {
         }
     }
     
+    // Cargar el diccionario al iniciar; si la base no responde se carga en la primera lectura
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        try {
+            log.debug("Diccionario de categorías cargado con {} categorías", recargar().porId().size());
+        } catch (Exception e) {
+            log.warn("No se pudo cargar el diccionario de categorías: {}", e.getMessage());
+        }
+    }
+    
+    private Diccionario diccionario() {
+        Diccionario actual = diccionario;
+        return actual != null ? actual : recargar();
+    }
+    
+    // Leer la tabla y publicar un diccionario nuevo. Sincronizado para que dos
+    // escrituras seguidas no publiquen sus lecturas en desorden.
+    private synchronized Diccionario recargar() {
+        String sql = "SELECT * FROM categoria ORDER BY categoria_nom";
+        List<Categoria> ordenadas = jdbcTemplate.query(sql, categoriaRowMapper);
+        Map<Integer, Categoria> porId = new HashMap<>();
+        Map<Integer, String> nombres = new HashMap<>();
+        for (Categoria categoria : ordenadas) {
+            porId.put(categoria.getCategoriaId(), categoria);
+            nombres.put(categoria.getCategoriaId(), categoria.getCategoriaNom());
+        }
+        Diccionario nuevo = new Diccionario(List.copyOf(ordenadas), Map.copyOf(porId), Map.copyOf(nombres));
+        diccionario = nuevo;
+        return nuevo;
+    }
+    
+    private static Categoria copia(Categoria categoria) {
+        return new Categoria(categoria.getCategoriaId(), categoria.getCategoriaNom(), categoria.getCategoriaDesc());
+    }
+    
     // Método para acceder al jdbcTemplate si se necesita en el Controller
     public JdbcTemplate getJdbcTemplate() {
         return this.jdbcTemplate;
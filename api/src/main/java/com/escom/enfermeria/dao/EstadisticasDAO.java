@@ -0,0 +1,160 @@
+package com.escom.enfermeria.dao;
+
+import com.escom.enfermeria.models.EstadisticasMateriales;
+import com.escom.enfermeria.models.EstadisticasMedicamentos;
+import com.escom.enfermeria.models.EstadisticasPacientes;
+import com.escom.enfermeria.models.EstadisticasRecetas;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Consultas de estadísticas: cada método calcula todos los contadores de una
+// entidad en un solo SELECT con FILTER, sin traer filas al servidor de aplicación
+@Repository
+public class EstadisticasDAO {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public EstadisticasDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Mismos criterios que MedicamentoDAO.findStockBajo y findProximosCaducar
+    public EstadisticasMedicamentos medicamentos() {
+        String sql = """
+            SELECT
+                COUNT(*) AS total,
+                COUNT(*) FILTER (WHERE medicamento_stock <= medicamento_stock_min) AS stock_bajo,
+                COUNT(*) FILTER (WHERE medicamento_fec_cad BETWEEN CURRENT_DATE AND (CURRENT_DATE + INTERVAL '30 days')) AS proximos_caducar,
+                COUNT(*) FILTER (WHERE medicamento_estado = 'AGOTADO') AS agotados
+            FROM medicamento
+            """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> new EstadisticasMedicamentos(
+            rs.getInt("total"),
+            rs.getInt("stock_bajo"),
+            rs.getInt("proximos_caducar"),
+            rs.getInt("agotados")
+        ));
+    }
+    
+    // Mismos criterios que MaterialDAO.findStockBajo y findEnMantenimiento
+    public EstadisticasMateriales materiales() {
+        String sql = """
+            SELECT
+                COUNT(*) AS total,
+                COUNT(*) FILTER (WHERE material_stock <= material_stock_min) AS stock_bajo,
+                COUNT(*) FILTER (WHERE material_estado = 'MANTENIMIENTO') AS en_mantenimiento,
+                COUNT(*) FILTER (WHERE material_estado = 'AGOTADO') AS agotados
+            FROM material
+            """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> new EstadisticasMateriales(
+            rs.getInt("total"),
+            rs.getInt("stock_bajo"),
+            rs.getInt("en_mantenimiento"),
+            rs.getInt("agotados")
+        ));
+    }
+    
+    public EstadisticasPacientes pacientes() {
+        String sql = """
+            SELECT
+                COUNT(*) AS total,
+                COALESCE(AVG(paciente_edad), 0) AS promedio_edad,
+                -- COUNT(DISTINCT) ignora NULL; la consulta anterior (SELECT DISTINCT) contaba
+                -- "sin escuela" como una escuela más, y se conserva ese resultado
+                COUNT(DISTINCT paciente_escuela)
+                    + COALESCE(MAX(CASE WHEN paciente_escuela IS NULL THEN 1 ELSE 0 END), 0) AS escuelas_unicas,
+                COUNT(*) FILTER (WHERE paciente_edad BETWEEN 1 AND 17) AS menores,
+                COUNT(*) FILTER (WHERE paciente_edad BETWEEN 18 AND 25) AS jovenes,
+                COUNT(*) FILTER (WHERE paciente_edad BETWEEN 26 AND 40) AS adultos,
+                COUNT(*) FILTER (WHERE paciente_edad BETWEEN 41 AND 120) AS mayores
+            FROM paciente
+            """;
+        return jdbcTemplate.queryForObject(sql, (rs, rowNum) -> new EstadisticasPacientes(
+            rs.getInt("total"),
+            rs.getDouble("promedio_edad"),
+            rs.getInt("escuelas_unicas"),
+            rs.getInt("menores"),
+            rs.getInt("jovenes"),
+            rs.getInt("adultos"),
+            rs.getInt("mayores")
+        ));
+    }
+    
+    // Recetas por estado. usuarioId null = todos los usuarios;
+    // desde/hasta null = todos los períodos, si no rango [desde, hasta)
+    public EstadisticasRecetas recetas(Integer usuarioId, LocalDateTime desde, LocalDateTime hasta) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT
+                COUNT(*) AS total,
+                COUNT(*) FILTER (WHERE receta_estado = 'ACTIVA') AS activas,
+                COUNT(*) FILTER (WHERE receta_estado = 'COMPLETADA') AS completadas,
+                COUNT(*) FILTER (WHERE receta_estado = 'CANCELADA') AS canceladas
+            FROM receta
+            WHERE 1 = 1
+            """);
+        List<Object> args = new ArrayList<>();
+        if (usuarioId != null) {
+            sql.append(" AND usuario_id = ?");
+            args.add(usuarioId);
+        }
+        if (desde != null && hasta != null) {
+            sql.append(" AND receta_fecha >= ? AND receta_fecha < ?");
+            args.add(desde);
+            args.add(hasta);
+        }
+        
+        return jdbcTemplate.queryForObject(sql.toString(), (rs, rowNum) -> new EstadisticasRecetas(
+            rs.getInt("total"),
+            rs.getInt("activas"),
+            rs.getInt("completadas"),
+            rs.getInt("canceladas")
+        ), args.toArray());
+    }
+    
+    // ===== Consultas para reconciliar los contadores en memoria =====
+    
+    public Set<Integer> idsMedicamentosStockBajo() {
+        String sql = "SELECT medicamento_id FROM medicamento WHERE medicamento_stock <= medicamento_stock_min";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Integer.class));
+    }
+    
+    public Set<Integer> idsMedicamentosProximosCaducar() {
+        String sql = """
+            SELECT medicamento_id FROM medicamento
+            WHERE medicamento_fec_cad BETWEEN CURRENT_DATE AND (CURRENT_DATE + INTERVAL '30 days')
+            """;
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Integer.class));
+    }
+    
+    public Set<Integer> idsMaterialesStockBajo() {
+        String sql = "SELECT material_id FROM material WHERE material_stock <= material_stock_min";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Integer.class));
+    }
+    
+    // Total de recetas por mes de emisión
+    public Map<YearMonth, Integer> recetasPorMes() {
+        String sql = """
+            SELECT
+                EXTRACT(YEAR FROM receta_fecha)::int AS año,
+                EXTRACT(MONTH FROM receta_fecha)::int AS mes,
+                COUNT(*) AS total
+            FROM receta
+            WHERE receta_fecha IS NOT NULL
+            GROUP BY 1, 2
+            """;
+        Map<YearMonth, Integer> porMes = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+            porMes.put(YearMonth.of(rs.getInt("año"), rs.getInt("mes")), rs.getInt("total")));
+        return porMes;
+    }
+}
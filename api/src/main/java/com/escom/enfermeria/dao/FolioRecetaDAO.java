@@ -0,0 +1,59 @@
+package com.escom.enfermeria.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Folios de receta REC-aammdd-N con N tomado de la secuencia receta_folio_seq.
+// Cada nextval reserva un bloque de BLOQUE números (la secuencia avanza de BLOQUE en
+// BLOQUE) que se reparten en memoria con un contador atómico: la mayoría de los folios
+// no tocan la base y dos recetas simultáneas nunca reciben el mismo número.
+// Los números sin usar de un bloque se pierden al reiniciar; los folios quedan con
+// huecos pero nunca se repiten.
+@Repository
+public class FolioRecetaDAO {
+    
+    // Debe coincidir con INCREMENT BY de receta_folio_seq (09_folio_receta.sql)
+    static final int BLOQUE = 50;
+    
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ofPattern("yyMMdd");
+    
+    // Números [siguiente, fin) disponibles en memoria
+    private record Bloque(AtomicLong siguiente, long fin) {}
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Vacío al iniciar: el primer folio reserva el primer bloque
+    private volatile Bloque bloque = new Bloque(new AtomicLong(), 0);
+    
+    public FolioRecetaDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    public String siguienteFolio() {
+        return "REC-" + LocalDate.now().format(FECHA) + "-" + siguienteNumero();
+    }
+    
+    private long siguienteNumero() {
+        while (true) {
+            Bloque actual = bloque;
+            long numero = actual.siguiente().getAndIncrement();
+            if (numero < actual.fin()) {
+                return numero;
+            }
+            reservar(actual);
+        }
+    }
+    
+    // Solo un hilo pide el bloque nuevo; los demás esperan aquí y reintentan con él
+    private synchronized void reservar(Bloque agotado) {
+        if (bloque != agotado) {
+            return;
+        }
+        Long inicio = jdbcTemplate.queryForObject("SELECT nextval('receta_folio_seq')", Long.class);
+        bloque = new Bloque(new AtomicLong(inicio), inicio + BLOQUE);
+    }
+}
@@ -0,0 +1,78 @@
+package com.escom.enfermeria.dao;
+
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// RowMapper que resuelve los índices de columna una sola vez por consulta, con
+// ResultSetMetaData, y después lee cada fila por índice. Las columnas opcionales
+// (nombres de los JOIN) se detectan aquí en lugar de atrapar una SQLException por fila.
+// Guarda estado: se crea una instancia nueva para cada consulta.
+abstract class IndiceRowMapper<T> implements RowMapper<T> {
+    
+    private Map<String, Integer> columnas;
+    private boolean resuelto;
+    
+    @Override
+    public final T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        if (!resuelto) {
+            ResultSetMetaData meta = rs.getMetaData();
+            columnas = new HashMap<>();
+            // De atrás hacia adelante: con nombres repetidos gana la primera, igual que findColumn
+            for (int i = meta.getColumnCount(); i >= 1; i--) {
+                columnas.put(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+            }
+            resolver();
+            columnas = null;
+            resuelto = true;
+        }
+        return mapear(rs);
+    }
+    
+    // Guardar en campos los índices que usa mapear (llamar a requerida/opcional)
+    protected abstract void resolver() throws SQLException;
+    
+    protected abstract T mapear(ResultSet rs) throws SQLException;
+    
+    protected final int requerida(String columna) throws SQLException {
+        Integer indice = columnas.get(columna);
+        if (indice == null) {
+            throw new SQLException("La consulta no trae la columna " + columna);
+        }
+        return indice;
+    }
+    
+    // 0 si la columna no viene en la consulta
+    protected final int opcional(String columna) {
+        return columnas.getOrDefault(columna, 0);
+    }
+    
+    protected static String texto(ResultSet rs, int indice) throws SQLException {
+        return indice > 0 ? rs.getString(indice) : null;
+    }
+    
+    // Entero que puede ser NULL en la base
+    protected static Integer entero(ResultSet rs, int indice) throws SQLException {
+        int valor = rs.getInt(indice);
+        return rs.wasNull() ? null : valor;
+    }
+    
+    protected static LocalDate fecha(ResultSet rs, int indice) throws SQLException {
+        Date valor = rs.getDate(indice);
+        return valor != null ? valor.toLocalDate() : null;
+    }
+    
+    protected static LocalDateTime fechaHora(ResultSet rs, int indice) throws SQLException {
+        Timestamp valor = rs.getTimestamp(indice);
+        return valor != null ? valor.toLocalDateTime() : null;
+    }
+}
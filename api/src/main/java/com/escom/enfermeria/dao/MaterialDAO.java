@@ -1,61 +1,88 @@
 package com.escom.enfermeria.dao;
 
 import com.escom.enfermeria.models.Material;
+import com.escom.enfermeria.services.EstadisticasCacheService;
+import com.escom.enfermeria.services.VersionDatosService;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Repository
 public class MaterialDAO {
     
     private final JdbcTemplate jdbcTemplate;
+    private final EstadisticasCacheService estadisticasCache;
+    private final VersionDatosService versionDatos;
+    private final CategoriaDAO categoriaDAO;
     
-    public MaterialDAO(JdbcTemplate jdbcTemplate) {
+    public MaterialDAO(JdbcTemplate jdbcTemplate, EstadisticasCacheService estadisticasCache,
+                       VersionDatosService versionDatos, CategoriaDAO categoriaDAO) {
         this.jdbcTemplate = jdbcTemplate;
+        this.estadisticasCache = estadisticasCache;
+        this.versionDatos = versionDatos;
+        this.categoriaDAO = categoriaDAO;
     }
     
-    // RowMapper para Material
-    private final RowMapper<Material> materialRowMapper = new RowMapper<Material>() {
+    // RowMapper para Material (uno por consulta; ver IndiceRowMapper). El nombre de la
+    // categoría sale del diccionario de CategoriaDAO en lugar de un JOIN.
+    static final class MaterialRowMapper extends IndiceRowMapper<Material> {
+        
+        private final Map<Integer, String> nombresCategoria;
+        
+        private int id, nom, desc, fecComp, estado, stock, stockMin, precio;
+        private int categoriaId, createdAt, updatedAt;
+        
+        MaterialRowMapper(Map<Integer, String> nombresCategoria) {
+            this.nombresCategoria = nombresCategoria;
+        }
+        
         @Override
-        public Material mapRow(ResultSet rs, int rowNum) throws SQLException {
+        protected void resolver() throws SQLException {
+            id = requerida("material_id");
+            nom = requerida("material_nom");
+            desc = requerida("material_desc");
+            fecComp = requerida("material_fec_comp");
+            estado = requerida("material_estado");
+            stock = requerida("material_stock");
+            stockMin = requerida("material_stock_min");
+            precio = requerida("material_precio");
+            categoriaId = requerida("categoria_id");
+            createdAt = requerida("created_at");
+            updatedAt = requerida("updated_at");
+        }
+        
+        @Override
+        protected Material mapear(ResultSet rs) throws SQLException {
             Material material = new Material();
             
-            material.setMaterialId(rs.getInt("material_id"));
-            material.setMaterialNom(rs.getString("material_nom"));
-            material.setMaterialDesc(rs.getString("material_desc"));
-            
-            // Manejar fecha que puede ser null
-            if (rs.getDate("material_fec_comp") != null) {
-                material.setMaterialFecComp(rs.getDate("material_fec_comp").toLocalDate());
-            }
-            
-            material.setMaterialEstado(rs.getString("material_estado"));
-            material.setMaterialStock(rs.getInt("material_stock"));
-            material.setMaterialStockMin(rs.getInt("material_stock_min"));
-            material.setMaterialPrecio(rs.getBigDecimal("material_precio"));
-            material.setCategoriaId(rs.getInt("categoria_id"));
-            
-            // Obtener nombre de categoría si está en el resultado
-            try {
-                material.setCategoriaNombre(rs.getString("categoria_nom"));
-            } catch (SQLException e) {
-                // Columna no presente, ignorar
-            }
-            
-            if (rs.getTimestamp("created_at") != null) {
-                material.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
-            }
-            if (rs.getTimestamp("updated_at") != null) {
-                material.setUpdated_at(rs.getTimestamp("updated_at").toLocalDateTime());
-            }
+            material.setMaterialId(rs.getInt(id));
+            material.setMaterialNom(rs.getString(nom));
+            material.setMaterialDesc(rs.getString(desc));
+            material.setMaterialFecComp(fecha(rs, fecComp));
+            material.setMaterialEstado(rs.getString(estado));
+            material.setMaterialStock(rs.getInt(stock));
+            material.setMaterialStockMin(rs.getInt(stockMin));
+            material.setMaterialPrecio(rs.getBigDecimal(precio));
+            int categoria = rs.getInt(categoriaId);
+            material.setCategoriaId(categoria);
+            material.setCategoriaNombre(nombresCategoria.get(categoria));
+            material.setCreated_at(fechaHora(rs, createdAt));
+            material.setUpdated_at(fechaHora(rs, updatedAt));
             
             return material;
         }
-    };
+    }
     
     // CREATE: Insertar nuevo material
     public Material create(Material material) {
@@ -68,7 +95,7 @@ public class MaterialDAO {
             RETURNING *
             """;
         
-        return jdbcTemplate.queryForObject(sql, materialRowMapper,
+        Material guardado = jdbcTemplate.queryForObject(sql, new MaterialRowMapper(categoriaDAO.nombres()),
             material.getMaterialNom(),
             material.getMaterialDesc(),
             material.getMaterialFecComp(),
@@ -78,44 +105,76 @@ public class MaterialDAO {
             material.getMaterialPrecio(),
             material.getCategoriaId()
         );
+        estadisticasCache.materialCreado(guardado);
+        versionDatos.modificada("material");
+        return guardado;
     }
     
     // READ: Obtener todos los materiales
     public List<Material> findAll() {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM material m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM material m
             ORDER BY m.material_id DESC
             """;
-        return jdbcTemplate.query(sql, materialRowMapper);
+        return jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()));
+    }
+    
+    // READ: Materiales creados o modificados después de la marca (sincronización incremental).
+    // Usa el índice sobre updated_at.
+    public List<Material> findModificadosDesde(LocalDateTime desde) {
+        String sql = """
+            SELECT m.*
+            FROM material m
+            WHERE m.updated_at > ?
+            ORDER BY m.updated_at, m.material_id
+            """;
+        return jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()), desde);
+    }
+    
+    // READ: Página de materiales por cursor (keyset) en el mismo orden que findAll.
+    // antesDeId null = primera página. Devuelve hasta limite + 1 filas para que
+    // quien llama sepa si hay una página siguiente.
+    public List<Material> findPagina(Integer antesDeId, int limite) {
+        String sql = """
+            SELECT m.*
+            FROM material m
+            %s
+            ORDER BY m.material_id DESC
+            LIMIT ?
+            """.formatted(antesDeId != null ? "WHERE m.material_id < ?" : "");
+        return antesDeId != null
+            ? jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()), antesDeId, limite + 1)
+            : jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()), limite + 1);
     }
     
     // READ: Obtener material por ID
     public Material findById(Integer id) {
         try {
             String sql = """
-                SELECT m.*, c.categoria_nom 
-                FROM material m 
-                LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+                SELECT m.*
+                FROM material m
                 WHERE m.material_id = ?
                 """;
-            return jdbcTemplate.queryForObject(sql, materialRowMapper, id);
+            return jdbcTemplate.queryForObject(sql, new MaterialRowMapper(categoriaDAO.nombres()), id);
         } catch (Exception e) {
             return null;
         }
     }
     
     // READ: Buscar materiales por nombre
-    public List<Material> findByNombre(String nombre) {
+    public List<Material> findByNombre(String nombre, int limite) {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM material m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
-            WHERE LOWER(m.material_nom) LIKE LOWER(?) OR LOWER(m.material_desc) LIKE LOWER(?)
-            ORDER BY m.material_nom
+            SELECT m.*
+            FROM material m
+            WHERE m.material_nom ILIKE ? OR m.material_desc ILIKE ?
+            ORDER BY GREATEST(word_similarity(?, m.material_nom), word_similarity(?, m.material_desc)) DESC,
+                     m.material_nom
+            LIMIT ?
             """;
-        return jdbcTemplate.query(sql, materialRowMapper, "%" + nombre + "%", "%" + nombre + "%");
+        String patron = Busqueda.patron(nombre);
+        String t = nombre.trim();
+        return jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()), patron, patron, t, t, limite);
     }
     
     // UPDATE: Actualizar material
@@ -135,7 +194,7 @@ public class MaterialDAO {
             RETURNING *
             """;
         
-        return jdbcTemplate.queryForObject(sql, materialRowMapper,
+        Material guardado = jdbcTemplate.queryForObject(sql, new MaterialRowMapper(categoriaDAO.nombres()),
             material.getMaterialNom(),
             material.getMaterialDesc(),
             material.getMaterialFecComp(),
@@ -146,6 +205,9 @@ public class MaterialDAO {
             material.getCategoriaId(),
             material.getMaterialId()
         );
+        estadisticasCache.materialActualizado(guardado);
+        versionDatos.modificada("material");
+        return guardado;
     }
     
     // UPDATE: Actualizar solo el stock
@@ -160,14 +222,78 @@ public class MaterialDAO {
                 END,
                 updated_at = CURRENT_TIMESTAMP
             WHERE material_id = ?
+            RETURNING material_stock <= material_stock_min AS stock_bajo
             """;
-        return jdbcTemplate.update(sql, nuevoStock, nuevoStock, nuevoStock, id);
+        List<Boolean> stockBajo = jdbcTemplate.queryForList(sql, Boolean.class, nuevoStock, nuevoStock, nuevoStock, id);
+        if (!stockBajo.isEmpty()) {
+            estadisticasCache.materialStockActualizado(id, stockBajo.get(0));
+            versionDatos.modificada("material");
+        }
+        return stockBajo.size();
+    }
+    
+    // UPDATE: Sumar (o restar, si es negativo) stock a varios materiales en una sola
+    // sentencia relativa al valor actual. Igual que en medicamentos, si algún ajuste dejaría
+    // el stock negativo se lanza StockInsuficienteException y no se aplica nada.
+    public void ajustarStock(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        String valores = String.join(", ", Collections.nCopies(deltas.size(), "(?::int, ?::int)"));
+        String sql = """
+            UPDATE material m SET
+                material_stock = m.material_stock + a.delta,
+                material_estado = CASE 
+                    WHEN m.material_stock + a.delta <= 0 THEN 'AGOTADO'
+                    WHEN m.material_stock + a.delta < m.material_stock_min THEN 'RESERVADO'
+                    ELSE 'DISPONIBLE'
+                END,
+                updated_at = CURRENT_TIMESTAMP
+            FROM (VALUES %s) AS a (material_id, delta)
+            WHERE m.material_id = a.material_id
+              AND m.material_stock + a.delta >= 0
+            RETURNING m.material_id, m.material_stock <= m.material_stock_min AS stock_bajo
+            """.formatted(valores);
+        
+        List<Object> args = new ArrayList<>();
+        deltas.forEach((materialId, delta) -> {
+            args.add(materialId);
+            args.add(delta);
+        });
+        
+        Map<Integer, Boolean> ajustados = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs ->
+            ajustados.put(rs.getInt("material_id"), rs.getBoolean("stock_bajo")), args.toArray());
+        
+        if (ajustados.size() < deltas.size()) {
+            Set<Integer> faltantes = new TreeSet<>(deltas.keySet());
+            faltantes.removeAll(ajustados.keySet());
+            throw new StockInsuficienteException("materiales", faltantes);
+        }
+        
+        ajustados.forEach(estadisticasCache::materialStockActualizado);
+        versionDatos.modificada("material");
     }
     
     // DELETE: Eliminar material
     public boolean delete(Integer id) {
-        String sql = "DELETE FROM material WHERE material_id = ?";
+        // La baja queda en eliminacion para los clientes que sincronizan con ?since=.
+        // Si hay movimientos que lo referencian, la llave foránea lo impide
+        // (DataIntegrityViolationException) y no se borra nada.
+        String sql = """
+            WITH borrado AS (
+                DELETE FROM material WHERE material_id = ? RETURNING material_id
+            )
+            INSERT INTO eliminacion (entidad, registro_id)
+            SELECT 'material', material_id FROM borrado
+            ON CONFLICT (entidad, registro_id) DO UPDATE SET eliminado_at = EXCLUDED.eliminado_at
+            """;
         int rowsAffected = jdbcTemplate.update(sql, id);
+        if (rowsAffected > 0) {
+            estadisticasCache.materialEliminado(id);
+            versionDatos.modificada("material");
+        }
         return rowsAffected > 0;
     }
     
@@ -180,37 +306,34 @@ public class MaterialDAO {
     // Obtener materiales por estado
     public List<Material> findByEstado(String estado) {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM material m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM material m
             WHERE m.material_estado = ?
             ORDER BY m.material_nom
             """;
-        return jdbcTemplate.query(sql, materialRowMapper, estado);
+        return jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()), estado);
     }
     
     // Obtener materiales con stock bajo
     public List<Material> findStockBajo() {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM material m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM material m
             WHERE m.material_stock <= m.material_stock_min
             ORDER BY m.material_stock
             """;
-        return jdbcTemplate.query(sql, materialRowMapper);
+        return jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()));
     }
     
     // Obtener materiales en mantenimiento
     public List<Material> findEnMantenimiento() {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM material m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM material m
             WHERE m.material_estado = 'MANTENIMIENTO'
             ORDER BY m.material_nom
             """;
-        return jdbcTemplate.query(sql, materialRowMapper);
+        return jdbcTemplate.query(sql, new MaterialRowMapper(categoriaDAO.nombres()));
     }
     
     // Método para verificar si hay medicamentos usando esta categoría
@@ -1,66 +1,104 @@
 package com.escom.enfermeria.dao;
 
 import com.escom.enfermeria.models.Medicamento;
+import com.escom.enfermeria.services.EstadisticasCacheService;
+import com.escom.enfermeria.services.MedicamentoSugerenciasService;
+import com.escom.enfermeria.services.VersionDatosService;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 @Repository
 public class MedicamentoDAO {
     
+    // Filas que el driver trae por cada viaje cuando se recorre con cursor
+    private static final int FETCH_SIZE = 200;
+    
     private final JdbcTemplate jdbcTemplate;
+    private final EstadisticasCacheService estadisticasCache;
+    private final MedicamentoSugerenciasService sugerencias;
+    private final VersionDatosService versionDatos;
+    private final CategoriaDAO categoriaDAO;
     
-    public MedicamentoDAO(JdbcTemplate jdbcTemplate) {
+    public MedicamentoDAO(JdbcTemplate jdbcTemplate, EstadisticasCacheService estadisticasCache,
+                          MedicamentoSugerenciasService sugerencias, VersionDatosService versionDatos,
+                          CategoriaDAO categoriaDAO) {
         this.jdbcTemplate = jdbcTemplate;
+        this.estadisticasCache = estadisticasCache;
+        this.sugerencias = sugerencias;
+        this.versionDatos = versionDatos;
+        this.categoriaDAO = categoriaDAO;
     }
     
-    // RowMapper para Medicamento
-    private final RowMapper<Medicamento> medicamentoRowMapper = new RowMapper<Medicamento>() {
+    // RowMapper para Medicamento (uno por consulta; ver IndiceRowMapper). El nombre de la
+    // categoría sale del diccionario de CategoriaDAO en lugar de un JOIN. Público solo para
+    // benchmarks.RowMapperBenchmark.
+    public static final class MedicamentoRowMapper extends IndiceRowMapper<Medicamento> {
+        
+        private final Map<Integer, String> nombresCategoria;
+        
+        private int id, nom, desc, fecComp, fecCad, lote, laboratorio, estado;
+        private int stock, stockMin, precio, categoriaId, createdAt, updatedAt;
+        
+        public MedicamentoRowMapper(Map<Integer, String> nombresCategoria) {
+            this.nombresCategoria = nombresCategoria;
+        }
+        
         @Override
-        public Medicamento mapRow(ResultSet rs, int rowNum) throws SQLException {
+        protected void resolver() throws SQLException {
+            id = requerida("medicamento_id");
+            nom = requerida("medicamento_nom");
+            desc = requerida("medicamento_desc");
+            fecComp = requerida("medicamento_fec_comp");
+            fecCad = requerida("medicamento_fec_cad");
+            lote = requerida("medicamento_lote");
+            laboratorio = requerida("medicamento_laboratorio");
+            estado = requerida("medicamento_estado");
+            stock = requerida("medicamento_stock");
+            stockMin = requerida("medicamento_stock_min");
+            precio = requerida("medicamento_precio");
+            categoriaId = requerida("categoria_id");
+            createdAt = requerida("created_at");
+            updatedAt = requerida("updated_at");
+        }
+        
+        @Override
+        protected Medicamento mapear(ResultSet rs) throws SQLException {
             Medicamento medicamento = new Medicamento();
             
-            medicamento.setMedicamentoId(rs.getInt("medicamento_id"));
-            medicamento.setMedicamentoNom(rs.getString("medicamento_nom"));
-            medicamento.setMedicamentoDesc(rs.getString("medicamento_desc"));
-            
-            // Manejar fechas que pueden ser null
-            if (rs.getDate("medicamento_fec_comp") != null) {
-                medicamento.setMedicamentoFecComp(rs.getDate("medicamento_fec_comp").toLocalDate());
-            }
-            if (rs.getDate("medicamento_fec_cad") != null) {
-                medicamento.setMedicamentoFecCad(rs.getDate("medicamento_fec_cad").toLocalDate());
-            }
-            
-            medicamento.setMedicamentoLote(rs.getString("medicamento_lote"));
-            medicamento.setMedicamentoLaboratorio(rs.getString("medicamento_laboratorio"));
-            medicamento.setMedicamentoEstado(rs.getString("medicamento_estado"));
-            medicamento.setMedicamentoStock(rs.getInt("medicamento_stock"));
-            medicamento.setMedicamentoStockMin(rs.getInt("medicamento_stock_min"));
-            medicamento.setMedicamentoPrecio(rs.getBigDecimal("medicamento_precio"));
-            medicamento.setCategoriaId(rs.getInt("categoria_id"));
-            
-            // Obtener nombre de categoría si está en el resultado
-            try {
-                medicamento.setCategoriaNombre(rs.getString("categoria_nom"));
-            } catch (SQLException e) {
-                // Columna no presente, ignorar
-            }
-            
-            if (rs.getTimestamp("created_at") != null) {
-                medicamento.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
-            }
-            if (rs.getTimestamp("updated_at") != null) {
-                medicamento.setUpdated_at(rs.getTimestamp("updated_at").toLocalDateTime());
-            }
+            medicamento.setMedicamentoId(rs.getInt(id));
+            medicamento.setMedicamentoNom(rs.getString(nom));
+            medicamento.setMedicamentoDesc(rs.getString(desc));
+            medicamento.setMedicamentoFecComp(fecha(rs, fecComp));
+            medicamento.setMedicamentoFecCad(fecha(rs, fecCad));
+            medicamento.setMedicamentoLote(rs.getString(lote));
+            medicamento.setMedicamentoLaboratorio(rs.getString(laboratorio));
+            medicamento.setMedicamentoEstado(rs.getString(estado));
+            medicamento.setMedicamentoStock(rs.getInt(stock));
+            medicamento.setMedicamentoStockMin(rs.getInt(stockMin));
+            medicamento.setMedicamentoPrecio(rs.getBigDecimal(precio));
+            int categoria = rs.getInt(categoriaId);
+            medicamento.setCategoriaId(categoria);
+            medicamento.setCategoriaNombre(nombresCategoria.get(categoria));
+            medicamento.setCreated_at(fechaHora(rs, createdAt));
+            medicamento.setUpdated_at(fechaHora(rs, updatedAt));
             
             return medicamento;
         }
-    };
+    }
     
     // CREATE: Insertar nuevo medicamento
     public Medicamento create(Medicamento medicamento) {
@@ -74,7 +112,7 @@ public class MedicamentoDAO {
             RETURNING *
             """;
         
-        return jdbcTemplate.queryForObject(sql, medicamentoRowMapper,
+        Medicamento guardado = jdbcTemplate.queryForObject(sql, new MedicamentoRowMapper(categoriaDAO.nombres()),
             medicamento.getMedicamentoNom(),
             medicamento.getMedicamentoDesc(),
             medicamento.getMedicamentoFecComp(),
@@ -87,44 +125,93 @@ public class MedicamentoDAO {
             medicamento.getMedicamentoPrecio(),
             medicamento.getCategoriaId()
         );
+        estadisticasCache.medicamentoCreado(guardado);
+        versionDatos.modificada("medicamento");
+        sugerencias.guardar(guardado);
+        return guardado;
     }
     
     // READ: Obtener todos los medicamentos
     public List<Medicamento> findAll() {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM medicamento m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM medicamento m
+            ORDER BY m.medicamento_id DESC
+            """;
+        return jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()));
+    }
+    
+    // READ: Medicamentos creados o modificados después de la marca (sincronización incremental).
+    // Usa el índice sobre updated_at.
+    public List<Medicamento> findModificadosDesde(LocalDateTime desde) {
+        String sql = """
+            SELECT m.*
+            FROM medicamento m
+            WHERE m.updated_at > ?
+            ORDER BY m.updated_at, m.medicamento_id
+            """;
+        return jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()), desde);
+    }
+    
+    // READ: Página de medicamentos por cursor (keyset) en el mismo orden que findAll.
+    // antesDeId null = primera página. Devuelve hasta limite + 1 filas para que
+    // quien llama sepa si hay una página siguiente.
+    public List<Medicamento> findPagina(Integer antesDeId, int limite) {
+        String sql = """
+            SELECT m.*
+            FROM medicamento m
+            %s
+            ORDER BY m.medicamento_id DESC
+            LIMIT ?
+            """.formatted(antesDeId != null ? "WHERE m.medicamento_id < ?" : "");
+        return antesDeId != null
+            ? jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()), antesDeId, limite + 1)
+            : jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()), limite + 1);
+    }
+    
+    // READ: Recorrer todos los medicamentos con un cursor de solo avance
+    // Cada fila se entrega al consumer sin materializar la lista completa
+    // (PostgreSQL solo usa cursor dentro de una transacción)
+    @Transactional(readOnly = true)
+    public void forEachMedicamento(Consumer<Medicamento> consumer) {
+        String sql = """
+            SELECT m.*
+            FROM medicamento m
             ORDER BY m.medicamento_id DESC
             """;
-        return jdbcTemplate.query(sql, medicamentoRowMapper);
+        MedicamentoRowMapper mapper = new MedicamentoRowMapper(categoriaDAO.nombres());
+        RowCallbackHandler handler = rs -> consumer.accept(mapper.mapRow(rs, rs.getRow()));
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, handler);
     }
     
     // READ: Obtener medicamento por ID
     public Medicamento findById(Integer id) {
         try {
             String sql = """
-                SELECT m.*, c.categoria_nom 
-                FROM medicamento m 
-                LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+                SELECT m.*
+                FROM medicamento m
                 WHERE m.medicamento_id = ?
                 """;
-            return jdbcTemplate.queryForObject(sql, medicamentoRowMapper, id);
+            return jdbcTemplate.queryForObject(sql, new MedicamentoRowMapper(categoriaDAO.nombres()), id);
         } catch (Exception e) {
             return null;
         }
     }
     
     // READ: Buscar medicamentos por nombre
-    public List<Medicamento> findByNombre(String nombre) {
+    public List<Medicamento> findByNombre(String nombre, int limite) {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM medicamento m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
-            WHERE LOWER(m.medicamento_nom) LIKE LOWER(?)
-            ORDER BY m.medicamento_nom
+            SELECT m.*
+            FROM medicamento m
+            WHERE m.medicamento_nom ILIKE ?
+            ORDER BY word_similarity(?, m.medicamento_nom) DESC, m.medicamento_nom
+            LIMIT ?
             """;
-        return jdbcTemplate.query(sql, medicamentoRowMapper, "%" + nombre + "%");
+        return jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()), Busqueda.patron(nombre), nombre.trim(), limite);
     }
     
     // UPDATE: Actualizar medicamento
@@ -147,7 +234,7 @@ public class MedicamentoDAO {
             RETURNING *
             """;
         
-        return jdbcTemplate.queryForObject(sql, medicamentoRowMapper,
+        Medicamento guardado = jdbcTemplate.queryForObject(sql, new MedicamentoRowMapper(categoriaDAO.nombres()),
             medicamento.getMedicamentoNom(),
             medicamento.getMedicamentoDesc(),
             medicamento.getMedicamentoFecComp(),
@@ -161,6 +248,10 @@ public class MedicamentoDAO {
             medicamento.getCategoriaId(),
             medicamento.getMedicamentoId()
         );
+        estadisticasCache.medicamentoActualizado(guardado);
+        versionDatos.modificada("medicamento");
+        sugerencias.guardar(guardado);
+        return guardado;
     }
     
     // UPDATE: Actualizar solo el stock
@@ -175,14 +266,94 @@ public class MedicamentoDAO {
                 END,
                 updated_at = CURRENT_TIMESTAMP
             WHERE medicamento_id = ?
+            RETURNING medicamento_stock, medicamento_estado,
+                      medicamento_stock <= medicamento_stock_min AS stock_bajo
             """;
-        return jdbcTemplate.update(sql, nuevoStock, nuevoStock, nuevoStock, id);
+        int[] actualizados = {0};
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            estadisticasCache.medicamentoStockActualizado(id, rs.getBoolean("stock_bajo"));
+            sugerencias.actualizarStock(id, rs.getInt("medicamento_stock"), rs.getString("medicamento_estado"));
+            actualizados[0]++;
+        }, nuevoStock, nuevoStock, nuevoStock, id);
+        if (actualizados[0] > 0) {
+            versionDatos.modificada("medicamento");
+        }
+        return actualizados[0];
+    }
+    
+    // UPDATE: Sumar (o restar, si es negativo) stock a varios medicamentos en una sola
+    // sentencia relativa al valor actual, así no se pierden ajustes concurrentes. Un ajuste
+    // solo se aplica si el stock no queda negativo; si falta alguno se lanza
+    // StockInsuficienteException y la transacción de quien llama se revierte completa.
+    public void ajustarStock(Map<Integer, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        
+        String valores = String.join(", ", Collections.nCopies(deltas.size(), "(?::int, ?::int)"));
+        String sql = """
+            UPDATE medicamento m SET
+                medicamento_stock = m.medicamento_stock + a.delta,
+                medicamento_estado = CASE 
+                    WHEN m.medicamento_stock + a.delta <= 0 THEN 'AGOTADO'
+                    WHEN m.medicamento_stock + a.delta < m.medicamento_stock_min THEN 'RESERVADO'
+                    ELSE 'DISPONIBLE'
+                END,
+                updated_at = CURRENT_TIMESTAMP
+            FROM (VALUES %s) AS a (medicamento_id, delta)
+            WHERE m.medicamento_id = a.medicamento_id
+              AND m.medicamento_stock + a.delta >= 0
+            RETURNING m.medicamento_id, m.medicamento_stock, m.medicamento_estado,
+                      m.medicamento_stock <= m.medicamento_stock_min AS stock_bajo
+            """.formatted(valores);
+        
+        List<Object> args = new ArrayList<>();
+        deltas.forEach((medicamentoId, delta) -> {
+            args.add(medicamentoId);
+            args.add(delta);
+        });
+        
+        List<Object[]> ajustados = jdbcTemplate.query(sql, (rs, rowNum) -> new Object[]{
+            rs.getInt("medicamento_id"),
+            rs.getInt("medicamento_stock"),
+            rs.getString("medicamento_estado"),
+            rs.getBoolean("stock_bajo")
+        }, args.toArray());
+        
+        // Si faltó stock en algún ajuste no se actualizan las cachés: la excepción revierte todo
+        if (ajustados.size() < deltas.size()) {
+            Set<Integer> faltantes = new TreeSet<>(deltas.keySet());
+            ajustados.forEach(fila -> faltantes.remove((Integer) fila[0]));
+            throw new StockInsuficienteException("medicamentos", faltantes);
+        }
+        
+        for (Object[] fila : ajustados) {
+            Integer id = (Integer) fila[0];
+            estadisticasCache.medicamentoStockActualizado(id, (Boolean) fila[3]);
+            sugerencias.actualizarStock(id, (Integer) fila[1], (String) fila[2]);
+        }
+        versionDatos.modificada("medicamento");
     }
     
     // DELETE: Eliminar medicamento
     public boolean delete(Integer id) {
-        String sql = "DELETE FROM medicamento WHERE medicamento_id = ?";
+        // La baja queda en eliminacion para los clientes que sincronizan con ?since=.
+        // Si hay movimientos que lo referencian, la llave foránea lo impide
+        // (DataIntegrityViolationException) y no se borra nada.
+        String sql = """
+            WITH borrado AS (
+                DELETE FROM medicamento WHERE medicamento_id = ? RETURNING medicamento_id
+            )
+            INSERT INTO eliminacion (entidad, registro_id)
+            SELECT 'medicamento', medicamento_id FROM borrado
+            ON CONFLICT (entidad, registro_id) DO UPDATE SET eliminado_at = EXCLUDED.eliminado_at
+            """;
         int rowsAffected = jdbcTemplate.update(sql, id);
+        if (rowsAffected > 0) {
+            estadisticasCache.medicamentoEliminado(id);
+            sugerencias.eliminar(id);
+            versionDatos.modificada("medicamento");
+        }
         return rowsAffected > 0;
     }
     
@@ -195,36 +366,33 @@ public class MedicamentoDAO {
     // Obtener medicamentos por estado
     public List<Medicamento> findByEstado(String estado) {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM medicamento m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM medicamento m
             WHERE m.medicamento_estado = ?
             ORDER BY m.medicamento_fec_cad
             """;
-        return jdbcTemplate.query(sql, medicamentoRowMapper, estado);
+        return jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()), estado);
     }
     
     // Obtener medicamentos próximos a caducar (30 días)
     public List<Medicamento> findProximosCaducar() {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM medicamento m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM medicamento m
             WHERE m.medicamento_fec_cad BETWEEN CURRENT_DATE AND (CURRENT_DATE + INTERVAL '30 days')
             ORDER BY m.medicamento_fec_cad
             """;
-        return jdbcTemplate.query(sql, medicamentoRowMapper);
+        return jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()));
     }
     
     // Obtener medicamentos con stock bajo
     public List<Medicamento> findStockBajo() {
         String sql = """
-            SELECT m.*, c.categoria_nom 
-            FROM medicamento m 
-            LEFT JOIN categoria c ON m.categoria_id = c.categoria_id 
+            SELECT m.*
+            FROM medicamento m
             WHERE m.medicamento_stock <= m.medicamento_stock_min
             ORDER BY m.medicamento_stock
             """;
-        return jdbcTemplate.query(sql, medicamentoRowMapper);
+        return jdbcTemplate.query(sql, new MedicamentoRowMapper(categoriaDAO.nombres()));
     }
 }
\ No newline at end of file
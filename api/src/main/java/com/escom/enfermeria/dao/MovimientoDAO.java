@@ -0,0 +1,206 @@
+package com.escom.enfermeria.dao;
+
+import com.escom.enfermeria.models.Movimiento;
+import com.escom.enfermeria.services.VersionDatosService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Bitácora de entradas y salidas de inventario. Solo se agregan filas: un movimiento
+// registrado no se modifica ni se borra, una corrección es otro movimiento en sentido contrario.
+@Repository
+public class MovimientoDAO {
+    
+    // Movimientos por INSERT multi-fila (8 parámetros por fila, lejos del límite de 65535 de PostgreSQL)
+    private static final int MOVIMIENTOS_POR_INSERT = 500;
+    
+    // SELECT que agrega el nombre del medicamento o material a cada movimiento
+    private static final String SELECT_MOVIMIENTO_CON_NOMBRES = """
+        SELECT mv.*, me.medicamento_nom, ma.material_nom
+        FROM %s mv
+        LEFT JOIN medicamento me ON mv.medicamento_id = me.medicamento_id
+        LEFT JOIN material ma ON mv.material_id = ma.material_id
+        """;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final MedicamentoDAO medicamentoDAO;
+    private final MaterialDAO materialDAO;
+    private final VersionDatosService versionDatos;
+    
+    public MovimientoDAO(JdbcTemplate jdbcTemplate, MedicamentoDAO medicamentoDAO, MaterialDAO materialDAO,
+                         VersionDatosService versionDatos) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.medicamentoDAO = medicamentoDAO;
+        this.materialDAO = materialDAO;
+        this.versionDatos = versionDatos;
+    }
+    
+    // RowMapper para Movimiento (uno por consulta; ver IndiceRowMapper)
+    static final class MovimientoRowMapper extends IndiceRowMapper<Movimiento> {
+        
+        private int id, tipo, fecha, cant, motivo, ref, usuarioId;
+        private int medicamentoId, materialId, recetaId, medicamentoNom, materialNom, createdAt;
+        
+        @Override
+        protected void resolver() throws SQLException {
+            id = requerida("movimiento_id");
+            tipo = requerida("movimiento_tipo");
+            fecha = requerida("movimiento_fecha");
+            cant = requerida("movimiento_cant");
+            motivo = requerida("movimiento_motivo");
+            ref = requerida("movimiento_ref");
+            usuarioId = requerida("usuario_id");
+            medicamentoId = requerida("medicamento_id");
+            materialId = requerida("material_id");
+            recetaId = requerida("receta_id");
+            medicamentoNom = requerida("medicamento_nom");
+            materialNom = requerida("material_nom");
+            createdAt = requerida("created_at");
+        }
+        
+        @Override
+        protected Movimiento mapear(ResultSet rs) throws SQLException {
+            Movimiento movimiento = new Movimiento();
+            
+            movimiento.setMovimientoId(rs.getInt(id));
+            movimiento.setMovimientoTipo(rs.getString(tipo));
+            movimiento.setMovimientoFecha(fechaHora(rs, fecha));
+            movimiento.setMovimientoCant(rs.getInt(cant));
+            movimiento.setMovimientoMotivo(rs.getString(motivo));
+            movimiento.setMovimientoRef(rs.getString(ref));
+            movimiento.setUsuarioId(rs.getInt(usuarioId));
+            
+            // Solo uno de los dos está presente (chk_item_type)
+            movimiento.setMedicamentoId(entero(rs, medicamentoId));
+            movimiento.setMaterialId(entero(rs, materialId));
+            movimiento.setRecetaId(entero(rs, recetaId));
+            
+            movimiento.setMedicamentoNombre(rs.getString(medicamentoNom));
+            movimiento.setMaterialNombre(rs.getString(materialNom));
+            movimiento.setCreated_at(fechaHora(rs, createdAt));
+            
+            return movimiento;
+        }
+    }
+    
+    // CREATE: Registrar un lote de movimientos. Primero se ajusta el stock con una sola
+    // sentencia relativa por tipo de artículo (los cambios de un mismo artículo se suman)
+    // y después se agregan todos los movimientos con INSERT multi-fila. Si algún artículo
+    // quedaría con stock negativo se lanza StockInsuficienteException y no se aplica nada.
+    @Transactional
+    public List<Movimiento> registrar(List<Movimiento> movimientos) {
+        if (movimientos.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        // Cambio neto por artículo: una sola fila del UPDATE aunque el lote lo repita
+        Map<Integer, Integer> deltasMedicamentos = new TreeMap<>();
+        Map<Integer, Integer> deltasMateriales = new TreeMap<>();
+        for (Movimiento movimiento : movimientos) {
+            if (movimiento.getMedicamentoId() != null) {
+                deltasMedicamentos.merge(movimiento.getMedicamentoId(), movimiento.delta(), Integer::sum);
+            } else {
+                deltasMateriales.merge(movimiento.getMaterialId(), movimiento.delta(), Integer::sum);
+            }
+        }
+        
+        medicamentoDAO.ajustarStock(deltasMedicamentos);
+        materialDAO.ajustarStock(deltasMateriales);
+        
+        List<Movimiento> registrados = new ArrayList<>(movimientos.size());
+        for (int i = 0; i < movimientos.size(); i += MOVIMIENTOS_POR_INSERT) {
+            registrados.addAll(insertar(movimientos.subList(i, Math.min(i + MOVIMIENTOS_POR_INSERT, movimientos.size()))));
+        }
+        versionDatos.modificada("movimiento");
+        return registrados;
+    }
+    
+    // Agregar los movimientos en un solo INSERT multi-fila y devolverlos con los nombres
+    private List<Movimiento> insertar(List<Movimiento> movimientos) {
+        String valores = String.join(", ", Collections.nCopies(movimientos.size(), "(?, ?, ?, ?, ?, ?::int, ?::int, ?::int)"));
+        String sql = """
+            WITH insertados AS (
+                INSERT INTO movimiento (
+                    movimiento_tipo, movimiento_cant, movimiento_motivo, movimiento_ref,
+                    usuario_id, medicamento_id, material_id, receta_id
+                ) VALUES %s
+                RETURNING *
+            )
+            """.formatted(valores)
+            + SELECT_MOVIMIENTO_CON_NOMBRES.formatted("insertados")
+            + "ORDER BY mv.movimiento_id";
+        
+        List<Object> args = new ArrayList<>(movimientos.size() * 8);
+        for (Movimiento movimiento : movimientos) {
+            args.add(movimiento.getMovimientoTipo());
+            args.add(movimiento.getMovimientoCant());
+            args.add(movimiento.getMovimientoMotivo());
+            args.add(movimiento.getMovimientoRef());
+            args.add(movimiento.getUsuarioId());
+            args.add(movimiento.getMedicamentoId());
+            args.add(movimiento.getMaterialId());
+            args.add(movimiento.getRecetaId());
+        }
+        
+        return jdbcTemplate.query(sql, new MovimientoRowMapper(), args.toArray());
+    }
+    
+    // READ: Movimientos de un medicamento en un rango de fechas [desde, hasta), más recientes primero.
+    // Usa el índice (medicamento_id, movimiento_fecha).
+    public List<Movimiento> findByMedicamento(Integer medicamentoId, LocalDateTime desde, LocalDateTime hasta, int limite) {
+        return findByRango("mv.medicamento_id = ?", medicamentoId, desde, hasta, limite);
+    }
+    
+    // READ: Movimientos de un material en un rango de fechas [desde, hasta), más recientes primero.
+    // Usa el índice (material_id, movimiento_fecha).
+    public List<Movimiento> findByMaterial(Integer materialId, LocalDateTime desde, LocalDateTime hasta, int limite) {
+        return findByRango("mv.material_id = ?", materialId, desde, hasta, limite);
+    }
+    
+    // READ: Movimientos de todo el inventario en un rango de fechas, opcionalmente de un solo tipo
+    public List<Movimiento> findByPeriodo(String tipo, LocalDateTime desde, LocalDateTime hasta, int limite) {
+        return tipo != null
+            ? findByRango("mv.movimiento_tipo = ?", tipo, desde, hasta, limite)
+            : findByRango(null, null, desde, hasta, limite);
+    }
+    
+    // READ: Movimientos generados al surtir una receta
+    public List<Movimiento> findByReceta(Integer recetaId) {
+        String sql = SELECT_MOVIMIENTO_CON_NOMBRES.formatted("movimiento")
+            + "WHERE mv.receta_id = ? ORDER BY mv.movimiento_id";
+        return jdbcTemplate.query(sql, new MovimientoRowMapper(), recetaId);
+    }
+    
+    // Filtro opcional por artículo o tipo más el rango de fechas; los límites nulos no filtran
+    private List<Movimiento> findByRango(String filtro, Object valor, LocalDateTime desde, LocalDateTime hasta, int limite) {
+        List<String> condiciones = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (filtro != null) {
+            condiciones.add(filtro);
+            args.add(valor);
+        }
+        if (desde != null) {
+            condiciones.add("mv.movimiento_fecha >= ?");
+            args.add(desde);
+        }
+        if (hasta != null) {
+            condiciones.add("mv.movimiento_fecha < ?");
+            args.add(hasta);
+        }
+        args.add(limite);
+        
+        String sql = SELECT_MOVIMIENTO_CON_NOMBRES.formatted("movimiento")
+            + (condiciones.isEmpty() ? "" : "WHERE " + String.join(" AND ", condiciones) + "\n")
+            + "ORDER BY mv.movimiento_fecha DESC, mv.movimiento_id DESC\nLIMIT ?";
+        return jdbcTemplate.query(sql, new MovimientoRowMapper(), args.toArray());
+    }
+}
@@ -1,8 +1,9 @@
 package com.escom.enfermeria.dao;
 
 import com.escom.enfermeria.models.Paciente;
+import com.escom.enfermeria.services.EstadisticasCacheService;
+import com.escom.enfermeria.services.VersionDatosService;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
@@ -13,31 +14,47 @@ import java.util.List;
 public class PacienteDAO {
     
     private final JdbcTemplate jdbcTemplate;
+    private final EstadisticasCacheService estadisticasCache;
+    private final VersionDatosService versionDatos;
     
-    public PacienteDAO(JdbcTemplate jdbcTemplate) {
+    public PacienteDAO(JdbcTemplate jdbcTemplate, EstadisticasCacheService estadisticasCache,
+                       VersionDatosService versionDatos) {
         this.jdbcTemplate = jdbcTemplate;
+        this.estadisticasCache = estadisticasCache;
+        this.versionDatos = versionDatos;
     }
     
-    // RowMapper para Paciente
-    private final RowMapper<Paciente> pacienteRowMapper = new RowMapper<Paciente>() {
+    // RowMapper para Paciente (uno por consulta; ver IndiceRowMapper)
+    static final class PacienteRowMapper extends IndiceRowMapper<Paciente> {
+        
+        private int id, nombre, escuela, edad, telefono, email, createdAt;
+        
         @Override
-        public Paciente mapRow(ResultSet rs, int rowNum) throws SQLException {
+        protected void resolver() throws SQLException {
+            id = requerida("paciente_id");
+            nombre = requerida("paciente_nombre");
+            escuela = requerida("paciente_escuela");
+            edad = requerida("paciente_edad");
+            telefono = requerida("paciente_telefono");
+            email = requerida("paciente_email");
+            createdAt = requerida("created_at");
+        }
+        
+        @Override
+        protected Paciente mapear(ResultSet rs) throws SQLException {
             Paciente paciente = new Paciente();
             
-            paciente.setPacienteId(rs.getInt("paciente_id"));
-            paciente.setPacienteNombre(rs.getString("paciente_nombre"));
-            paciente.setPacienteEscuela(rs.getString("paciente_escuela"));
-            paciente.setPacienteEdad(rs.getInt("paciente_edad"));
-            paciente.setPacienteTelefono(rs.getString("paciente_telefono"));
-            paciente.setPacienteEmail(rs.getString("paciente_email"));
-            
-            if (rs.getTimestamp("created_at") != null) {
-                paciente.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
-            }
+            paciente.setPacienteId(rs.getInt(id));
+            paciente.setPacienteNombre(rs.getString(nombre));
+            paciente.setPacienteEscuela(rs.getString(escuela));
+            paciente.setPacienteEdad(rs.getInt(edad));
+            paciente.setPacienteTelefono(rs.getString(telefono));
+            paciente.setPacienteEmail(rs.getString(email));
+            paciente.setCreated_at(fechaHora(rs, createdAt));
             
             return paciente;
         }
-    };
+    }
     
     // CREATE: Insertar nuevo paciente
     public Paciente create(Paciente paciente) {
@@ -49,13 +66,16 @@ public class PacienteDAO {
             RETURNING *
             """;
         
-        return jdbcTemplate.queryForObject(sql, pacienteRowMapper,
+        Paciente nuevo = jdbcTemplate.queryForObject(sql, new PacienteRowMapper(),
             paciente.getPacienteNombre(),
             paciente.getPacienteEscuela(),
             paciente.getPacienteEdad(),
             paciente.getPacienteTelefono(),
             paciente.getPacienteEmail()
         );
+        estadisticasCache.pacienteCreado();
+        versionDatos.modificada("paciente");
+        return nuevo;
     }
     
     // READ: Obtener todos los pacientes
@@ -64,41 +84,64 @@ public class PacienteDAO {
             SELECT * FROM paciente 
             ORDER BY paciente_id DESC
             """;
-        return jdbcTemplate.query(sql, pacienteRowMapper);
+        return jdbcTemplate.query(sql, new PacienteRowMapper());
+    }
+    
+    // READ: Página de pacientes por cursor (keyset) en el mismo orden que findAll.
+    // antesDeId null = primera página. Devuelve hasta limite + 1 filas para que
+    // quien llama sepa si hay una página siguiente.
+    public List<Paciente> findPagina(Integer antesDeId, int limite) {
+        String sql = """
+            SELECT * FROM paciente 
+            %s
+            ORDER BY paciente_id DESC
+            LIMIT ?
+            """.formatted(antesDeId != null ? "WHERE paciente_id < ?" : "");
+        return antesDeId != null
+            ? jdbcTemplate.query(sql, new PacienteRowMapper(), antesDeId, limite + 1)
+            : jdbcTemplate.query(sql, new PacienteRowMapper(), limite + 1);
     }
     
     // READ: Obtener paciente por ID
     public Paciente findById(Integer id) {
         try {
             String sql = "SELECT * FROM paciente WHERE paciente_id = ?";
-            return jdbcTemplate.queryForObject(sql, pacienteRowMapper, id);
+            return jdbcTemplate.queryForObject(sql, new PacienteRowMapper(), id);
         } catch (Exception e) {
             return null;
         }
     }
     
     // READ: Buscar pacientes por término
-    public List<Paciente> findByTermino(String termino) {
+    public List<Paciente> findByTermino(String termino, int limite) {
         String sql = """
             SELECT * FROM paciente 
-            WHERE LOWER(paciente_nombre) LIKE LOWER(?) 
-               OR LOWER(paciente_escuela) LIKE LOWER(?)
-               OR LOWER(paciente_email) LIKE LOWER(?)
-               OR paciente_telefono LIKE ?
-            ORDER BY paciente_nombre
+            WHERE paciente_nombre ILIKE ?
+               OR paciente_escuela ILIKE ?
+               OR paciente_email ILIKE ?
+               OR paciente_telefono ILIKE ?
+            ORDER BY GREATEST(
+                         word_similarity(?, paciente_nombre),
+                         word_similarity(?, paciente_escuela),
+                         word_similarity(?, paciente_email),
+                         word_similarity(?, paciente_telefono)
+                     ) DESC,
+                     paciente_nombre
+            LIMIT ?
             """;
-        String likeTermino = "%" + termino + "%";
-        return jdbcTemplate.query(sql, pacienteRowMapper, likeTermino, likeTermino, likeTermino, likeTermino);
+        String patron = Busqueda.patron(termino);
+        String t = termino.trim();
+        return jdbcTemplate.query(sql, new PacienteRowMapper(), patron, patron, patron, patron, t, t, t, t, limite);
     }
     
     // READ: Buscar pacientes por escuela
     public List<Paciente> findByEscuela(String escuela) {
         String sql = """
             SELECT * FROM paciente 
-            WHERE LOWER(paciente_escuela) LIKE LOWER(?)
+            WHERE paciente_escuela ILIKE ?
             ORDER BY paciente_nombre
             """;
-        return jdbcTemplate.query(sql, pacienteRowMapper, "%" + escuela + "%");
+        return jdbcTemplate.query(sql, new PacienteRowMapper(), Busqueda.patron(escuela));
     }
     
     // UPDATE: Actualizar paciente
@@ -109,12 +152,13 @@ public class PacienteDAO {
                 paciente_escuela = ?,
                 paciente_edad = ?,
                 paciente_telefono = ?,
-                paciente_email = ?
+                paciente_email = ?,
+                updated_at = CURRENT_TIMESTAMP
             WHERE paciente_id = ?
             RETURNING *
             """;
         
-        return jdbcTemplate.queryForObject(sql, pacienteRowMapper,
+        Paciente actualizado = jdbcTemplate.queryForObject(sql, new PacienteRowMapper(),
             paciente.getPacienteNombre(),
             paciente.getPacienteEscuela(),
             paciente.getPacienteEdad(),
@@ -122,12 +166,18 @@ public class PacienteDAO {
             paciente.getPacienteEmail(),
             paciente.getPacienteId()
         );
+        versionDatos.modificada("paciente");
+        return actualizado;
     }
     
     // DELETE: Eliminar paciente
     public boolean delete(Integer id) {
         String sql = "DELETE FROM paciente WHERE paciente_id = ?";
         int rowsAffected = jdbcTemplate.update(sql, id);
+        if (rowsAffected > 0) {
+            estadisticasCache.pacienteEliminado();
+            versionDatos.modificada("paciente");
+        }
         return rowsAffected > 0;
     }
     
@@ -1,109 +1,139 @@
 package com.escom.enfermeria.dao;
 
+import com.escom.enfermeria.models.Movimiento;
 import com.escom.enfermeria.models.Receta;
 import com.escom.enfermeria.models.DetalleReceta;
 import com.escom.enfermeria.models.RecetaCompleta;
+import com.escom.enfermeria.services.EstadisticasCacheService;
+import com.escom.enfermeria.services.VersionDatosService;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Repository
 public class RecetaDAO {
     
+    // Detalles por INSERT multi-fila (7 parámetros por fila, lejos del límite de 65535 de PostgreSQL)
+    private static final int DETALLES_POR_INSERT = 500;
+    
+    // SELECT que completa una receta recién escrita (CTE con RETURNING *) con los
+    // nombres de paciente y usuario, igual que findById
+    private static final String SELECT_RECETA_CON_NOMBRES = """
+        SELECT r.*,
+               p.paciente_nombre,
+               u.usuario_nombre || ' ' || u.usuario_ape_pat as usuario_nombre
+        FROM %s r
+        LEFT JOIN paciente p ON r.paciente_id = p.paciente_id
+        LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
+        """;
+    
     private final JdbcTemplate jdbcTemplate;
+    private final EstadisticasCacheService estadisticasCache;
+    private final MovimientoDAO movimientoDAO;
+    private final VersionDatosService versionDatos;
+    private final FolioRecetaDAO folioRecetaDAO;
     
-    public RecetaDAO(JdbcTemplate jdbcTemplate) {
+    public RecetaDAO(JdbcTemplate jdbcTemplate, EstadisticasCacheService estadisticasCache,
+                     MovimientoDAO movimientoDAO, VersionDatosService versionDatos,
+                     FolioRecetaDAO folioRecetaDAO) {
         this.jdbcTemplate = jdbcTemplate;
+        this.estadisticasCache = estadisticasCache;
+        this.movimientoDAO = movimientoDAO;
+        this.versionDatos = versionDatos;
+        this.folioRecetaDAO = folioRecetaDAO;
     }
     
-    // RowMapper para Receta
-    private final RowMapper<Receta> recetaRowMapper = new RowMapper<Receta>() {
+    // RowMapper para Receta (uno por consulta; ver IndiceRowMapper)
+    static final class RecetaRowMapper extends IndiceRowMapper<Receta> {
+        
+        private int id, folio, fecha, diag, obs, estado, pacienteId, usuarioId;
+        private int pacienteNombre, usuarioNombre, createdAt;
+        
         @Override
-        public Receta mapRow(ResultSet rs, int rowNum) throws SQLException {
+        protected void resolver() throws SQLException {
+            id = requerida("receta_id");
+            folio = requerida("receta_folio");
+            fecha = requerida("receta_fecha");
+            diag = requerida("receta_diag");
+            obs = requerida("receta_obs");
+            estado = requerida("receta_estado");
+            pacienteId = requerida("paciente_id");
+            usuarioId = requerida("usuario_id");
+            // Información adicional para mostrar: solo en las consultas con JOIN
+            pacienteNombre = opcional("paciente_nombre");
+            usuarioNombre = opcional("usuario_nombre");
+            createdAt = requerida("created_at");
+        }
+        
+        @Override
+        protected Receta mapear(ResultSet rs) throws SQLException {
             Receta receta = new Receta();
             
-            receta.setRecetaId(rs.getInt("receta_id"));
-            receta.setRecetaFolio(rs.getString("receta_folio"));
-            
-            if (rs.getTimestamp("receta_fecha") != null) {
-                receta.setRecetaFecha(rs.getTimestamp("receta_fecha").toLocalDateTime());
-            }
-            
-            receta.setRecetaDiag(rs.getString("receta_diag"));
-            receta.setRecetaObs(rs.getString("receta_obs"));
-            receta.setRecetaEstado(rs.getString("receta_estado"));
-            receta.setPacienteId(rs.getInt("paciente_id"));
-            receta.setUsuarioId(rs.getInt("usuario_id"));
-            
-            // Información adicional para mostrar
-            try {
-                receta.setPacienteNombre(rs.getString("paciente_nombre"));
-            } catch (SQLException e) {
-                // Columna no presente, ignorar
-            }
-            
-            try {
-                receta.setUsuarioNombre(rs.getString("usuario_nombre"));
-            } catch (SQLException e) {
-                // Columna no presente, ignorar
-            }
-            
-            if (rs.getTimestamp("created_at") != null) {
-                receta.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
-            }
+            receta.setRecetaId(rs.getInt(id));
+            receta.setRecetaFolio(rs.getString(folio));
+            receta.setRecetaFecha(fechaHora(rs, fecha));
+            receta.setRecetaDiag(rs.getString(diag));
+            receta.setRecetaObs(rs.getString(obs));
+            receta.setRecetaEstado(rs.getString(estado));
+            receta.setPacienteId(rs.getInt(pacienteId));
+            receta.setUsuarioId(rs.getInt(usuarioId));
+            receta.setPacienteNombre(texto(rs, pacienteNombre));
+            receta.setUsuarioNombre(texto(rs, usuarioNombre));
+            receta.setCreated_at(fechaHora(rs, createdAt));
             
             return receta;
         }
-    };
+    }
     
-    // RowMapper para DetalleReceta
-    private final RowMapper<DetalleReceta> detalleRecetaRowMapper = new RowMapper<DetalleReceta>() {
+    // RowMapper para DetalleReceta (uno por consulta; ver IndiceRowMapper)
+    static final class DetalleRecetaRowMapper extends IndiceRowMapper<DetalleReceta> {
+        
+        private int id, med, cant, dosis, dur, indicaciones, recetaId, medicamentoId;
+        private int medicamentoNom, createdAt;
+        
+        @Override
+        protected void resolver() throws SQLException {
+            id = requerida("det_receta_id");
+            med = requerida("det_receta_med");
+            cant = requerida("det_receta_cant");
+            dosis = requerida("det_receta_dosis");
+            dur = requerida("det_receta_dur");
+            indicaciones = requerida("det_receta_indicaciones");
+            recetaId = requerida("receta_id");
+            medicamentoId = requerida("medicamento_id");
+            // Información adicional para mostrar: solo en las consultas con JOIN
+            medicamentoNom = opcional("medicamento_nom");
+            createdAt = requerida("created_at");
+        }
+        
         @Override
-        public DetalleReceta mapRow(ResultSet rs, int rowNum) throws SQLException {
+        protected DetalleReceta mapear(ResultSet rs) throws SQLException {
             DetalleReceta detalle = new DetalleReceta();
             
-            detalle.setDetRecetaId(rs.getInt("det_receta_id"));
-            detalle.setDetRecetaMed(rs.getString("det_receta_med"));
-            detalle.setDetRecetaCant(rs.getInt("det_receta_cant"));
-            detalle.setDetRecetaDosis(rs.getString("det_receta_dosis"));
-            detalle.setDetRecetaDur(rs.getString("det_receta_dur"));
-            detalle.setDetRecetaIndicaciones(rs.getString("det_receta_indicaciones"));
-            detalle.setRecetaId(rs.getInt("receta_id"));
-            
-            Integer medicamentoId = rs.getInt("medicamento_id");
-            if (!rs.wasNull()) {
-                detalle.setMedicamentoId(medicamentoId);
-            }
-            
-            // Información adicional para mostrar
-            try {
-                detalle.setMedicamentoNombre(rs.getString("medicamento_nom"));
-            } catch (SQLException e) {
-                // Columna no presente, ignorar
-            }
-            
-            if (rs.getTimestamp("created_at") != null) {
-                detalle.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
-            }
+            detalle.setDetRecetaId(rs.getInt(id));
+            detalle.setDetRecetaMed(rs.getString(med));
+            detalle.setDetRecetaCant(rs.getInt(cant));
+            detalle.setDetRecetaDosis(rs.getString(dosis));
+            detalle.setDetRecetaDur(rs.getString(dur));
+            detalle.setDetRecetaIndicaciones(rs.getString(indicaciones));
+            detalle.setRecetaId(rs.getInt(recetaId));
+            detalle.setMedicamentoId(entero(rs, medicamentoId));
+            detalle.setMedicamentoNombre(texto(rs, medicamentoNom));
+            detalle.setCreated_at(fechaHora(rs, createdAt));
             
             return detalle;
         }
-    };
-    
-    // Generar folio único
-    private String generarFolio() {
-        LocalDateTime ahora = LocalDateTime.now();
-        String año = String.valueOf(ahora.getYear()).substring(2);
-        String mes = String.format("%02d", ahora.getMonthValue());
-        String dia = String.format("%02d", ahora.getDayOfMonth());
-        String random = String.format("%03d", (int)(Math.random() * 1000));
-        return "REC-" + año + mes + dia + "-" + random;
     }
     
     // CREATE: Insertar nueva receta con detalles
@@ -111,19 +141,21 @@ public class RecetaDAO {
     public RecetaCompleta create(Receta receta, List<DetalleReceta> detalles) {
         // Generar folio si no existe
         if (receta.getRecetaFolio() == null || receta.getRecetaFolio().isEmpty()) {
-            receta.setRecetaFolio(generarFolio());
+            receta.setRecetaFolio(folioRecetaDAO.siguienteFolio());
         }
         
-        // Insertar receta
+        // Insertar receta y devolverla ya con los nombres de paciente y usuario
         String sqlReceta = """
-            INSERT INTO receta (
-                receta_folio, receta_fecha, receta_diag, receta_obs,
-                receta_estado, paciente_id, usuario_id
-            ) VALUES (?, ?, ?, ?, ?, ?, ?)
-            RETURNING *
-            """;
+            WITH nueva AS (
+                INSERT INTO receta (
+                    receta_folio, receta_fecha, receta_diag, receta_obs,
+                    receta_estado, paciente_id, usuario_id
+                ) VALUES (?, ?, ?, ?, ?, ?, ?)
+                RETURNING *
+            )
+            """ + SELECT_RECETA_CON_NOMBRES.formatted("nueva");
         
-        Receta nuevaReceta = jdbcTemplate.queryForObject(sqlReceta, recetaRowMapper,
+        Receta nuevaReceta = jdbcTemplate.queryForObject(sqlReceta, new RecetaRowMapper(),
             receta.getRecetaFolio(),
             receta.getRecetaFecha() != null ? receta.getRecetaFecha() : LocalDateTime.now(),
             receta.getRecetaDiag(),
@@ -133,30 +165,14 @@ public class RecetaDAO {
             receta.getUsuarioId()
         );
         
-        // Insertar detalles
-        if (detalles != null && !detalles.isEmpty()) {
-            String sqlDetalle = """
-                INSERT INTO detalle_receta (
-                    det_receta_med, det_receta_cant, det_receta_dosis,
-                    det_receta_dur, det_receta_indicaciones, receta_id, medicamento_id
-                ) VALUES (?, ?, ?, ?, ?, ?, ?)
-                """;
-            
-            for (DetalleReceta detalle : detalles) {
-                jdbcTemplate.update(sqlDetalle,
-                    detalle.getDetRecetaMed(),
-                    detalle.getDetRecetaCant(),
-                    detalle.getDetRecetaDosis(),
-                    detalle.getDetRecetaDur(),
-                    detalle.getDetRecetaIndicaciones(),
-                    nuevaReceta.getRecetaId(),
-                    detalle.getMedicamentoId()
-                );
-            }
-        }
+        // Insertar detalles (un solo INSERT multi-fila)
+        List<DetalleReceta> nuevosDetalles = insertarDetalles(nuevaReceta.getRecetaId(), detalles);
         
-        // Obtener receta completa con detalles
-        return findRecetaCompletaById(nuevaReceta.getRecetaId());
+        estadisticasCache.recetaCreada(nuevaReceta.getRecetaFecha());
+        versionDatos.modificada("receta");
+        
+        // La receta completa se arma con las filas devueltas, sin volver a consultarla
+        return new RecetaCompleta(nuevaReceta, nuevosDetalles);
     }
     
     // READ: Obtener todas las recetas
@@ -170,7 +186,27 @@ public class RecetaDAO {
             LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
             ORDER BY r.receta_id DESC
             """;
-        return jdbcTemplate.query(sql, recetaRowMapper);
+        return jdbcTemplate.query(sql, new RecetaRowMapper());
+    }
+    
+    // READ: Página de recetas por cursor (keyset) en el mismo orden que findAll.
+    // antesDeId null = primera página. Devuelve hasta limite + 1 filas para que
+    // quien llama sepa si hay una página siguiente.
+    public List<Receta> findPagina(Integer antesDeId, int limite) {
+        String sql = """
+            SELECT r.*, 
+                   p.paciente_nombre,
+                   u.usuario_nombre || ' ' || u.usuario_ape_pat as usuario_nombre
+            FROM receta r
+            LEFT JOIN paciente p ON r.paciente_id = p.paciente_id
+            LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
+            %s
+            ORDER BY r.receta_id DESC
+            LIMIT ?
+            """.formatted(antesDeId != null ? "WHERE r.receta_id < ?" : "");
+        return antesDeId != null
+            ? jdbcTemplate.query(sql, new RecetaRowMapper(), antesDeId, limite + 1)
+            : jdbcTemplate.query(sql, new RecetaRowMapper(), limite + 1);
     }
     
     // READ: Obtener receta por ID
@@ -185,7 +221,7 @@ public class RecetaDAO {
                 LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
                 WHERE r.receta_id = ?
                 """;
-            return jdbcTemplate.queryForObject(sql, recetaRowMapper, id);
+            return jdbcTemplate.queryForObject(sql, new RecetaRowMapper(), id);
         } catch (Exception e) {
             return null;
         }
@@ -199,34 +235,42 @@ public class RecetaDAO {
         }
         
         // Obtener detalles
-        String sqlDetalles = """
-            SELECT dr.*, m.medicamento_nom
-            FROM detalle_receta dr
-            LEFT JOIN medicamento m ON dr.medicamento_id = m.medicamento_id
-            WHERE dr.receta_id = ?
-            ORDER BY dr.det_receta_id
-            """;
-        List<DetalleReceta> detalles = jdbcTemplate.query(sqlDetalles, detalleRecetaRowMapper, id);
+        List<DetalleReceta> detalles = findDetalles(id, false);
         
         return new RecetaCompleta(receta, detalles);
     }
     
     // READ: Buscar recetas por término
-    public List<Receta> findByTermino(String termino) {
+    public List<Receta> findByTermino(String termino, int limite) {
+        // Un OR entre columnas de receta y paciente impide usar los índices;
+        // se buscan por separado y se unen los IDs encontrados
         String sql = """
+            WITH coincidencias AS (
+                SELECT receta_id FROM receta
+                WHERE receta_folio ILIKE ? OR receta_diag ILIKE ?
+                UNION
+                SELECT r.receta_id FROM receta r
+                JOIN paciente p ON r.paciente_id = p.paciente_id
+                WHERE p.paciente_nombre ILIKE ?
+            )
             SELECT r.*, 
                    p.paciente_nombre,
                    u.usuario_nombre || ' ' || u.usuario_ape_pat as usuario_nombre
-            FROM receta r
+            FROM coincidencias c
+            JOIN receta r ON r.receta_id = c.receta_id
             LEFT JOIN paciente p ON r.paciente_id = p.paciente_id
             LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
-            WHERE LOWER(r.receta_folio) LIKE LOWER(?)
-               OR LOWER(r.receta_diag) LIKE LOWER(?)
-               OR LOWER(p.paciente_nombre) LIKE LOWER(?)
-            ORDER BY r.receta_fecha DESC
+            ORDER BY GREATEST(
+                         word_similarity(?, r.receta_folio),
+                         word_similarity(?, r.receta_diag),
+                         word_similarity(?, p.paciente_nombre)
+                     ) DESC,
+                     r.receta_fecha DESC
+            LIMIT ?
             """;
-        String likeTermino = "%" + termino + "%";
-        return jdbcTemplate.query(sql, recetaRowMapper, likeTermino, likeTermino, likeTermino);
+        String patron = Busqueda.patron(termino);
+        String t = termino.trim();
+        return jdbcTemplate.query(sql, new RecetaRowMapper(), patron, patron, patron, t, t, t, limite);
     }
     
     // READ: Obtener recetas por paciente
@@ -241,65 +285,307 @@ public class RecetaDAO {
             WHERE r.paciente_id = ?
             ORDER BY r.receta_fecha DESC
             """;
-        return jdbcTemplate.query(sql, recetaRowMapper, pacienteId);
+        return jdbcTemplate.query(sql, new RecetaRowMapper(), pacienteId);
+    }
+
+    // READ: Obtener recetas de un usuario dentro de un rango de fechas [desde, hasta)
+    // Si desde/hasta son null se devuelven todas las recetas del usuario
+    // Usa el índice idx_receta_usuario_fecha (usuario_id, receta_fecha)
+    public List<Receta> findByUsuarioYPeriodo(Integer usuarioId, LocalDateTime desde, LocalDateTime hasta) {
+        return jdbcTemplate.query(sqlUsuarioYPeriodo(desde, hasta), new RecetaRowMapper(),
+            argsUsuarioYPeriodo(usuarioId, desde, hasta));
     }
     
-    // UPDATE: Actualizar receta
+    // READ: Página (keyset) de las recetas de un usuario en el período, de la más reciente
+    // a la más antigua. despuesDe es la última receta de la página anterior (null = primera).
+    // Las recetas sin fecha van al final, ordenadas por ID. Devuelve hasta limite + 1 filas
+    // para que quien llama sepa si hay una página siguiente.
+    public List<Receta> findPaginaByUsuarioYPeriodo(Integer usuarioId, LocalDateTime desde, LocalDateTime hasta,
+                                                    Receta despuesDe, int limite) {
+        String filtroFecha = desde != null && hasta != null
+            ? "AND r.receta_fecha >= ? AND r.receta_fecha < ?"
+            : "";
+        List<Object> args = new ArrayList<>(List.of(argsUsuarioYPeriodo(usuarioId, desde, hasta)));
+        
+        String filtroCursor = "";
+        if (despuesDe != null && despuesDe.getRecetaFecha() != null) {
+            filtroCursor = """
+                AND (r.receta_fecha < ? OR r.receta_fecha IS NULL
+                     OR (r.receta_fecha = ? AND r.receta_id < ?))
+                """;
+            args.add(despuesDe.getRecetaFecha());
+            args.add(despuesDe.getRecetaFecha());
+            args.add(despuesDe.getRecetaId());
+        } else if (despuesDe != null) {
+            filtroCursor = "AND r.receta_fecha IS NULL AND r.receta_id < ?";
+            args.add(despuesDe.getRecetaId());
+        }
+        args.add(limite + 1);
+        
+        String sql = """
+            SELECT r.*,
+                   p.paciente_nombre,
+                   u.usuario_nombre || ' ' || u.usuario_ape_pat as usuario_nombre
+            FROM receta r
+            LEFT JOIN paciente p ON r.paciente_id = p.paciente_id
+            LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
+            WHERE r.usuario_id = ?
+            %s
+            %s
+            ORDER BY r.receta_fecha DESC NULLS LAST, r.receta_id DESC
+            LIMIT ?
+            """.formatted(filtroFecha, filtroCursor);
+        return jdbcTemplate.query(sql, new RecetaRowMapper(), args.toArray());
+    }
+    
+    private String sqlUsuarioYPeriodo(LocalDateTime desde, LocalDateTime hasta) {
+        String filtroFecha = desde != null && hasta != null
+            ? "AND r.receta_fecha >= ? AND r.receta_fecha < ?"
+            : "";
+        return """
+            SELECT r.*,
+                   p.paciente_nombre,
+                   u.usuario_nombre || ' ' || u.usuario_ape_pat as usuario_nombre
+            FROM receta r
+            LEFT JOIN paciente p ON r.paciente_id = p.paciente_id
+            LEFT JOIN usuario u ON r.usuario_id = u.usuario_id
+            WHERE r.usuario_id = ?
+            %s
+            ORDER BY r.receta_fecha DESC
+            """.formatted(filtroFecha);
+    }
+    
+    private Object[] argsUsuarioYPeriodo(Integer usuarioId, LocalDateTime desde, LocalDateTime hasta) {
+        if (desde != null && hasta != null) {
+            return new Object[]{usuarioId, desde, hasta};
+        }
+        return new Object[]{usuarioId};
+    }
+    
+    // UPDATE: Actualizar receta. Si detalles es null solo se actualiza el encabezado;
+    // si no, se comparan por detRecetaId con los actuales y solo se insertan,
+    // modifican o eliminan las líneas que cambiaron.
+    // Solo se editan recetas ACTIVAS: la condición va en el UPDATE (que bloquea la fila)
+    // y no solo en el controlador, porque un surtir que confirme entre la lectura y esta
+    // transacción dejaría líneas que ya no coinciden con los movimientos registrados.
+    // null = la receta no existe; IllegalStateException = existe pero ya no está activa.
     @Transactional
     public RecetaCompleta update(Receta receta, List<DetalleReceta> detalles) {
-        // Actualizar receta
+        // Actualizar receta y devolverla ya con los nombres de paciente y usuario
         String sqlReceta = """
-            UPDATE receta SET
-                receta_diag = ?,
-                receta_obs = ?,
-                paciente_id = ?
-            WHERE receta_id = ?
-            """;
+            WITH actualizada AS (
+                UPDATE receta SET
+                    receta_diag = ?,
+                    receta_obs = ?,
+                    paciente_id = ?,
+                    updated_at = CURRENT_TIMESTAMP
+                WHERE receta_id = ? AND receta_estado = 'ACTIVA'
+                RETURNING *
+            )
+            """ + SELECT_RECETA_CON_NOMBRES.formatted("actualizada");
         
-        jdbcTemplate.update(sqlReceta,
+        List<Receta> actualizadas = jdbcTemplate.query(sqlReceta, new RecetaRowMapper(),
             receta.getRecetaDiag(),
             receta.getRecetaObs(),
             receta.getPacienteId(),
             receta.getRecetaId()
         );
+        if (actualizadas.isEmpty()) {
+            if (findById(receta.getRecetaId()) == null) {
+                return null;
+            }
+            throw new IllegalStateException("Solo se pueden editar recetas activas");
+        }
+        versionDatos.modificada("receta");
         
-        // Eliminar detalles antiguos
-        String sqlDeleteDetalles = "DELETE FROM detalle_receta WHERE receta_id = ?";
-        jdbcTemplate.update(sqlDeleteDetalles, receta.getRecetaId());
+        // Detalles actuales (bloqueados hasta el fin de la transacción)
+        List<DetalleReceta> actuales = findDetalles(receta.getRecetaId(), detalles != null);
         
-        // Insertar nuevos detalles
-        if (detalles != null && !detalles.isEmpty()) {
-            String sqlDetalle = """
-                INSERT INTO detalle_receta (
-                    det_receta_med, det_receta_cant, det_receta_dosis,
-                    det_receta_dur, det_receta_indicaciones, receta_id, medicamento_id
-                ) VALUES (?, ?, ?, ?, ?, ?, ?)
+        // Solo cambió el encabezado
+        if (detalles == null) {
+            return new RecetaCompleta(actualizadas.get(0), actuales);
+        }
+        
+        Map<Integer, DetalleReceta> actualesPorId = new LinkedHashMap<>();
+        for (DetalleReceta actual : actuales) {
+            actualesPorId.put(actual.getDetRecetaId(), actual);
+        }
+        
+        List<DetalleReceta> nuevos = new ArrayList<>();
+        List<DetalleReceta> modificados = new ArrayList<>();
+        for (DetalleReceta detalle : detalles) {
+            DetalleReceta actual = detalle.getDetRecetaId() != null
+                ? actualesPorId.remove(detalle.getDetRecetaId())
+                : null;
+            if (actual == null) {
+                nuevos.add(detalle);
+            } else if (!mismoContenido(actual, detalle)) {
+                modificados.add(detalle);
+            }
+        }
+        // Lo que quedó en actualesPorId ya no viene en la petición
+        Collection<Integer> eliminados = actualesPorId.keySet();
+        
+        if (nuevos.isEmpty() && modificados.isEmpty() && eliminados.isEmpty()) {
+            return new RecetaCompleta(actualizadas.get(0), actuales);
+        }
+        
+        if (!eliminados.isEmpty()) {
+            String sqlEliminar = "DELETE FROM detalle_receta WHERE receta_id = ? AND det_receta_id IN (%s)"
+                .formatted(String.join(", ", Collections.nCopies(eliminados.size(), "?")));
+            List<Object> args = new ArrayList<>();
+            args.add(receta.getRecetaId());
+            args.addAll(eliminados);
+            jdbcTemplate.update(sqlEliminar, args.toArray());
+        }
+        
+        if (!modificados.isEmpty()) {
+            String sqlModificar = """
+                UPDATE detalle_receta SET
+                    det_receta_med = ?,
+                    det_receta_cant = ?,
+                    det_receta_dosis = ?,
+                    det_receta_dur = ?,
+                    det_receta_indicaciones = ?,
+                    medicamento_id = ?
+                WHERE det_receta_id = ? AND receta_id = ?
                 """;
+            jdbcTemplate.batchUpdate(sqlModificar, modificados, modificados.size(), (ps, detalle) -> {
+                ps.setString(1, detalle.getDetRecetaMed());
+                ps.setObject(2, detalle.getDetRecetaCant());
+                ps.setString(3, detalle.getDetRecetaDosis());
+                ps.setString(4, detalle.getDetRecetaDur());
+                ps.setString(5, detalle.getDetRecetaIndicaciones());
+                ps.setObject(6, detalle.getMedicamentoId());
+                ps.setInt(7, detalle.getDetRecetaId());
+                ps.setInt(8, receta.getRecetaId());
+            });
+        }
+        
+        insertarDetalles(receta.getRecetaId(), nuevos);
+        
+        // Los nombres de medicamento de las líneas modificadas pueden haber cambiado
+        return new RecetaCompleta(actualizadas.get(0), findDetalles(receta.getRecetaId(), false));
+    }
+    
+    // Obtener los detalles de una receta con el nombre del medicamento
+    private List<DetalleReceta> findDetalles(Integer recetaId, boolean bloquear) {
+        String sql = """
+            SELECT dr.*, m.medicamento_nom
+            FROM detalle_receta dr
+            LEFT JOIN medicamento m ON dr.medicamento_id = m.medicamento_id
+            WHERE dr.receta_id = ?
+            ORDER BY dr.det_receta_id
+            """ + (bloquear ? "FOR UPDATE OF dr" : "");
+        return jdbcTemplate.query(sql, new DetalleRecetaRowMapper(), recetaId);
+    }
+    
+    // Comparar el contenido editable de dos líneas de receta
+    // (el formulario envía "" donde la base puede tener NULL)
+    private boolean mismoContenido(DetalleReceta actual, DetalleReceta nuevo) {
+        return Objects.equals(actual.getDetRecetaMed(), nuevo.getDetRecetaMed())
+            && Objects.equals(actual.getDetRecetaCant(), nuevo.getDetRecetaCant())
+            && mismoTexto(actual.getDetRecetaDosis(), nuevo.getDetRecetaDosis())
+            && mismoTexto(actual.getDetRecetaDur(), nuevo.getDetRecetaDur())
+            && mismoTexto(actual.getDetRecetaIndicaciones(), nuevo.getDetRecetaIndicaciones())
+            && Objects.equals(actual.getMedicamentoId(), nuevo.getMedicamentoId());
+    }
+    
+    private boolean mismoTexto(String a, String b) {
+        return Objects.equals(a == null ? "" : a, b == null ? "" : b);
+    }
+    
+    // Insertar los detalles de una receta con INSERT multi-fila (en bloques de
+    // DETALLES_POR_INSERT filas) y devolverlos con el nombre del medicamento
+    private List<DetalleReceta> insertarDetalles(Integer recetaId, List<DetalleReceta> detalles) {
+        List<DetalleReceta> insertados = new ArrayList<>();
+        if (detalles == null || detalles.isEmpty()) {
+            return insertados;
+        }
+        
+        for (int inicio = 0; inicio < detalles.size(); inicio += DETALLES_POR_INSERT) {
+            List<DetalleReceta> bloque = detalles.subList(inicio, Math.min(inicio + DETALLES_POR_INSERT, detalles.size()));
             
-            for (DetalleReceta detalle : detalles) {
-                jdbcTemplate.update(sqlDetalle,
-                    detalle.getDetRecetaMed(),
-                    detalle.getDetRecetaCant(),
-                    detalle.getDetRecetaDosis(),
-                    detalle.getDetRecetaDur(),
-                    detalle.getDetRecetaIndicaciones(),
-                    receta.getRecetaId(),
-                    detalle.getMedicamentoId()
-                );
+            String valores = String.join(", ", Collections.nCopies(bloque.size(), "(?, ?, ?, ?, ?, ?, ?)"));
+            String sqlDetalles = """
+                WITH nuevos AS (
+                    INSERT INTO detalle_receta (
+                        det_receta_med, det_receta_cant, det_receta_dosis,
+                        det_receta_dur, det_receta_indicaciones, receta_id, medicamento_id
+                    ) VALUES %s
+                    RETURNING *
+                )
+                SELECT n.*, m.medicamento_nom
+                FROM nuevos n
+                LEFT JOIN medicamento m ON n.medicamento_id = m.medicamento_id
+                ORDER BY n.det_receta_id
+                """.formatted(valores);
+            
+            List<Object> args = new ArrayList<>(bloque.size() * 7);
+            for (DetalleReceta detalle : bloque) {
+                args.add(detalle.getDetRecetaMed());
+                args.add(detalle.getDetRecetaCant());
+                args.add(detalle.getDetRecetaDosis());
+                args.add(detalle.getDetRecetaDur());
+                args.add(detalle.getDetRecetaIndicaciones());
+                args.add(recetaId);
+                args.add(detalle.getMedicamentoId());
             }
+            
+            insertados.addAll(jdbcTemplate.query(sqlDetalles, new DetalleRecetaRowMapper(), args.toArray()));
         }
         
-        return findRecetaCompletaById(receta.getRecetaId());
+        return insertados;
     }
     
-    // UPDATE: Cambiar estado de receta
+    // UPDATE: Cambiar estado de receta. Una receta COMPLETADA ya descontó inventario y no
+    // cambia de estado; la condición va en el UPDATE para que un surtir concurrente que
+    // confirme primero no quede sobrescrito. 0 = no existe o ya fue surtida.
     public int cambiarEstado(Integer id, String estado) {
         String sql = """
             UPDATE receta SET
-                receta_estado = ?
-            WHERE receta_id = ?
+                receta_estado = ?,
+                updated_at = CURRENT_TIMESTAMP
+            WHERE receta_id = ? AND receta_estado <> 'COMPLETADA'
+            """;
+        int rowsAffected = jdbcTemplate.update(sql, estado, id);
+        if (rowsAffected > 0) {
+            versionDatos.modificada("receta");
+        }
+        return rowsAffected;
+    }
+    
+    // UPDATE: Surtir receta. La marca como COMPLETADA solo si sigue ACTIVA (así no se
+    // surte dos veces) y descuenta el stock de todas sus líneas con medicamento en la
+    // misma transacción. Si falta stock de alguna línea no se aplica nada.
+    @Transactional
+    public void surtir(Integer id, Integer usuarioId) {
+        String sqlCompletar = """
+            UPDATE receta SET
+                receta_estado = 'COMPLETADA',
+                updated_at = CURRENT_TIMESTAMP
+            WHERE receta_id = ? AND receta_estado = 'ACTIVA'
+            RETURNING receta_folio
+            """;
+        List<String> folios = jdbcTemplate.queryForList(sqlCompletar, String.class, id);
+        if (folios.isEmpty()) {
+            throw new IllegalStateException("Solo se pueden surtir recetas activas");
+        }
+        
+        // Cantidad total por medicamento (una receta puede repetir medicamento en varias líneas)
+        String sqlCantidades = """
+            SELECT medicamento_id, SUM(det_receta_cant) AS cant
+            FROM detalle_receta
+            WHERE receta_id = ? AND medicamento_id IS NOT NULL
+            GROUP BY medicamento_id
+            ORDER BY medicamento_id
             """;
-        return jdbcTemplate.update(sql, estado, id);
+        List<Movimiento> salidas = jdbcTemplate.query(sqlCantidades, (rs, rowNum) -> new Movimiento(
+            "SALIDA", rs.getInt("cant"), "Surtido de receta", folios.get(0),
+            usuarioId, rs.getInt("medicamento_id"), null, id), id);
+        
+        movimientoDAO.registrar(salidas);
+        versionDatos.modificada("receta");
     }
     
     // DELETE: Eliminar receta
@@ -309,10 +595,19 @@ public class RecetaDAO {
         String sqlDeleteDetalles = "DELETE FROM detalle_receta WHERE receta_id = ?";
         jdbcTemplate.update(sqlDeleteDetalles, id);
         
-        // Luego eliminar receta
-        String sqlDeleteReceta = "DELETE FROM receta WHERE receta_id = ?";
-        int rowsAffected = jdbcTemplate.update(sqlDeleteReceta, id);
-        return rowsAffected > 0;
+        // Los movimientos de inventario se conservan; el folio queda en movimiento_ref
+        String sqlDesligarMovimientos = "UPDATE movimiento SET receta_id = NULL WHERE receta_id = ?";
+        jdbcTemplate.update(sqlDesligarMovimientos, id);
+        
+        // Luego eliminar receta (se devuelve la fecha para ajustar el conteo de su mes)
+        String sqlDeleteReceta = "DELETE FROM receta WHERE receta_id = ? RETURNING receta_fecha";
+        List<LocalDateTime> eliminadas = jdbcTemplate.query(sqlDeleteReceta, (rs, rowNum) ->
+            rs.getTimestamp("receta_fecha") != null ? rs.getTimestamp("receta_fecha").toLocalDateTime() : null, id);
+        eliminadas.forEach(estadisticasCache::recetaEliminada);
+        if (!eliminadas.isEmpty()) {
+            versionDatos.modificada("receta");
+        }
+        return !eliminadas.isEmpty();
     }
     
     // Contar total de recetas
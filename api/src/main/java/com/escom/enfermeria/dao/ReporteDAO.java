@@ -0,0 +1,188 @@
+package com.escom.enfermeria.dao;
+
+import com.escom.enfermeria.models.Reporte;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public class ReporteDAO {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public ReporteDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // RowMapper para Reporte
+    private final RowMapper<Reporte> reporteRowMapper = new RowMapper<Reporte>() {
+        @Override
+        public Reporte mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Reporte reporte = new Reporte();
+            
+            reporte.setReporteId(rs.getInt("reporte_id"));
+            reporte.setReporteTipo(rs.getString("reporte_tipo"));
+            
+            if (rs.getTimestamp("reporte_fecha") != null) {
+                reporte.setReporteFecha(rs.getTimestamp("reporte_fecha").toLocalDateTime());
+            }
+            
+            reporte.setReportePeriodo(rs.getString("reporte_periodo"));
+            reporte.setReporteDesc(rs.getString("reporte_desc"));
+            reporte.setReporteUrl(rs.getString("reporte_url"));
+            reporte.setReporteEstado(rs.getString("reporte_estado"));
+            
+            Integer usuarioId = rs.getInt("usuario_id");
+            if (!rs.wasNull()) {
+                reporte.setUsuarioId(usuarioId);
+            }
+            
+            if (rs.getTimestamp("created_at") != null) {
+                reporte.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
+            }
+            
+            return reporte;
+        }
+    };
+    
+    // CREATE: Registrar un reporte pendiente de generar
+    public Reporte create(Reporte reporte) {
+        String sql = """
+            INSERT INTO reporte (
+                reporte_tipo, reporte_periodo, reporte_desc,
+                reporte_estado, usuario_id, reporte_latido
+            ) VALUES (?, ?, ?, ?, ?, CURRENT_TIMESTAMP)
+            RETURNING *
+            """;
+        
+        return jdbcTemplate.queryForObject(sql, reporteRowMapper,
+            reporte.getReporteTipo(),
+            reporte.getReportePeriodo(),
+            reporte.getReporteDesc(),
+            reporte.getReporteEstado() != null ? reporte.getReporteEstado() : "PENDIENTE",
+            reporte.getUsuarioId()
+        );
+    }
+    
+    // READ: Obtener reporte por ID
+    public Reporte findById(Integer id) {
+        try {
+            String sql = "SELECT * FROM reporte WHERE reporte_id = ?";
+            return jdbcTemplate.queryForObject(sql, reporteRowMapper, id);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    // READ: Obtener los reportes más recientes de un usuario
+    public List<Reporte> findByUsuario(Integer usuarioId, int limite) {
+        String sql = """
+            SELECT * FROM reporte
+            WHERE usuario_id = ?
+            ORDER BY reporte_fecha DESC
+            LIMIT ?
+            """;
+        return jdbcTemplate.query(sql, reporteRowMapper, usuarioId, limite);
+    }
+    
+    // UPDATE: Cambiar estado del reporte
+    public int cambiarEstado(Integer id, String estado) {
+        String sql = "UPDATE reporte SET reporte_estado = ? WHERE reporte_id = ?";
+        return jdbcTemplate.update(sql, estado, id);
+    }
+    
+    // UPDATE: Marcar reporte como completado con el nombre del archivo generado
+    public int marcarCompletado(Integer id, String archivo) {
+        String sql = """
+            UPDATE reporte SET
+                reporte_estado = 'COMPLETADO',
+                reporte_url = ?
+            WHERE reporte_id = ?
+            """;
+        return jdbcTemplate.update(sql, archivo, id);
+    }
+    
+    // UPDATE: Marcar reporte con error
+    public int marcarError(Integer id, String mensaje) {
+        String sql = """
+            UPDATE reporte SET
+                reporte_estado = 'ERROR',
+                reporte_desc = ?
+            WHERE reporte_id = ?
+            """;
+        return jdbcTemplate.update(sql, mensaje, id);
+    }
+    
+    // UPDATE: Renovar el latido de los reportes que esta instancia está generando
+    public int renovarLatido(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        String sql = "UPDATE reporte SET reporte_latido = CURRENT_TIMESTAMP WHERE reporte_id = ANY (?)";
+        return jdbcTemplate.update(sql, ps -> ps.setArray(1,
+            ps.getConnection().createArrayOf("integer", ids.toArray())));
+    }
+    
+    // UPDATE: Marcar como ERROR los reportes a medias cuyo latido es anterior al límite:
+    // la instancia que los generaba se detuvo. Los reportes sin latido (anteriores a la
+    // columna) se juzgan por su fecha de creación.
+    public int marcarInterrumpidos(LocalDateTime latidoAntesDe) {
+        String sql = """
+            UPDATE reporte SET
+                reporte_estado = 'ERROR',
+                reporte_desc = 'Generación interrumpida por reinicio del servidor'
+            WHERE reporte_estado IN ('PENDIENTE', 'EN_PROCESO')
+              AND COALESCE(reporte_latido, reporte_fecha) < ?
+            """;
+        return jdbcTemplate.update(sql, latidoAntesDe);
+    }
+    
+    // UPDATE: Marcar como EXPIRADO los reportes completados antes de la fecha de corte
+    // (sus archivos ya se borraron o se van a borrar)
+    public int marcarExpirados(LocalDateTime antesDe) {
+        String sql = """
+            UPDATE reporte SET
+                reporte_estado = 'EXPIRADO',
+                reporte_url = NULL
+            WHERE reporte_estado = 'COMPLETADO'
+              AND reporte_fecha < ?
+            """;
+        return jdbcTemplate.update(sql, antesDe);
+    }
+    
+    // Obtener una marca de versión de los datos que usa un tipo de reporte, en una sola consulta.
+    // Combina COUNT(*) (detecta altas y bajas) con el máximo de updated_at (detecta
+    // modificaciones) de cada tabla involucrada. categoria no tiene updated_at, así que de ella
+    // se toma un md5 de los nombres por ID: renombrar una categoría también cambia la marca.
+    public String findVersionDatos(String tipo, Integer usuarioId, LocalDateTime desde, LocalDateTime hasta) {
+        String medicamentos = "(SELECT COUNT(*) || '@' || COALESCE(MAX(updated_at)::text, '-') FROM medicamento)";
+        String materiales = "(SELECT COUNT(*) || '@' || COALESCE(MAX(updated_at)::text, '-') FROM material)";
+        String categorias = "(SELECT COUNT(*) || '@' || md5(COALESCE(string_agg(categoria_id || ':' || categoria_nom, ',' ORDER BY categoria_id), '')) FROM categoria)";
+        String pacientes = "(SELECT COUNT(*) || '@' || COALESCE(MAX(updated_at)::text, '-') FROM paciente)";
+        String recetas = desde != null && hasta != null
+            ? "(SELECT COUNT(*) || '@' || COALESCE(MAX(updated_at)::text, '-') FROM receta WHERE usuario_id = ? AND receta_fecha >= ? AND receta_fecha < ?)"
+            : "(SELECT COUNT(*) || '@' || COALESCE(MAX(updated_at)::text, '-') FROM receta WHERE usuario_id = ?)";
+        Object[] argsRecetas = desde != null && hasta != null
+            ? new Object[]{usuarioId, desde, hasta}
+            : new Object[]{usuarioId};
+        
+        return switch (tipo) {
+            case "medicamentos" -> jdbcTemplate.queryForObject(
+                "SELECT " + medicamentos, String.class);
+            case "materiales" -> jdbcTemplate.queryForObject(
+                "SELECT concat_ws('|', " + materiales + ", " + categorias + ")", String.class);
+            case "recetas" -> jdbcTemplate.queryForObject(
+                "SELECT concat_ws('|', " + recetas + ", " + pacientes + ")", String.class, argsRecetas);
+            case "consolidado" -> jdbcTemplate.queryForObject(
+                "SELECT concat_ws('|', " + medicamentos + ", " + materiales + ", " + recetas + ", " + pacientes + ")",
+                String.class, argsRecetas);
+            default -> throw new IllegalArgumentException("Tipo de reporte inválido: " + tipo);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package com.escom.enfermeria.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Consultas de apoyo para la sincronización incremental: reloj de la base y
+// registro de bajas (tabla eliminacion, que llenan los DELETE de cada DAO)
+@Repository
+public class SincronizacionDAO {
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public SincronizacionDAO(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+    
+    // Hora actual según la base, en el mismo reloj con que se escribe updated_at
+    public LocalDateTime ahora() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", LocalDateTime.class);
+    }
+    
+    // IDs de una entidad eliminados después de la marca
+    public List<Integer> findEliminados(String entidad, LocalDateTime desde) {
+        String sql = """
+            SELECT registro_id FROM eliminacion
+            WHERE entidad = ? AND eliminado_at > ?
+            ORDER BY eliminado_at
+            """;
+        return jdbcTemplate.queryForList(sql, Integer.class, entidad, desde);
+    }
+    
+    // Borrar las bajas anteriores a la fecha de corte
+    public int purgarEliminados(LocalDateTime antesDe) {
+        String sql = "DELETE FROM eliminacion WHERE eliminado_at < ?";
+        return jdbcTemplate.update(sql, antesDe);
+    }
+}
@@ -0,0 +1,24 @@
+package com.escom.enfermeria.dao;
+
+import java.util.Set;
+
+// Se lanza cuando un descuento de stock no alcanza para uno o más medicamentos o materiales
+public class StockInsuficienteException extends RuntimeException {
+    
+    private final String tipoItem;
+    private final Set<Integer> ids;
+    
+    public StockInsuficienteException(String tipoItem, Set<Integer> ids) {
+        super("Stock insuficiente para los " + tipoItem + ": " + ids);
+        this.tipoItem = tipoItem;
+        this.ids = ids;
+    }
+    
+    public String getTipoItem() {
+        return tipoItem;
+    }
+    
+    public Set<Integer> getIds() {
+        return ids;
+    }
+}
@@ -1,22 +1,38 @@
 package com.escom.enfermeria.dao;
 
 import com.escom.enfermeria.models.Usuario;
+import com.escom.enfermeria.services.UsuarioCacheService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Repository;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
 public class UsuarioDAO {
     
+    private static final Logger log = LoggerFactory.getLogger(UsuarioDAO.class);
+    
     private final JdbcTemplate jdbcTemplate;
+    private final UsuarioCacheService usuarioCache;
+    
+    // Último acceso de cada usuario aún no escrito en la base (usuarioId -> fecha)
+    private final Map<Integer, LocalDateTime> accesosPendientes = new ConcurrentHashMap<>();
     
-    public UsuarioDAO(JdbcTemplate jdbcTemplate) {
+    public UsuarioDAO(JdbcTemplate jdbcTemplate, UsuarioCacheService usuarioCache) {
         this.jdbcTemplate = jdbcTemplate;
+        this.usuarioCache = usuarioCache;
     }
     
     // RowMapper CORREGIDO según tu estructura REAL
@@ -51,9 +67,23 @@ public class UsuarioDAO {
     
     // Método: Login SIN verificación de password (solo para pruebas)
     public Usuario loginSinPassword(String correo) {
+        if (correo == null) {
+            return null;
+        }
         try {
+            // Se normaliza una sola vez para la caché y para la consulta: si solo una de las
+            // dos quitara los espacios, la respuesta dependería de lo que haya en la caché
+            correo = UsuarioCacheService.normalizar(correo);
             System.out.println("🔍 DAO: Buscando usuario por correo: " + correo);
             
+            // Primero la caché de usuarios activos
+            Usuario enCache = usuarioCache.get(correo);
+            if (enCache != null) {
+                actualizarUltimoAcceso(enCache.getUsuarioId());
+                return enCache;
+            }
+            long generacion = usuarioCache.generacion();
+            
             String sql = """
                 SELECT 
                     u.usuario_id,
@@ -79,6 +109,7 @@ public class UsuarioDAO {
                 Usuario usuario = usuarios.get(0);
                 System.out.println("✅ DAO: Usuario encontrado: " + usuario.getUsuarioCorreo());
                 System.out.println("📝 DAO: Rol del usuario: " + usuario.getRolNombre());
+                usuarioCache.put(correo, usuario, generacion);
                 
                 // Actualizar último acceso
                 actualizarUltimoAcceso(usuario.getUsuarioId());
@@ -95,24 +126,90 @@ public class UsuarioDAO {
         }
     }
     
-    public boolean actualizarUltimoAcceso(int usuarioId) {
-        try {
-            String sql = "UPDATE usuario SET usuario_ult_acc = CURRENT_TIMESTAMP WHERE usuario_id = ?";
-            int rowsAffected = jdbcTemplate.update(sql, usuarioId);
-            boolean actualizado = rowsAffected > 0;
-            
-            if (actualizado) {
-                System.out.println("✅ DAO: Último acceso actualizado para usuario ID: " + usuarioId);
+    // Dar de baja a un usuario. Se saca de la caché para que no pueda volver a entrar
+    // aunque su entrada no haya caducado. La invalidación va después del UPDATE (ya
+    // confirmado) y cambia la generación de la caché: un login que leyó la fila antes
+    // de la baja ya no puede guardarla como activa.
+    public boolean desactivar(int usuarioId) {
+        String sql = """
+            UPDATE usuario SET usuario_activo = false, usuario_fec_baja = CURRENT_TIMESTAMP
+            WHERE usuario_id = ? AND usuario_activo = true
+            """;
+        int rowsAffected = jdbcTemplate.update(sql, usuarioId);
+        usuarioCache.invalidar(usuarioId);
+        return rowsAffected > 0;
+    }
+    
+    // Usuarios inactivos con la hora de su baja (usuarioId -> fecha). Los dados de baja
+    // antes de existir usuario_fec_baja, o directamente en la base, toman la hora actual.
+    public Map<Integer, LocalDateTime> findBajas() {
+        String sql = """
+            SELECT usuario_id, COALESCE(usuario_fec_baja, LOCALTIMESTAMP) AS fec_baja
+            FROM usuario
+            WHERE usuario_activo = false
+            """;
+        Map<Integer, LocalDateTime> bajas = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            bajas.put(rs.getInt("usuario_id"), rs.getTimestamp("fec_baja").toLocalDateTime());
+        });
+        return bajas;
+    }
+    
+    // Registrar el último acceso. Solo se anota en memoria; volcarAccesos lo escribe en
+    // bloque, así varios accesos del mismo usuario entre volcados cuestan un solo UPDATE.
+    public void actualizarUltimoAcceso(int usuarioId) {
+        accesosPendientes.put(usuarioId, LocalDateTime.now());
+    }
+    
+    // Escribir los accesos pendientes con un solo UPDATE ... FROM (VALUES ...). Cada entrada
+    // se saca con remove(clave, valor): si el usuario vuelve a entrar mientras se vuelca, su
+    // fecha nueva queda en el mapa para el siguiente ciclo.
+    @Scheduled(fixedDelayString = "${usuarios.accesos.volcado-ms:10000}", initialDelay = 10000)
+    public synchronized void volcarAccesos() {
+        if (accesosPendientes.isEmpty()) {
+            return;
+        }
+        
+        Map<Integer, LocalDateTime> lote = new HashMap<>();
+        accesosPendientes.forEach((usuarioId, fecha) -> {
+            if (accesosPendientes.remove(usuarioId, fecha)) {
+                lote.put(usuarioId, fecha);
             }
-            
-            return actualizado;
-            
+        });
+        if (lote.isEmpty()) {
+            return;
+        }
+        
+        String valores = String.join(", ", Collections.nCopies(lote.size(), "(?::int, ?::timestamp)"));
+        String sql = """
+            UPDATE usuario u SET usuario_ult_acc = a.fecha
+            FROM (VALUES %s) AS a (usuario_id, fecha)
+            WHERE u.usuario_id = a.usuario_id
+            """.formatted(valores);
+        
+        List<Object> args = new ArrayList<>();
+        lote.forEach((usuarioId, fecha) -> {
+            args.add(usuarioId);
+            args.add(fecha);
+        });
+        
+        try {
+            int actualizados = jdbcTemplate.update(sql, args.toArray());
+            log.debug("Último acceso actualizado para {} usuario(s)", actualizados);
         } catch (Exception e) {
-            System.err.println("❌ DAO: Error actualizando último acceso: " + e.getMessage());
-            return false;
+            // Devolver el lote al mapa sin pisar accesos más recientes
+            lote.forEach((usuarioId, fecha) -> accesosPendientes.merge(usuarioId, fecha,
+                (actual, anterior) -> actual.isAfter(anterior) ? actual : anterior));
+            log.warn("Error actualizando último acceso: {}", e.getMessage());
         }
     }
     
+    // Al apagar se escribe lo que quede antes de cerrar el pool de conexiones
+    @PreDestroy
+    public void volcarAlApagar() {
+        volcarAccesos();
+    }
+    
     // Métodos de utilidad
     public Integer testConnection() {
         try {
@@ -0,0 +1,43 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.Cambios;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+// Respuesta de /cambios: {"success": true, "medicamentos": [...], "eliminados": [ids],
+// "marca": "2024-05-01T10:15:30.123456", "completo": false}
+@JsonSerialize(using = CambiosResponse.Serializer.class)
+public record CambiosResponse<T>(String clave, Cambios<T> cambios) {
+    
+    public static <T> CambiosResponse<T> de(String clave, Cambios<T> cambios) {
+        return new CambiosResponse<>(clave, cambios);
+    }
+    
+    static final class Serializer extends StdSerializer<CambiosResponse<?>> {
+        
+        Serializer() {
+            super(CambiosResponse.class, false);
+        }
+        
+        @Override
+        public void serialize(CambiosResponse<?> respuesta, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Cambios<?> cambios = respuesta.cambios();
+            gen.writeStartObject();
+            gen.writeBooleanField("success", true);
+            provider.defaultSerializeField(respuesta.clave(), cambios.modificados(), gen);
+            gen.writeArrayFieldStart("eliminados");
+            for (Integer id : cambios.eliminados()) {
+                gen.writeNumber(id);
+            }
+            gen.writeEndArray();
+            // toString conserva los microsegundos; la marca se reenvía tal cual como since
+            gen.writeStringField("marca", cambios.marca().toString());
+            gen.writeBooleanField("completo", cambios.completo());
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.Categoria;
+
+// Cuerpo de POST/PUT /categorias. En una actualización los campos nulos no se tocan.
+public record CategoriaRequest(String categoriaNom, String categoriaDesc) {
+    
+    public Categoria nueva() {
+        Categoria categoria = new Categoria();
+        categoria.setCategoriaNom(categoriaNom);
+        categoria.setCategoriaDesc(categoriaDesc != null ? categoriaDesc : "");
+        return categoria;
+    }
+    
+    public void aplicarA(Categoria existente) {
+        if (categoriaNom != null) {
+            existente.setCategoriaNom(categoriaNom);
+        }
+        if (categoriaDesc != null) {
+            existente.setCategoriaDesc(categoriaDesc);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.DetalleReceta;
+
+// Línea de receta en el cuerpo de POST/PUT /recetas. Las líneas existentes traen su ID; las nuevas no.
+public record DetalleRecetaRequest(
+    Integer detRecetaId,
+    String detRecetaMed,
+    Integer detRecetaCant,
+    String detRecetaDosis,
+    String detRecetaDur,
+    String detRecetaIndicaciones,
+    Integer medicamentoId
+) {
+    
+    public DetalleReceta detalle() {
+        DetalleReceta detalle = new DetalleReceta();
+        detalle.setDetRecetaId(detRecetaId);
+        detalle.setDetRecetaMed(detRecetaMed);
+        detalle.setDetRecetaCant(detRecetaCant != null ? detRecetaCant : 1);
+        detalle.setDetRecetaDosis(detRecetaDosis != null ? detRecetaDosis : "");
+        detalle.setDetRecetaDur(detRecetaDur != null ? detRecetaDur : "");
+        detalle.setDetRecetaIndicaciones(detRecetaIndicaciones != null ? detRecetaIndicaciones : "");
+        detalle.setMedicamentoId(medicamentoId);
+        return detalle;
+    }
+}
@@ -0,0 +1,9 @@
+package com.escom.enfermeria.dto;
+
+// Respuesta de error: {"success": false, "error": "..."}
+public record ErrorResponse(boolean success, String error) {
+    
+    public static ErrorResponse de(String error) {
+        return new ErrorResponse(false, error);
+    }
+}
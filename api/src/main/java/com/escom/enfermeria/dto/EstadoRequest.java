@@ -0,0 +1,4 @@
+package com.escom.enfermeria.dto;
+
+// Cuerpo de PATCH /recetas/{id}/estado
+public record EstadoRequest(String estado) {}
@@ -0,0 +1,40 @@
+package com.escom.enfermeria.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+// Respuesta con un solo registro bajo el nombre de la entidad:
+// {"success": true, "message": "...", "medicamento": {...}} (message es opcional)
+@JsonSerialize(using = ItemResponse.Serializer.class)
+public record ItemResponse<T>(String clave, T elemento, String message) {
+    
+    public static <T> ItemResponse<T> de(String clave, T elemento) {
+        return new ItemResponse<>(clave, elemento, null);
+    }
+    
+    public static <T> ItemResponse<T> de(String clave, T elemento, String message) {
+        return new ItemResponse<>(clave, elemento, message);
+    }
+    
+    static final class Serializer extends StdSerializer<ItemResponse<?>> {
+        
+        Serializer() {
+            super(ItemResponse.class, false);
+        }
+        
+        @Override
+        public void serialize(ItemResponse<?> respuesta, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeBooleanField("success", true);
+            if (respuesta.message() != null) {
+                gen.writeStringField("message", respuesta.message());
+            }
+            provider.defaultSerializeField(respuesta.clave(), respuesta.elemento(), gen);
+            gen.writeEndObject();
+        }
+    }
+}
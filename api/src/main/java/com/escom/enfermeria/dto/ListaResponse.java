@@ -0,0 +1,58 @@
+package com.escom.enfermeria.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+// Respuesta con una lista bajo el nombre de la entidad:
+// {"success": true, "total": n, "medicamentos": [...]}. En las páginas por cursor
+// se agregan "limit" y "siguiente"; al registrar, "message".
+@JsonSerialize(using = ListaResponse.Serializer.class)
+public record ListaResponse<T>(
+    String clave,
+    List<T> elementos,
+    String message,
+    Integer limit,
+    String siguiente
+) {
+    
+    public static <T> ListaResponse<T> de(String clave, List<T> elementos) {
+        return new ListaResponse<>(clave, elementos, null, null, null);
+    }
+    
+    public static <T> ListaResponse<T> registrados(String clave, List<T> elementos, String message) {
+        return new ListaResponse<>(clave, elementos, message, null, null);
+    }
+    
+    public static <T> ListaResponse<T> pagina(String clave, List<T> elementos, int limit, String siguiente) {
+        return new ListaResponse<>(clave, elementos, null, limit, siguiente);
+    }
+    
+    // Escribe el sobre campo por campo; solo las filas pasan por el serializador de su clase
+    static final class Serializer extends StdSerializer<ListaResponse<?>> {
+        
+        Serializer() {
+            super(ListaResponse.class, false);
+        }
+        
+        @Override
+        public void serialize(ListaResponse<?> respuesta, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeBooleanField("success", true);
+            if (respuesta.message() != null) {
+                gen.writeStringField("message", respuesta.message());
+            }
+            gen.writeNumberField("total", respuesta.elementos().size());
+            provider.defaultSerializeField(respuesta.clave(), respuesta.elementos(), gen);
+            if (respuesta.limit() != null) {
+                gen.writeNumberField("limit", respuesta.limit());
+                gen.writeStringField("siguiente", respuesta.siguiente());
+            }
+            gen.writeEndObject();
+        }
+    }
+}
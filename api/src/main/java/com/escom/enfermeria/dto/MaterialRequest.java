@@ -0,0 +1,61 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.Material;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Cuerpo de POST/PUT /materiales. En una actualización los campos nulos no se tocan.
+public record MaterialRequest(
+    String materialNom,
+    String materialDesc,
+    LocalDate materialFecComp,
+    String materialEstado,
+    Integer materialStock,
+    Integer materialStockMin,
+    BigDecimal materialPrecio,
+    Integer categoriaId
+) {
+    
+    // Material nuevo con los valores por defecto del alta
+    public Material nuevo() {
+        Material material = new Material();
+        material.setMaterialNom(materialNom);
+        material.setMaterialDesc(materialDesc != null ? materialDesc : "");
+        material.setMaterialFecComp(materialFecComp);
+        material.setMaterialEstado(materialEstado != null ? materialEstado : "DISPONIBLE");
+        material.setMaterialStock(materialStock);
+        material.setMaterialStockMin(materialStockMin != null ? materialStockMin : 5);
+        material.setMaterialPrecio(materialPrecio != null ? materialPrecio : BigDecimal.ZERO);
+        material.setCategoriaId(categoriaId);
+        return material;
+    }
+    
+    // Copiar solo los campos proporcionados
+    public void aplicarA(Material existente) {
+        if (materialNom != null) {
+            existente.setMaterialNom(materialNom);
+        }
+        if (materialDesc != null) {
+            existente.setMaterialDesc(materialDesc);
+        }
+        if (materialFecComp != null) {
+            existente.setMaterialFecComp(materialFecComp);
+        }
+        if (materialEstado != null) {
+            existente.setMaterialEstado(materialEstado);
+        }
+        if (materialStock != null) {
+            existente.setMaterialStock(materialStock);
+        }
+        if (materialStockMin != null) {
+            existente.setMaterialStockMin(materialStockMin);
+        }
+        if (materialPrecio != null) {
+            existente.setMaterialPrecio(materialPrecio);
+        }
+        if (categoriaId != null) {
+            existente.setCategoriaId(categoriaId);
+        }
+    }
+}
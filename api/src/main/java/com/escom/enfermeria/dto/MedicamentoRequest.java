@@ -0,0 +1,76 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.Medicamento;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Cuerpo de POST/PUT /medicamentos. En una actualización los campos nulos no se tocan.
+public record MedicamentoRequest(
+    String medicamentoNom,
+    String medicamentoDesc,
+    LocalDate medicamentoFecComp,
+    LocalDate medicamentoFecCad,
+    String medicamentoLote,
+    String medicamentoLaboratorio,
+    String medicamentoEstado,
+    Integer medicamentoStock,
+    Integer medicamentoStockMin,
+    BigDecimal medicamentoPrecio,
+    Integer categoriaId
+) {
+    
+    // Medicamento nuevo con los valores por defecto del alta
+    public Medicamento nuevo() {
+        Medicamento medicamento = new Medicamento();
+        medicamento.setMedicamentoNom(medicamentoNom);
+        medicamento.setMedicamentoDesc(medicamentoDesc != null ? medicamentoDesc : "");
+        medicamento.setMedicamentoFecComp(medicamentoFecComp);
+        medicamento.setMedicamentoFecCad(medicamentoFecCad);
+        medicamento.setMedicamentoLote(medicamentoLote != null ? medicamentoLote : "");
+        medicamento.setMedicamentoLaboratorio(medicamentoLaboratorio != null ? medicamentoLaboratorio : "");
+        medicamento.setMedicamentoEstado(medicamentoEstado != null ? medicamentoEstado : "DISPONIBLE");
+        medicamento.setMedicamentoStock(medicamentoStock);
+        medicamento.setMedicamentoStockMin(medicamentoStockMin != null ? medicamentoStockMin : 10);
+        medicamento.setMedicamentoPrecio(medicamentoPrecio != null ? medicamentoPrecio : BigDecimal.ZERO);
+        medicamento.setCategoriaId(categoriaId);
+        return medicamento;
+    }
+    
+    // Copiar solo los campos proporcionados
+    public void aplicarA(Medicamento existente) {
+        if (medicamentoNom != null) {
+            existente.setMedicamentoNom(medicamentoNom);
+        }
+        if (medicamentoDesc != null) {
+            existente.setMedicamentoDesc(medicamentoDesc);
+        }
+        if (medicamentoFecComp != null) {
+            existente.setMedicamentoFecComp(medicamentoFecComp);
+        }
+        if (medicamentoFecCad != null) {
+            existente.setMedicamentoFecCad(medicamentoFecCad);
+        }
+        if (medicamentoLote != null) {
+            existente.setMedicamentoLote(medicamentoLote);
+        }
+        if (medicamentoLaboratorio != null) {
+            existente.setMedicamentoLaboratorio(medicamentoLaboratorio);
+        }
+        if (medicamentoEstado != null) {
+            existente.setMedicamentoEstado(medicamentoEstado);
+        }
+        if (medicamentoStock != null) {
+            existente.setMedicamentoStock(medicamentoStock);
+        }
+        if (medicamentoStockMin != null) {
+            existente.setMedicamentoStockMin(medicamentoStockMin);
+        }
+        if (medicamentoPrecio != null) {
+            existente.setMedicamentoPrecio(medicamentoPrecio);
+        }
+        if (categoriaId != null) {
+            existente.setCategoriaId(categoriaId);
+        }
+    }
+}
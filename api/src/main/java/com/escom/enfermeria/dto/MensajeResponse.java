@@ -0,0 +1,9 @@
+package com.escom.enfermeria.dto;
+
+// Respuesta sin datos, solo confirmación: {"success": true, "message": "..."}
+public record MensajeResponse(boolean success, String message) {
+    
+    public static MensajeResponse ok(String message) {
+        return new MensajeResponse(true, message);
+    }
+}
@@ -0,0 +1,36 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.Movimiento;
+
+// Cuerpo de POST /movimientos (y cada elemento de /movimientos/lote)
+public record MovimientoRequest(
+    String movimientoTipo,
+    Integer movimientoCant,
+    String movimientoMotivo,
+    String movimientoRef,
+    Integer medicamentoId,
+    Integer materialId
+) {
+    
+    // Validar y armar el movimiento a nombre del usuario de la sesión (no se acepta del
+    // cuerpo ni de un encabezado: ajusta stock y queda en el historial)
+    public Movimiento movimiento(Integer usuarioId) {
+        if (!"ENTRADA".equals(movimientoTipo) && !"SALIDA".equals(movimientoTipo)) {
+            throw new IllegalArgumentException("Tipo inválido, debe ser ENTRADA o SALIDA");
+        }
+        if (movimientoCant == null) {
+            throw new IllegalArgumentException("La cantidad es requerida");
+        }
+        if (movimientoCant <= 0) {
+            throw new IllegalArgumentException("La cantidad debe ser mayor a cero");
+        }
+        
+        // Exactamente uno: medicamento o material
+        if ((medicamentoId == null) == (materialId == null)) {
+            throw new IllegalArgumentException("Indique medicamentoId o materialId, solo uno");
+        }
+        
+        return new Movimiento(movimientoTipo, movimientoCant, movimientoMotivo, movimientoRef,
+            usuarioId, medicamentoId, materialId, null);
+    }
+}
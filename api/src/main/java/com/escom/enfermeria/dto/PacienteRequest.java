@@ -0,0 +1,45 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.Paciente;
+
+// Cuerpo de POST/PUT /pacientes. En una actualización los campos nulos no se tocan.
+public record PacienteRequest(
+    String pacienteNombre,
+    String pacienteEscuela,
+    Integer pacienteEdad,
+    String pacienteTelefono,
+    String pacienteEmail
+) {
+    
+    public boolean edadValida() {
+        return pacienteEdad == null || (pacienteEdad >= 1 && pacienteEdad <= 120);
+    }
+    
+    public Paciente nuevo() {
+        Paciente paciente = new Paciente();
+        paciente.setPacienteNombre(pacienteNombre);
+        paciente.setPacienteEscuela(pacienteEscuela);
+        paciente.setPacienteEdad(pacienteEdad);
+        paciente.setPacienteTelefono(pacienteTelefono != null ? pacienteTelefono : "");
+        paciente.setPacienteEmail(pacienteEmail != null ? pacienteEmail : "");
+        return paciente;
+    }
+    
+    public void aplicarA(Paciente existente) {
+        if (pacienteNombre != null) {
+            existente.setPacienteNombre(pacienteNombre);
+        }
+        if (pacienteEscuela != null) {
+            existente.setPacienteEscuela(pacienteEscuela);
+        }
+        if (pacienteEdad != null) {
+            existente.setPacienteEdad(pacienteEdad);
+        }
+        if (pacienteTelefono != null) {
+            existente.setPacienteTelefono(pacienteTelefono);
+        }
+        if (pacienteEmail != null) {
+            existente.setPacienteEmail(pacienteEmail);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.escom.enfermeria.dto;
+
+import com.escom.enfermeria.models.DetalleReceta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Cuerpo de POST/PUT /recetas. En una actualización los campos nulos no se tocan y
+// detalles = null significa que solo se edita el encabezado.
+public record RecetaRequest(
+    Integer pacienteId,
+    String recetaDiag,
+    String recetaObs,
+    List<DetalleRecetaRequest> detalles
+) {
+    
+    // Detalles como modelo (null si la petición no los trae)
+    public List<DetalleReceta> detallesReceta() {
+        if (detalles == null) {
+            return null;
+        }
+        List<DetalleReceta> resultado = new ArrayList<>(detalles.size());
+        for (DetalleRecetaRequest detalle : detalles) {
+            resultado.add(detalle.detalle());
+        }
+        return resultado;
+    }
+}
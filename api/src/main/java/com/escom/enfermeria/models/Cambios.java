@@ -0,0 +1,13 @@
+package com.escom.enfermeria.models;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Resultado de una sincronización incremental. Si completo es true, modificados trae
+// todas las filas y el cliente reemplaza su copia; marca se envía como since la próxima vez.
+public record Cambios<T>(
+    List<T> modificados,
+    List<Integer> eliminados,
+    LocalDateTime marca,
+    boolean completo
+) {}
@@ -0,0 +1,9 @@
+package com.escom.enfermeria.models;
+
+// Contadores de materiales calculados en una sola consulta
+public record EstadisticasMateriales(
+    int total,
+    int stockBajo,
+    int enMantenimiento,
+    int agotados
+) {}
@@ -0,0 +1,9 @@
+package com.escom.enfermeria.models;
+
+// Contadores de medicamentos calculados en una sola consulta
+public record EstadisticasMedicamentos(
+    int total,
+    int stockBajo,
+    int proximosCaducar,
+    int agotados
+) {}
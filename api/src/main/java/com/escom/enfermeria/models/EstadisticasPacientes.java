@@ -0,0 +1,12 @@
+package com.escom.enfermeria.models;
+
+// Contadores de pacientes calculados en una sola consulta
+public record EstadisticasPacientes(
+    int total,
+    double promedioEdad,
+    int escuelasUnicas,
+    int menores,    // 1 - 17 años
+    int jovenes,    // 18 - 25 años
+    int adultos,    // 26 - 40 años
+    int mayores     // 41 - 120 años
+) {}
@@ -0,0 +1,9 @@
+package com.escom.enfermeria.models;
+
+// Contadores de recetas por estado calculados en una sola consulta
+public record EstadisticasRecetas(
+    int total,
+    int activas,
+    int completadas,
+    int canceladas
+) {}
@@ -0,0 +1,97 @@
+package com.escom.enfermeria.models;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.LocalDateTime;
+
+public class Movimiento {
+    private Integer movimientoId;
+    private String movimientoTipo; // ENTRADA o SALIDA
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime movimientoFecha;
+    
+    private Integer movimientoCant;
+    private String movimientoMotivo;
+    private String movimientoRef;
+    private Integer usuarioId;
+    private Integer medicamentoId;
+    private Integer materialId;
+    private Integer recetaId;
+    private String medicamentoNombre; // Para mostrar
+    private String materialNombre; // Para mostrar
+    
+    @JsonFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss")
+    private LocalDateTime created_at;
+    
+    // Constructores
+    public Movimiento() {}
+    
+    public Movimiento(String movimientoTipo, Integer movimientoCant, String movimientoMotivo,
+                      String movimientoRef, Integer usuarioId, Integer medicamentoId,
+                      Integer materialId, Integer recetaId) {
+        this.movimientoTipo = movimientoTipo;
+        this.movimientoCant = movimientoCant;
+        this.movimientoMotivo = movimientoMotivo;
+        this.movimientoRef = movimientoRef;
+        this.usuarioId = usuarioId;
+        this.medicamentoId = medicamentoId;
+        this.materialId = materialId;
+        this.recetaId = recetaId;
+    }
+    
+    // Cambio de stock que produce el movimiento: positivo para ENTRADA, negativo para SALIDA
+    public int delta() {
+        return "SALIDA".equals(movimientoTipo) ? -movimientoCant : movimientoCant;
+    }
+    
+    // Getters y Setters
+    public Integer getMovimientoId() { return movimientoId; }
+    public void setMovimientoId(Integer movimientoId) { this.movimientoId = movimientoId; }
+    
+    public String getMovimientoTipo() { return movimientoTipo; }
+    public void setMovimientoTipo(String movimientoTipo) { this.movimientoTipo = movimientoTipo; }
+    
+    public LocalDateTime getMovimientoFecha() { return movimientoFecha; }
+    public void setMovimientoFecha(LocalDateTime movimientoFecha) { this.movimientoFecha = movimientoFecha; }
+    
+    public Integer getMovimientoCant() { return movimientoCant; }
+    public void setMovimientoCant(Integer movimientoCant) { this.movimientoCant = movimientoCant; }
+    
+    public String getMovimientoMotivo() { return movimientoMotivo; }
+    public void setMovimientoMotivo(String movimientoMotivo) { this.movimientoMotivo = movimientoMotivo; }
+    
+    public String getMovimientoRef() { return movimientoRef; }
+    public void setMovimientoRef(String movimientoRef) { this.movimientoRef = movimientoRef; }
+    
+    public Integer getUsuarioId() { return usuarioId; }
+    public void setUsuarioId(Integer usuarioId) { this.usuarioId = usuarioId; }
+    
+    public Integer getMedicamentoId() { return medicamentoId; }
+    public void setMedicamentoId(Integer medicamentoId) { this.medicamentoId = medicamentoId; }
+    
+    public Integer getMaterialId() { return materialId; }
+    public void setMaterialId(Integer materialId) { this.materialId = materialId; }
+    
+    public Integer getRecetaId() { return recetaId; }
+    public void setRecetaId(Integer recetaId) { this.recetaId = recetaId; }
+    
+    public String getMedicamentoNombre() { return medicamentoNombre; }
+    public void setMedicamentoNombre(String medicamentoNombre) { this.medicamentoNombre = medicamentoNombre; }
+    
+    public String getMaterialNombre() { return materialNombre; }
+    public void setMaterialNombre(String materialNombre) { this.materialNombre = materialNombre; }
+    
+    public LocalDateTime getCreated_at() { return created_at; }
+    public void setCreated_at(LocalDateTime created_at) { this.created_at = created_at; }
+    
+    @Override
+    public String toString() {
+        return "Movimiento{" +
+                "id=" + movimientoId +
+                ", tipo='" + movimientoTipo + '\'' +
+                ", cantidad=" + movimientoCant +
+                ", medicamentoId=" + medicamentoId +
+                ", materialId=" + materialId +
+                '}';
+    }
+}
@@ -1,5 +1,7 @@
 package com.escom.enfermeria.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.LocalDateTime;
 
 public class Reporte {
@@ -8,7 +10,8 @@ public class Reporte {
     private LocalDateTime reporteFecha;
     private String reportePeriodo;
     private String reporteDesc;
-    private String reporteUrl;
+    private String reporteUrl; // Nombre del PDF dentro del directorio de trabajos, no se expone
+    private String reporteEstado; // PENDIENTE, EN_PROCESO, COMPLETADO, ERROR, EXPIRADO
     private Integer usuarioId;
     private LocalDateTime created_at;
     
@@ -70,6 +73,7 @@ public class Reporte {
         this.reporteDesc = reporteDesc;
     }
     
+    @JsonIgnore
     public String getReporteUrl() {
         return reporteUrl;
     }
@@ -78,6 +82,21 @@ public class Reporte {
         this.reporteUrl = reporteUrl;
     }
     
+    // Ruta de descarga que ve el cliente; solo existe cuando el PDF está listo
+    public String getReporteDescarga() {
+        return "COMPLETADO".equals(reporteEstado) && reporteUrl != null
+            ? "/reportes/jobs/" + reporteId + "/pdf"
+            : null;
+    }
+    
+    public String getReporteEstado() {
+        return reporteEstado;
+    }
+    
+    public void setReporteEstado(String reporteEstado) {
+        this.reporteEstado = reporteEstado;
+    }
+    
     public Integer getUsuarioId() {
         return usuarioId;
     }
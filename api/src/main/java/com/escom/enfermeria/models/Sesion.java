@@ -0,0 +1,11 @@
+package com.escom.enfermeria.models;
+
+// Datos de un token de sesión ya verificado. emitido y expira en milisegundos epoch;
+// id identifica al token para poder revocarlo al cerrar sesión.
+public record Sesion(
+    int usuarioId,
+    String rol,
+    long emitido,
+    long expira,
+    String id
+) {}
@@ -0,0 +1,297 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.EstadisticasDAO;
+import com.escom.enfermeria.models.EstadisticasMateriales;
+import com.escom.enfermeria.models.EstadisticasMedicamentos;
+import com.escom.enfermeria.models.EstadisticasPacientes;
+import com.escom.enfermeria.models.EstadisticasRecetas;
+import com.escom.enfermeria.models.Material;
+import com.escom.enfermeria.models.Medicamento;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Contadores en memoria para la vista previa de reportes. Los DAOs los ajustan en cada
+// alta/baja/modificación y una reconciliación periódica los recalcula desde la base
+// (corrige lo que no se puede seguir incrementalmente: el paso de los días para
+// "próximos a caducar" y escrituras que se hayan revertido).
+@Service
+public class EstadisticasCacheService {
+    
+    // Ventana de "próximos a caducar", igual que MedicamentoDAO.findProximosCaducar
+    private static final int DIAS_PROXIMOS_CADUCAR = 30;
+    
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasCacheService.class);
+    
+    private final EstadisticasDAO estadisticasDAO;
+    
+    private final AtomicInteger totalMedicamentos = new AtomicInteger();
+    private final AtomicInteger totalMateriales = new AtomicInteger();
+    private final AtomicInteger totalPacientes = new AtomicInteger();
+    private final AtomicInteger totalRecetas = new AtomicInteger();
+    
+    // Se guardan IDs y no solo conteos: al modificar un registro no se conoce su
+    // estado anterior, pero basta con agregarlo o quitarlo del conjunto
+    private final Set<Integer> medicamentosStockBajo = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> medicamentosProximosCaducar = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> materialesStockBajo = ConcurrentHashMap.newKeySet();
+    private final Map<YearMonth, AtomicInteger> recetasPorMes = new ConcurrentHashMap<>();
+    
+    private volatile boolean cargado = false;
+    private volatile LocalDateTime ultimaReconciliacion;
+    
+    // Ajustes aplicados desde que empezó la reconciliación en curso (null si no hay una).
+    // Se registran junto con los contadores bajo el monitor de este servicio, el mismo con
+    // el que reconciliar escribe sus resultados.
+    private List<Runnable> ajustesDuranteReconciliacion;
+    
+    // Evita que dos reconciliaciones se crucen y la más vieja escriba al final
+    private final Object reconciliando = new Object();
+    
+    public EstadisticasCacheService(EstadisticasDAO estadisticasDAO) {
+        this.estadisticasDAO = estadisticasDAO;
+    }
+    
+    // Snapshot para /reportes/estadisticas. mes/año solo acotan las recetas;
+    // el inventario y los pacientes siempre son el estado actual.
+    public Map<String, Object> getEstadisticas(Integer mes, Integer año) {
+        if (!cargado) {
+            reconciliar();
+        }
+        
+        int recetas;
+        if (mes != null && año != null) {
+            AtomicInteger delMes = recetasPorMes.get(YearMonth.of(año, mes));
+            recetas = delMes != null ? delMes.get() : 0;
+        } else {
+            recetas = totalRecetas.get();
+        }
+        
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("medicamentos", totalMedicamentos.get());
+        estadisticas.put("materiales", totalMateriales.get());
+        estadisticas.put("recetas", recetas);
+        estadisticas.put("pacientes", totalPacientes.get());
+        estadisticas.put("stockBajo", medicamentosStockBajo.size() + materialesStockBajo.size());
+        estadisticas.put("proximosCaducar", medicamentosProximosCaducar.size());
+        return estadisticas;
+    }
+    
+    public LocalDateTime getUltimaReconciliacion() {
+        return ultimaReconciliacion;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        try {
+            reconciliar();
+        } catch (Exception e) {
+            log.warn("No se pudieron cargar los contadores de estadísticas: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${estadisticas.reconciliacion-ms:300000}",
+               initialDelayString = "${estadisticas.reconciliacion-ms:300000}")
+    public void reconciliacionPeriodica() {
+        try {
+            reconciliar();
+        } catch (Exception e) {
+            log.warn("Error reconciliando contadores de estadísticas: {}", e.getMessage());
+        }
+    }
+    
+    // Recalcular todos los contadores desde la base de datos. Las consultas corren sin
+    // bloquear los ajustes; los que se confirmen mientras tanto se guardan y se vuelven a
+    // aplicar sobre el resultado, así una reconciliación nunca pierde escrituras aunque
+    // lleguen sin pausa. Si alguna consulta ya vio una de esas escrituras, su conteo queda
+    // desfasado por ella hasta la siguiente reconciliación.
+    public void reconciliar() {
+        synchronized (reconciliando) {
+            synchronized (this) {
+                ajustesDuranteReconciliacion = new ArrayList<>();
+            }
+            try {
+                recalcular();
+            } finally {
+                synchronized (this) {
+                    ajustesDuranteReconciliacion = null;
+                }
+            }
+        }
+    }
+    
+    private void recalcular() {
+        EstadisticasMedicamentos medicamentos = estadisticasDAO.medicamentos();
+        EstadisticasMateriales materiales = estadisticasDAO.materiales();
+        EstadisticasPacientes pacientes = estadisticasDAO.pacientes();
+        EstadisticasRecetas recetas = estadisticasDAO.recetas(null, null, null);
+        Set<Integer> idsMedicamentosStockBajo = estadisticasDAO.idsMedicamentosStockBajo();
+        Set<Integer> idsProximosCaducar = estadisticasDAO.idsMedicamentosProximosCaducar();
+        Set<Integer> idsMaterialesStockBajo = estadisticasDAO.idsMaterialesStockBajo();
+        Map<YearMonth, Integer> porMes = estadisticasDAO.recetasPorMes();
+        
+        synchronized (this) {
+            totalMedicamentos.set(medicamentos.total());
+            totalMateriales.set(materiales.total());
+            totalPacientes.set(pacientes.total());
+            totalRecetas.set(recetas.total());
+            
+            reemplazar(medicamentosStockBajo, idsMedicamentosStockBajo);
+            reemplazar(medicamentosProximosCaducar, idsProximosCaducar);
+            reemplazar(materialesStockBajo, idsMaterialesStockBajo);
+            
+            recetasPorMes.keySet().retainAll(porMes.keySet());
+            porMes.forEach((mes, total) ->
+                recetasPorMes.computeIfAbsent(mes, k -> new AtomicInteger()).set(total));
+            
+            if (!ajustesDuranteReconciliacion.isEmpty()) {
+                ajustesDuranteReconciliacion.forEach(Runnable::run);
+                log.debug("{} ajuste(s) confirmados durante las consultas se reaplicaron", ajustesDuranteReconciliacion.size());
+            }
+            cargado = true;
+        }
+        ultimaReconciliacion = LocalDateTime.now();
+        log.debug("Contadores de estadísticas reconciliados");
+    }
+    
+    // ===== Ajustes incrementales (llamados por los DAOs) =====
+    // Si hay una transacción activa se aplican hasta que se confirma,
+    // para no contar escrituras que terminen revirtiéndose. Se aplican con el monitor del
+    // servicio para no mezclarse con la escritura de una reconciliación.
+    
+    public void medicamentoCreado(Medicamento medicamento) {
+        aplicar(() -> {
+            totalMedicamentos.incrementAndGet();
+            marcarMedicamento(medicamento);
+        });
+    }
+    
+    public void medicamentoActualizado(Medicamento medicamento) {
+        aplicar(() -> marcarMedicamento(medicamento));
+    }
+    
+    public void medicamentoStockActualizado(Integer id, boolean stockBajo) {
+        aplicar(() -> marcar(medicamentosStockBajo, id, stockBajo));
+    }
+    
+    public void medicamentoEliminado(Integer id) {
+        aplicar(() -> {
+            totalMedicamentos.decrementAndGet();
+            medicamentosStockBajo.remove(id);
+            medicamentosProximosCaducar.remove(id);
+        });
+    }
+    
+    public void materialCreado(Material material) {
+        aplicar(() -> {
+            totalMateriales.incrementAndGet();
+            marcarMaterial(material);
+        });
+    }
+    
+    public void materialActualizado(Material material) {
+        aplicar(() -> marcarMaterial(material));
+    }
+    
+    public void materialStockActualizado(Integer id, boolean stockBajo) {
+        aplicar(() -> marcar(materialesStockBajo, id, stockBajo));
+    }
+    
+    public void materialEliminado(Integer id) {
+        aplicar(() -> {
+            totalMateriales.decrementAndGet();
+            materialesStockBajo.remove(id);
+        });
+    }
+    
+    public void pacienteCreado() {
+        aplicar(totalPacientes::incrementAndGet);
+    }
+    
+    public void pacienteEliminado() {
+        aplicar(totalPacientes::decrementAndGet);
+    }
+    
+    public void recetaCreada(LocalDateTime fecha) {
+        aplicar(() -> {
+            totalRecetas.incrementAndGet();
+            if (fecha != null) {
+                recetasPorMes.computeIfAbsent(YearMonth.from(fecha), k -> new AtomicInteger()).incrementAndGet();
+            }
+        });
+    }
+    
+    public void recetaEliminada(LocalDateTime fecha) {
+        aplicar(() -> {
+            totalRecetas.decrementAndGet();
+            if (fecha != null) {
+                AtomicInteger delMes = recetasPorMes.get(YearMonth.from(fecha));
+                if (delMes != null) {
+                    delMes.decrementAndGet();
+                }
+            }
+        });
+    }
+    
+    // Métodos auxiliares
+    private void marcarMedicamento(Medicamento medicamento) {
+        Integer id = medicamento.getMedicamentoId();
+        marcar(medicamentosStockBajo, id,
+            esStockBajo(medicamento.getMedicamentoStock(), medicamento.getMedicamentoStockMin()));
+        marcar(medicamentosProximosCaducar, id, esProximoCaducar(medicamento.getMedicamentoFecCad()));
+    }
+    
+    private void marcarMaterial(Material material) {
+        marcar(materialesStockBajo, material.getMaterialId(),
+            esStockBajo(material.getMaterialStock(), material.getMaterialStockMin()));
+    }
+    
+    private static boolean esStockBajo(Integer stock, Integer stockMin) {
+        return stock != null && stockMin != null && stock <= stockMin;
+    }
+    
+    private static boolean esProximoCaducar(LocalDate fechaCaducidad) {
+        LocalDate hoy = LocalDate.now();
+        return fechaCaducidad != null
+            && !fechaCaducidad.isBefore(hoy)
+            && !fechaCaducidad.isAfter(hoy.plusDays(DIAS_PROXIMOS_CADUCAR));
+    }
+    
+    private void aplicar(Runnable ajuste) {
+        TrasConfirmar.ejecutar(() -> {
+            synchronized (this) {
+                ajuste.run();
+                if (ajustesDuranteReconciliacion != null) {
+                    ajustesDuranteReconciliacion.add(ajuste);
+                }
+            }
+        });
+    }
+    
+    private static void marcar(Set<Integer> conjunto, Integer id, boolean incluido) {
+        if (incluido) {
+            conjunto.add(id);
+        } else {
+            conjunto.remove(id);
+        }
+    }
+    
+    private static void reemplazar(Set<Integer> conjunto, Set<Integer> nuevos) {
+        conjunto.retainAll(nuevos);
+        conjunto.addAll(nuevos);
+    }
+}
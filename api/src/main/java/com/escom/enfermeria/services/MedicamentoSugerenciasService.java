@@ -0,0 +1,181 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.MedicamentoDAO;
+import com.escom.enfermeria.models.Medicamento;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+// Índice en memoria de nombres de medicamento para el autocompletado del formulario
+// de recetas. Las claves son los nombres normalizados (sin acentos, en minúsculas)
+// ordenados, así que buscar un prefijo es un recorrido de un rango del mapa, sin
+// consultar la base. Se carga al iniciar y MedicamentoDAO lo mantiene al día.
+@Service
+public class MedicamentoSugerenciasService {
+    
+    public static final int LIMITE_DEFECTO = 10;
+    public static final int LIMITE_MAXIMO = 50;
+    
+    // Separa el nombre de la clave del ID, para que dos medicamentos con el mismo
+    // nombre tengan claves distintas y se ordenen justo después del prefijo
+    private static final char SEPARADOR = '\u0000';
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern ESPACIOS = Pattern.compile("[^\\p{Alnum}]+");
+    
+    private static final Logger log = LoggerFactory.getLogger(MedicamentoSugerenciasService.class);
+    
+    // Datos que se devuelven en cada sugerencia
+    public record Sugerencia(Integer medicamentoId, String medicamentoNom,
+                             Integer medicamentoStock, String medicamentoEstado) {}
+    
+    private final MedicamentoDAO medicamentoDAO;
+    
+    // Coincidencias desde el inicio del nombre y desde el inicio de cada palabra siguiente
+    // ("500" encuentra "Paracetamol 500 mg"); las primeras se sugieren antes
+    private final NavigableMap<String, Integer> porNombre = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Integer> porPalabra = new ConcurrentSkipListMap<>();
+    private final Map<Integer, Sugerencia> medicamentos = new ConcurrentHashMap<>();
+    
+    // MedicamentoDAO también depende de este servicio; @Lazy rompe el ciclo
+    public MedicamentoSugerenciasService(@Lazy MedicamentoDAO medicamentoDAO) {
+        this.medicamentoDAO = medicamentoDAO;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarAlIniciar() {
+        try {
+            int[] total = {0};
+            medicamentoDAO.forEachMedicamento(medicamento -> {
+                indexar(medicamento);
+                total[0]++;
+            });
+            log.debug("Índice de sugerencias cargado con {} medicamentos", total[0]);
+        } catch (Exception e) {
+            log.warn("No se pudo cargar el índice de sugerencias: {}", e.getMessage());
+        }
+    }
+    
+    // Hasta "limite" medicamentos cuyo nombre, o alguna de sus palabras, empieza con el texto
+    public List<Sugerencia> sugerir(String texto, int limite) {
+        String prefijo = normalizar(texto);
+        Set<Integer> ids = new LinkedHashSet<>();
+        if (!prefijo.isEmpty()) {
+            recolectar(porNombre, prefijo, limite, ids);
+            recolectar(porPalabra, prefijo, limite, ids);
+        }
+        
+        List<Sugerencia> sugerencias = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            Sugerencia sugerencia = medicamentos.get(id);
+            if (sugerencia != null) {
+                sugerencias.add(sugerencia);
+            }
+        }
+        return sugerencias;
+    }
+    
+    // ===== Mantenimiento (llamado por MedicamentoDAO) =====
+    // Se aplica al confirmar la transacción, igual que las estadísticas y las versiones:
+    // si el ajuste de stock se revierte (p. ej. por StockInsuficienteException en otra
+    // línea), el índice no debe quedarse con el valor que nunca se guardó.
+    
+    public void guardar(Medicamento medicamento) {
+        TrasConfirmar.ejecutar(() -> indexar(medicamento));
+    }
+    
+    public void actualizarStock(Integer id, Integer stock, String estado) {
+        // El nombre no cambia, así que no hace falta tocar las claves
+        TrasConfirmar.ejecutar(() -> medicamentos.computeIfPresent(id, (k, actual) ->
+            new Sugerencia(id, actual.medicamentoNom(), stock, estado)));
+    }
+    
+    public void eliminar(Integer id) {
+        TrasConfirmar.ejecutar(() -> quitar(id));
+    }
+    
+    private synchronized void indexar(Medicamento medicamento) {
+        Integer id = medicamento.getMedicamentoId();
+        Sugerencia anterior = medicamentos.get(id);
+        if (anterior != null) {
+            quitarClaves(anterior);
+        }
+        
+        Sugerencia sugerencia = new Sugerencia(id, medicamento.getMedicamentoNom(),
+            medicamento.getMedicamentoStock(), medicamento.getMedicamentoEstado());
+        medicamentos.put(id, sugerencia);
+        
+        List<String> palabras = palabras(sugerencia.medicamentoNom());
+        if (!palabras.isEmpty()) {
+            porNombre.put(clave(String.join(" ", palabras), id), id);
+            for (int i = 1; i < palabras.size(); i++) {
+                porPalabra.put(clave(String.join(" ", palabras.subList(i, palabras.size())), id), id);
+            }
+        }
+    }
+    
+    private synchronized void quitar(Integer id) {
+        Sugerencia anterior = medicamentos.remove(id);
+        if (anterior != null) {
+            quitarClaves(anterior);
+        }
+    }
+    
+    // Métodos auxiliares
+    private static void recolectar(NavigableMap<String, Integer> indice, String prefijo, int limite, Set<Integer> ids) {
+        // Todas las claves que empiezan con el prefijo quedan en [prefijo, prefijo + '\uffff')
+        for (Integer id : indice.subMap(prefijo, true, prefijo + '\uffff', false).values()) {
+            if (ids.size() >= limite) {
+                return;
+            }
+            ids.add(id);
+        }
+    }
+    
+    private void quitarClaves(Sugerencia sugerencia) {
+        List<String> palabras = palabras(sugerencia.medicamentoNom());
+        if (!palabras.isEmpty()) {
+            porNombre.remove(clave(String.join(" ", palabras), sugerencia.medicamentoId()));
+            for (int i = 1; i < palabras.size(); i++) {
+                porPalabra.remove(clave(String.join(" ", palabras.subList(i, palabras.size())), sugerencia.medicamentoId()));
+            }
+        }
+    }
+    
+    private static String clave(String nombreNormalizado, Integer id) {
+        return nombreNormalizado + SEPARADOR + id;
+    }
+    
+    private static List<String> palabras(String nombre) {
+        List<String> palabras = new ArrayList<>();
+        for (String palabra : ESPACIOS.split(normalizar(nombre))) {
+            if (!palabra.isEmpty()) {
+                palabras.add(palabra);
+            }
+        }
+        return palabras;
+    }
+    
+    // Quitar acentos, pasar a minúsculas y dejar un solo espacio entre palabras
+    static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String sinAcentos = MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return ESPACIOS.matcher(sinAcentos.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,148 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.ReporteDAO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class ReporteCacheService {
+    
+    private final ReporteDAO reporteDAO;
+    private final long maxBytes;
+    private final long maxBytesPorEntrada;
+    
+    // LinkedHashMap en orden de acceso: el primer elemento es el menos usado recientemente
+    private final LinkedHashMap<String, byte[]> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytesEnCache = 0;
+    
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    
+    public ReporteCacheService(ReporteDAO reporteDAO,
+                               @Value("${reportes.cache.max-mb:64}") long maxMb) {
+        this.reporteDAO = reporteDAO;
+        this.maxBytes = maxMb * 1024 * 1024;
+        // Un solo PDF no puede ocupar más de la cuarta parte de la caché
+        this.maxBytesPorEntrada = this.maxBytes / 4;
+    }
+    
+    // Calcular el ETag del reporte. La clave incluye tipo, usuario, período, el día actual
+    // (el PDF imprime la fecha de generación) y la versión de los datos, que se obtiene
+    // con una sola consulta de metadatos. Mismo ETag => mismo contenido.
+    public String calcularEtag(String tipo, Integer usuarioId, Integer mes, Integer año) {
+        LocalDateTime[] rango = ReporteService.rangoMes(mes, año);
+        String version = reporteDAO.findVersionDatos(tipo, usuarioId, rango[0], rango[1]);
+        String clave = String.join("|", tipo, String.valueOf(usuarioId), String.valueOf(mes),
+            String.valueOf(año), LocalDate.now().toString(), version);
+        return "\"" + sha256(clave).substring(0, 32) + "\"";
+    }
+    
+    public synchronized byte[] get(String etag) {
+        byte[] pdf = entradas.get(etag);
+        if (pdf != null) {
+            aciertos.incrementAndGet();
+        } else {
+            fallos.incrementAndGet();
+        }
+        return pdf;
+    }
+    
+    public synchronized void put(String etag, byte[] pdf) {
+        if (pdf.length > maxBytesPorEntrada) {
+            return;
+        }
+        byte[] anterior = entradas.put(etag, pdf);
+        if (anterior != null) {
+            bytesEnCache -= anterior.length;
+        }
+        bytesEnCache += pdf.length;
+        
+        // Desalojar los menos usados hasta volver al límite
+        Iterator<Map.Entry<String, byte[]>> it = entradas.entrySet().iterator();
+        while (bytesEnCache > maxBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> eldest = it.next();
+            if (eldest.getKey().equals(etag)) {
+                continue;
+            }
+            bytesEnCache -= eldest.getValue().length;
+            it.remove();
+        }
+    }
+    
+    // Envolver el stream de salida para que lo escrito se copie también a la caché.
+    // Si el PDF supera el tamaño máximo por entrada se deja de copiar y no se guarda.
+    // La copia se guarda al llamar a close(), que solo debe invocarse si la generación
+    // terminó bien; el stream destino no se cierra.
+    public OutputStream capturar(String etag, OutputStream destino) {
+        return new FilterOutputStream(destino) {
+            private ByteArrayOutputStream copia = new ByteArrayOutputStream();
+            
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                if (copia != null) {
+                    copia.write(b);
+                    revisarLimite();
+                }
+            }
+            
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                if (copia != null) {
+                    copia.write(b, off, len);
+                    revisarLimite();
+                }
+            }
+            
+            private void revisarLimite() {
+                if (copia.size() > maxBytesPorEntrada) {
+                    copia = null;
+                }
+            }
+            
+            @Override
+            public void close() throws IOException {
+                out.flush();
+                if (copia != null) {
+                    put(etag, copia.toByteArray());
+                    copia = null;
+                }
+            }
+        };
+    }
+    
+    public synchronized Map<String, Object> getEstadisticas() {
+        return Map.of(
+            "entradas", entradas.size(),
+            "bytes", bytesEnCache,
+            "maxBytes", maxBytes,
+            "aciertos", aciertos.get(),
+            "fallos", fallos.get()
+        );
+    }
+    
+    private static String sha256(String texto) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(texto.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
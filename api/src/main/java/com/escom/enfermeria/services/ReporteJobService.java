@@ -0,0 +1,203 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.ReporteDAO;
+import com.escom.enfermeria.models.Reporte;
+import com.itextpdf.text.DocumentException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+@Service
+public class ReporteJobService {
+    
+    public static final Set<String> TIPOS = Set.of("medicamentos", "materiales", "recetas", "consolidado");
+    
+    private static final Logger log = LoggerFactory.getLogger(ReporteJobService.class);
+    
+    private final ReporteService reporteService;
+    private final ReporteDAO reporteDAO;
+    private final ThreadPoolTaskExecutor reporteExecutor;
+    private final Path directorio;
+    private final Duration latido;
+    private final Duration retencion;
+    
+    // Reportes encolados o en generación en esta instancia; se les renueva el latido
+    private final Set<Integer> enCurso = ConcurrentHashMap.newKeySet();
+    
+    public ReporteJobService(ReporteService reporteService, ReporteDAO reporteDAO,
+                             @Qualifier("reporteExecutor") ThreadPoolTaskExecutor reporteExecutor,
+                             @Value("${reportes.jobs.directorio:reportes-generados}") String directorio,
+                             @Value("${reportes.jobs.latido-ms:30000}") long latidoMs,
+                             @Value("${reportes.jobs.retencion-horas:24}") long retencionHoras) {
+        this.reporteService = reporteService;
+        this.reporteDAO = reporteDAO;
+        this.reporteExecutor = reporteExecutor;
+        this.directorio = Paths.get(directorio).toAbsolutePath();
+        this.latido = Duration.ofMillis(latidoMs);
+        this.retencion = Duration.ofHours(retencionHoras);
+    }
+    
+    // Registrar el reporte como PENDIENTE y encolar su generación.
+    // Lanza TaskRejectedException si el pool y su cola están llenos.
+    public Reporte encolar(String tipo, Integer usuarioId, Integer mes, Integer año) {
+        Reporte reporte = new Reporte();
+        reporte.setReporteTipo(tipo.toUpperCase());
+        reporte.setReportePeriodo(mes != null && año != null ? "MENSUAL" : "TODOS");
+        reporte.setReporteDesc(mes != null && año != null
+            ? String.format("Reporte de %s - Período: %d/%d", tipo, mes, año)
+            : String.format("Reporte de %s - Todos los períodos", tipo));
+        reporte.setReporteEstado("PENDIENTE");
+        reporte.setUsuarioId(usuarioId);
+        
+        Reporte nuevo = reporteDAO.create(reporte);
+        enCurso.add(nuevo.getReporteId());
+        
+        try {
+            reporteExecutor.execute(() -> ejecutar(nuevo.getReporteId(), tipo, usuarioId, mes, año));
+        } catch (TaskRejectedException e) {
+            enCurso.remove(nuevo.getReporteId());
+            reporteDAO.marcarError(nuevo.getReporteId(), "Cola de reportes llena, intente más tarde");
+            throw e;
+        }
+        
+        return nuevo;
+    }
+    
+    // Los trabajos encolados viven solo en la memoria de la instancia que los recibió, que
+    // renueva su latido mientras existan. Un trabajo a medias sin latido en tres intervalos
+    // pertenece a una instancia detenida y ya no se va a generar. Se revisa al arrancar y
+    // en cada latido; los trabajos de otras instancias vivas no se tocan.
+    @EventListener(ApplicationReadyEvent.class)
+    public void limpiarInterrumpidos() {
+        try {
+            int interrumpidos = reporteDAO.marcarInterrumpidos(LocalDateTime.now().minus(latido.multipliedBy(3)));
+            if (interrumpidos > 0) {
+                log.warn("{} reporte(s) interrumpidos marcados como ERROR", interrumpidos);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudieron limpiar reportes interrumpidos: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${reportes.jobs.latido-ms:30000}")
+    public void renovarLatido() {
+        try {
+            reporteDAO.renovarLatido(List.copyOf(enCurso));
+        } catch (Exception e) {
+            log.warn("No se pudo renovar el latido de los reportes en curso: {}", e.getMessage());
+        }
+        limpiarInterrumpidos();
+    }
+    
+    // Borrar los PDF más viejos que la retención y marcar sus reportes como EXPIRADO.
+    // Se recorre el directorio (y no solo las filas) para borrar también temporales y
+    // archivos que quedaron sin fila.
+    @Scheduled(fixedDelayString = "${reportes.jobs.purga-ms:3600000}", initialDelay = 60000)
+    public void purgarExpirados() {
+        Instant corte = Instant.now().minus(retencion);
+        int borrados = 0;
+        if (Files.isDirectory(directorio)) {
+            try (Stream<Path> archivos = Files.list(directorio)) {
+                for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                    String nombre = archivo.getFileName().toString();
+                    if (nombre.startsWith("reporte-")
+                            && Files.getLastModifiedTime(archivo).compareTo(FileTime.from(corte)) < 0
+                            && Files.deleteIfExists(archivo)) {
+                        borrados++;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Error borrando reportes expirados: {}", e.getMessage());
+            }
+        }
+        
+        try {
+            int expirados = reporteDAO.marcarExpirados(LocalDateTime.now().minus(retencion));
+            if (borrados > 0 || expirados > 0) {
+                log.debug("{} archivo(s) borrados, {} reporte(s) marcados como EXPIRADO", borrados, expirados);
+            }
+        } catch (Exception e) {
+            log.warn("No se pudieron marcar reportes expirados: {}", e.getMessage());
+        }
+    }
+    
+    // Archivo de un reporte completado dentro del directorio de trabajos. reporte_url guarda
+    // solo el nombre; de filas viejas con ruta absoluta también se toma solo el nombre, así
+    // nunca se sirve nada fuera del directorio.
+    public Path archivo(Reporte reporte) {
+        if (reporte == null || reporte.getReporteUrl() == null) {
+            return null;
+        }
+        Path nombre = Paths.get(reporte.getReporteUrl()).getFileName();
+        return nombre != null ? directorio.resolve(nombre.toString()) : null;
+    }
+    
+    public Reporte obtener(Integer reporteId) {
+        return reporteDAO.findById(reporteId);
+    }
+    
+    public List<Reporte> listarPorUsuario(Integer usuarioId, int limite) {
+        return reporteDAO.findByUsuario(usuarioId, limite);
+    }
+    
+    // Generar el PDF en disco. Se escribe primero en un archivo temporal y se mueve
+    // al nombre final para que nunca se descargue un archivo a medio escribir.
+    private void ejecutar(Integer reporteId, String tipo, Integer usuarioId, Integer mes, Integer año) {
+        Path destino = directorio.resolve(String.format("reporte-%d-%s.pdf", reporteId, tipo));
+        
+        try {
+            reporteDAO.cambiarEstado(reporteId, "EN_PROCESO");
+            Files.createDirectories(directorio);
+            Path temporal = Files.createTempFile(directorio, "reporte-" + reporteId + "-", ".tmp");
+            
+            try (OutputStream out = Files.newOutputStream(temporal)) {
+                generar(tipo, usuarioId, mes, año, out);
+            } catch (IOException | DocumentException | RuntimeException e) {
+                Files.deleteIfExists(temporal);
+                throw e;
+            }
+            
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            reporteDAO.marcarCompletado(reporteId, destino.getFileName().toString());
+            log.debug("Reporte {} ({}) generado en {}", reporteId, tipo, destino);
+        
+        } catch (Exception e) {
+            log.error("Error generando reporte {} ({}): {}", reporteId, tipo, e.getMessage());
+            reporteDAO.marcarError(reporteId, "Error generando reporte: " + e.getMessage());
+        } finally {
+            enCurso.remove(reporteId);
+        }
+    }
+    
+    private void generar(String tipo, Integer usuarioId, Integer mes, Integer año, OutputStream out) throws DocumentException {
+        switch (tipo) {
+            case "medicamentos" -> reporteService.generarReporteMedicamentos(usuarioId, mes, año, out);
+            case "materiales" -> reporteService.generarReporteMateriales(usuarioId, mes, año, out);
+            case "recetas" -> reporteService.generarReporteRecetas(usuarioId, mes, año, out);
+            case "consolidado" -> reporteService.generarReporteConsolidado(usuarioId, mes, año, out);
+            default -> throw new IllegalArgumentException("Tipo de reporte inválido: " + tipo);
+        }
+    }
+}
@@ -1,31 +1,83 @@
 package com.escom.enfermeria.services;
 
 import com.escom.enfermeria.dao.*;
-import com.escom.enfermeria.models.*;
+import com.escom.enfermeria.models.EstadisticasMateriales;
+import com.escom.enfermeria.models.EstadisticasMedicamentos;
+import com.escom.enfermeria.models.EstadisticasPacientes;
+import com.escom.enfermeria.models.EstadisticasRecetas;
+import com.escom.enfermeria.models.Material;
+import com.escom.enfermeria.models.Medicamento;
+import com.escom.enfermeria.models.Receta;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+// Los reportes de medicamentos, materiales y recetas se escriben directamente en el stream
+// de la respuesta mientras se leen las filas. Las filas se piden en páginas (keyset) de
+// FILAS_POR_CONSULTA, cada una en su propia consulta corta y sin transacción: la conexión
+// vuelve al pool entre página y página y no queda tomada mientras un cliente lento descarga.
+// Como las páginas no comparten transacción, una fila modificada a media descarga puede
+// aparecer con su valor nuevo; ninguna fila sin cambios se repite ni se pierde.
+// Un error después de escribir los primeros bytes ya no puede cambiar el estado de la
+// respuesta (el 200 ya se envió): el cliente recibe un PDF truncado y la conexión se corta.
 @Service
 public class ReporteService {
     
+    // Cada cuántas filas se vacía la tabla al documento para no acumularla en memoria
+    private static final int FILAS_POR_BLOQUE = 50;
+    
+    // Filas que se leen por consulta al recorrer una tabla para un reporte
+    private static final int FILAS_POR_CONSULTA = 200;
+    
     private final MedicamentoDAO medicamentoDAO;
     private final MaterialDAO materialDAO;
     private final RecetaDAO recetaDAO;
-    private final PacienteDAO pacienteDAO;
+    private final EstadisticasDAO estadisticasDAO;
+    private final Executor consultaExecutor;
+    private final long timeoutConsultasMs;
+    private final MeterRegistry registry;
+    
+    // Cada consulta del consolidado corre en su propia transacción de solo lectura con el
+    // mismo timeout: JdbcTemplate lo aplica como timeout del statement, así una consulta que
+    // se pasa del tiempo la corta el driver y devuelve su conexión al pool. cancel(true)
+    // solo interrumpe el hilo, que sigue bloqueado en el socket hasta que responde la base.
+    private final TransactionTemplate consultaTx;
     
     public ReporteService(MedicamentoDAO medicamentoDAO, MaterialDAO materialDAO, 
-                         RecetaDAO recetaDAO, PacienteDAO pacienteDAO) {
+                         RecetaDAO recetaDAO, EstadisticasDAO estadisticasDAO,
+                         @Qualifier("consultaReporteExecutor") Executor consultaExecutor,
+                         @Value("${reportes.consolidado.timeout-ms:10000}") long timeoutConsultasMs,
+                         MeterRegistry registry, PlatformTransactionManager transactionManager) {
         this.medicamentoDAO = medicamentoDAO;
         this.materialDAO = materialDAO;
         this.recetaDAO = recetaDAO;
-        this.pacienteDAO = pacienteDAO;
+        this.estadisticasDAO = estadisticasDAO;
+        this.consultaExecutor = consultaExecutor;
+        this.timeoutConsultasMs = timeoutConsultasMs;
+        this.registry = registry;
+        this.consultaTx = new TransactionTemplate(transactionManager);
+        this.consultaTx.setReadOnly(true);
+        this.consultaTx.setTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutConsultasMs + 999)));
     }
     
     // Método auxiliar para obtener nombre del mes
@@ -37,13 +89,121 @@ public class ReporteService {
         return meses[mes - 1];
     }
     
-    // Generar reporte de medicamentos
-    public byte[] generarReporteMedicamentos(Integer usuarioId, Integer mes, Integer año) throws DocumentException, IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    // Método auxiliar para obtener el rango [desde, hasta) del mes indicado
+    static LocalDateTime[] rangoMes(Integer mes, Integer año) {
+        if (mes != null && año != null) {
+            LocalDateTime desde = LocalDate.of(año, mes, 1).atStartOfDay();
+            return new LocalDateTime[]{desde, desde.plusMonths(1)};
+        }
+        return new LocalDateTime[]{null, null};
+    }
+    
+    // Método auxiliar para lanzar una consulta en el pool del consolidado midiendo su duración
+    // en el timer enfermeria.reporte.consulta (etiquetas consulta y outcome)
+    private <T> CompletableFuture<T> consultar(String nombre, Supplier<T> consulta) {
+        return CompletableFuture.supplyAsync(() -> {
+            long inicio = System.nanoTime();
+            String outcome = "ERROR";
+            try {
+                T resultado = consultaTx.execute(status -> consulta.get());
+                outcome = "SUCCESS";
+                return resultado;
+            } finally {
+                Timer.builder("enfermeria.reporte.consulta")
+                    .description("Duración de las consultas del reporte consolidado")
+                    .tags("consulta", nombre, "outcome", outcome)
+                    .register(registry)
+                    .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            }
+        }, consultaExecutor);
+    }
+    
+    // Método auxiliar para esperar todas las consultas con el timeout configurado
+    private void esperarConsultas(CompletableFuture<?>... consultas) {
+        CompletableFuture<Void> todas = CompletableFuture.allOf(consultas);
+        try {
+            todas.get(timeoutConsultasMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            for (CompletableFuture<?> consulta : consultas) {
+                consulta.cancel(true);
+            }
+            throw new IllegalStateException("Las consultas del reporte consolidado excedieron " + timeoutConsultasMs + " ms");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error obteniendo datos del reporte consolidado: " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Generación del reporte consolidado interrumpida", e);
+        }
+    }
+    
+    // Método auxiliar para abrir un documento que escribe directamente en el stream de salida
+    // El stream no se cierra al cerrar el documento; lo administra quien lo proporcionó
+    private Document abrirDocumento(OutputStream out) throws DocumentException {
         Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, baos);
-        
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
         document.open();
+        return document;
+    }
+    
+    // Método auxiliar para crear una tabla que se escribe por bloques
+    private PdfPTable crearTablaPorBloques(String[] headers) {
+        PdfPTable table = new PdfPTable(headers.length);
+        table.setWidthPercentage(100);
+        table.setSpacingBefore(10f);
+        table.setSpacingAfter(10f);
+        table.setHeaderRows(1);
+        table.setComplete(false);
+        
+        Font headerFont = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD, BaseColor.WHITE);
+        for (String header : headers) {
+            PdfPCell cell = new PdfPCell(new Paragraph(header, headerFont));
+            cell.setBackgroundColor(BaseColor.DARK_GRAY);
+            cell.setHorizontalAlignment(Element.ALIGN_CENTER);
+            cell.setPadding(5);
+            table.addCell(cell);
+        }
+        return table;
+    }
+    
+    // Método auxiliar para vaciar las filas acumuladas al documento cada FILAS_POR_BLOQUE filas
+    private void vaciarSiCorresponde(Document document, PdfPTable table, int filas) {
+        if (filas % FILAS_POR_BLOQUE == 0) {
+            try {
+                document.add(table);
+            } catch (DocumentException e) {
+                throw new ExceptionConverter(e);
+            }
+        }
+    }
+    
+    // Método auxiliar para recorrer una consulta por páginas keyset. "pagina" recibe la última
+    // fila de la página anterior (null = primera) y el límite, y devuelve hasta límite + 1 filas
+    private <T> void recorrerPorPaginas(BiFunction<T, Integer, List<T>> pagina, Consumer<T> consumer) {
+        T ultima = null;
+        boolean hayMas = true;
+        while (hayMas) {
+            List<T> filas = pagina.apply(ultima, FILAS_POR_CONSULTA);
+            hayMas = filas.size() > FILAS_POR_CONSULTA;
+            if (hayMas) {
+                filas = filas.subList(0, FILAS_POR_CONSULTA);
+            }
+            filas.forEach(consumer);
+            if (!filas.isEmpty()) {
+                ultima = filas.get(filas.size() - 1);
+            }
+        }
+    }
+    
+    // Método auxiliar para terminar una tabla escrita por bloques
+    private void cerrarTabla(Document document, PdfPTable table) throws DocumentException {
+        table.setComplete(true);
+        document.add(table);
+    }
+    
+    // Generar reporte de medicamentos escribiendo directamente en el stream de salida
+    public void generarReporteMedicamentos(Integer usuarioId, Integer mes, Integer año, OutputStream out) throws DocumentException {
+        Document document = abrirDocumento(out);
         
         // Encabezado
         Font tituloFont = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD, BaseColor.DARK_GRAY);
@@ -62,42 +222,25 @@ public class ReporteService {
         ), infoFont);
         document.add(info);
         
-        // Obtener datos
-        List<Medicamento> medicamentos = medicamentoDAO.findAll();
-        
         // Estadísticas
+        EstadisticasMedicamentos estadisticas = estadisticasDAO.medicamentos();
         Font statsFont = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD, BaseColor.DARK_GRAY);
         Paragraph stats = new Paragraph(String.format(
             "ESTADÍSTICAS\nTotal Medicamentos: %d\nStock Bajo: %d\nPróximos a Caducar: %d\n\n",
-            medicamentos.size(),
-            medicamentoDAO.findStockBajo().size(),
-            medicamentoDAO.findProximosCaducar().size()
+            estadisticas.total(),
+            estadisticas.stockBajo(),
+            estadisticas.proximosCaducar()
         ), statsFont);
         document.add(stats);
         
-        // Tabla de medicamentos
-        if (!medicamentos.isEmpty()) {
-            PdfPTable table = new PdfPTable(6);
-            table.setWidthPercentage(100);
-            table.setSpacingBefore(10f);
-            table.setSpacingAfter(10f);
-            
-            // Encabezados de tabla
-            Font headerFont = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD, BaseColor.WHITE);
-            String[] headers = {"ID", "Nombre", "Stock", "Estado", "Caducidad", "Precio"};
-            
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Paragraph(header, headerFont));
-                cell.setBackgroundColor(BaseColor.DARK_GRAY);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                cell.setPadding(5);
-                table.addCell(cell);
-            }
-            
-            // Datos de la tabla
+        // Tabla de medicamentos (se lee por páginas y se escribe por bloques)
+        if (estadisticas.total() > 0) {
+            PdfPTable table = crearTablaPorBloques(new String[]{"ID", "Nombre", "Stock", "Estado", "Caducidad", "Precio"});
             Font dataFont = new Font(Font.FontFamily.HELVETICA, 9, Font.NORMAL, BaseColor.BLACK);
+            int[] filas = {0};
             
-            for (Medicamento med : medicamentos) {
+            recorrerPorPaginas((Medicamento ultimo, Integer limite) -> medicamentoDAO.findPagina(
+                ultimo != null ? ultimo.getMedicamentoId() : null, limite), med -> {
                 table.addCell(new Paragraph(String.valueOf(med.getMedicamentoId()), dataFont));
                 table.addCell(new Paragraph(med.getMedicamentoNom(), dataFont));
                 table.addCell(new Paragraph(String.valueOf(med.getMedicamentoStock()), dataFont));
@@ -110,25 +253,22 @@ public class ReporteService {
                 String precio = med.getMedicamentoPrecio() != null ? 
                     String.format("$%.2f", med.getMedicamentoPrecio()) : "$0.00";
                 table.addCell(new Paragraph(precio, dataFont));
-            }
+                
+                vaciarSiCorresponde(document, table, ++filas[0]);
+            });
             
-            document.add(table);
+            cerrarTabla(document, table);
         } else {
             Paragraph sinDatos = new Paragraph("No hay medicamentos registrados.", infoFont);
             document.add(sinDatos);
         }
         
         document.close();
-        return baos.toByteArray();
     }
     
-    // Generar reporte de materiales
-    public byte[] generarReporteMateriales(Integer usuarioId, Integer mes, Integer año) throws DocumentException, IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, baos);
-        
-        document.open();
+    // Generar reporte de materiales escribiendo directamente en el stream de salida
+    public void generarReporteMateriales(Integer usuarioId, Integer mes, Integer año, OutputStream out) throws DocumentException {
+        Document document = abrirDocumento(out);
         
         // Encabezado
         Font tituloFont = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD, BaseColor.DARK_GRAY);
@@ -147,42 +287,25 @@ public class ReporteService {
         ), infoFont);
         document.add(info);
         
-        // Obtener datos
-        List<Material> materiales = materialDAO.findAll();
-        
         // Estadísticas
+        EstadisticasMateriales estadisticas = estadisticasDAO.materiales();
         Font statsFont = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD, BaseColor.DARK_GRAY);
         Paragraph stats = new Paragraph(String.format(
             "ESTADÍSTICAS\nTotal Materiales: %d\nStock Bajo: %d\nEn Mantenimiento: %d\n\n",
-            materiales.size(),
-            materialDAO.findStockBajo().size(),
-            materialDAO.findEnMantenimiento().size()
+            estadisticas.total(),
+            estadisticas.stockBajo(),
+            estadisticas.enMantenimiento()
         ), statsFont);
         document.add(stats);
         
-        // Tabla de materiales
-        if (!materiales.isEmpty()) {
-            PdfPTable table = new PdfPTable(6);
-            table.setWidthPercentage(100);
-            table.setSpacingBefore(10f);
-            table.setSpacingAfter(10f);
-            
-            // Encabezados de tabla
-            Font headerFont = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD, BaseColor.WHITE);
-            String[] headers = {"ID", "Material", "Stock", "Estado", "Categoría", "Precio"};
-            
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Paragraph(header, headerFont));
-                cell.setBackgroundColor(BaseColor.DARK_GRAY);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                cell.setPadding(5);
-                table.addCell(cell);
-            }
-            
-            // Datos de la tabla
+        // Tabla de materiales (se lee por páginas y se escribe por bloques)
+        if (estadisticas.total() > 0) {
+            PdfPTable table = crearTablaPorBloques(new String[]{"ID", "Material", "Stock", "Estado", "Categoría", "Precio"});
             Font dataFont = new Font(Font.FontFamily.HELVETICA, 9, Font.NORMAL, BaseColor.BLACK);
+            int[] filas = {0};
             
-            for (Material mat : materiales) {
+            recorrerPorPaginas((Material ultimo, Integer limite) -> materialDAO.findPagina(
+                ultimo != null ? ultimo.getMaterialId() : null, limite), mat -> {
                 table.addCell(new Paragraph(String.valueOf(mat.getMaterialId()), dataFont));
                 table.addCell(new Paragraph(mat.getMaterialNom(), dataFont));
                 table.addCell(new Paragraph(String.valueOf(mat.getMaterialStock()), dataFont));
@@ -192,25 +315,22 @@ public class ReporteService {
                 String precio = mat.getMaterialPrecio() != null ? 
                     String.format("$%.2f", mat.getMaterialPrecio()) : "$0.00";
                 table.addCell(new Paragraph(precio, dataFont));
-            }
+                
+                vaciarSiCorresponde(document, table, ++filas[0]);
+            });
             
-            document.add(table);
+            cerrarTabla(document, table);
         } else {
             Paragraph sinDatos = new Paragraph("No hay materiales registrados.", infoFont);
             document.add(sinDatos);
         }
         
         document.close();
-        return baos.toByteArray();
     }
     
-    // Generar reporte de recetas por mes y por usuario específico
-    public byte[] generarReporteRecetas(Integer usuarioId, Integer mes, Integer año) throws DocumentException, IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, baos);
-        
-        document.open();
+    // Generar reporte de recetas por mes y por usuario específico escribiendo directamente en el stream de salida
+    public void generarReporteRecetas(Integer usuarioId, Integer mes, Integer año, OutputStream out) throws DocumentException {
+        Document document = abrirDocumento(out);
         
         // Encabezado
         Font tituloFont = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD, BaseColor.DARK_GRAY);
@@ -232,56 +352,25 @@ public class ReporteService {
         ), infoFont);
         document.add(info);
         
-        // Obtener recetas del usuario específico
-        List<Receta> todasRecetas = recetaDAO.findAll();
-        
-        // Filtrar por usuario y por mes si se especifica
-        List<Receta> recetas = todasRecetas.stream()
-            .filter(r -> r.getUsuarioId().equals(usuarioId))  // Solo recetas del usuario
-            .filter(r -> {
-                if (mes != null && año != null && r.getRecetaFecha() != null) {
-                    return r.getRecetaFecha().getMonthValue() == mes && 
-                           r.getRecetaFecha().getYear() == año;
-                }
-                return true; // Si no hay filtro de mes/año, incluir todas
-            })
-            .toList();
+        // Estadísticas del usuario en el período (una sola consulta)
+        LocalDateTime[] rango = rangoMes(mes, año);
+        EstadisticasRecetas estadisticas = estadisticasDAO.recetas(usuarioId, rango[0], rango[1]);
         
-        // Estadísticas
         Font statsFont = new Font(Font.FontFamily.HELVETICA, 11, Font.BOLD, BaseColor.DARK_GRAY);
-        long activas = recetas.stream().filter(r -> "ACTIVA".equals(r.getRecetaEstado())).count();
-        long completadas = recetas.stream().filter(r -> "COMPLETADA".equals(r.getRecetaEstado())).count();
-        long canceladas = recetas.stream().filter(r -> "CANCELADA".equals(r.getRecetaEstado())).count();
-        
         Paragraph stats = new Paragraph(String.format(
             "ESTADÍSTICAS\nTotal Recetas: %d\nActivas: %d\nCompletadas: %d\nCanceladas: %d\n\n",
-            recetas.size(), activas, completadas, canceladas
+            estadisticas.total(), estadisticas.activas(), estadisticas.completadas(), estadisticas.canceladas()
         ), statsFont);
         document.add(stats);
         
-        // Tabla de recetas
-        if (!recetas.isEmpty()) {
-            PdfPTable table = new PdfPTable(6);
-            table.setWidthPercentage(100);
-            table.setSpacingBefore(10f);
-            table.setSpacingAfter(10f);
-            
-            // Encabezados de tabla
-            Font headerFont = new Font(Font.FontFamily.HELVETICA, 10, Font.BOLD, BaseColor.WHITE);
-            String[] headers = {"Folio", "Fecha", "Paciente", "Diagnóstico", "Estado", "Médico"};
-            
-            for (String header : headers) {
-                PdfPCell cell = new PdfPCell(new Paragraph(header, headerFont));
-                cell.setBackgroundColor(BaseColor.DARK_GRAY);
-                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                cell.setPadding(5);
-                table.addCell(cell);
-            }
-            
-            // Datos de la tabla
+        // Tabla de recetas (se lee por páginas y se escribe por bloques)
+        if (estadisticas.total() > 0) {
+            PdfPTable table = crearTablaPorBloques(new String[]{"Folio", "Fecha", "Paciente", "Diagnóstico", "Estado", "Médico"});
             Font dataFont = new Font(Font.FontFamily.HELVETICA, 9, Font.NORMAL, BaseColor.BLACK);
+            int[] filas = {0};
             
-            for (Receta receta : recetas) {
+            recorrerPorPaginas((Receta ultima, Integer limite) -> recetaDAO.findPaginaByUsuarioYPeriodo(
+                usuarioId, rango[0], rango[1], ultima, limite), receta -> {
                 table.addCell(new Paragraph(receta.getRecetaFolio(), dataFont));
                 
                 String fecha = receta.getRecetaFecha() != null ? 
@@ -298,25 +387,46 @@ public class ReporteService {
                 String medico = receta.getUsuarioNombre() != null ? 
                     receta.getUsuarioNombre() : "Usuario #" + receta.getUsuarioId();
                 table.addCell(new Paragraph(medico, dataFont));
-            }
+                
+                vaciarSiCorresponde(document, table, ++filas[0]);
+            });
             
-            document.add(table);
+            cerrarTabla(document, table);
         } else {
             Paragraph sinDatos = new Paragraph("No hay recetas para el período seleccionado.", infoFont);
             document.add(sinDatos);
         }
         
         document.close();
-        return baos.toByteArray();
     }
     
-    // Generar reporte consolidado
-    public byte[] generarReporteConsolidado(Integer usuarioId, Integer mes, Integer año) throws DocumentException, IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        Document document = new Document(PageSize.A4);
-        PdfWriter.getInstance(document, baos);
-        
-        document.open();
+    // Generar reporte consolidado escribiendo directamente en el stream de salida
+    public void generarReporteConsolidado(Integer usuarioId, Integer mes, Integer año, OutputStream out) throws DocumentException {
+        // Obtener datos: las consultas son independientes, se lanzan en paralelo
+        // y se esperan todas antes de empezar a escribir el documento
+        LocalDateTime[] rango = rangoMes(mes, año);
+        long inicio = System.nanoTime();
+        
+        CompletableFuture<EstadisticasMedicamentos> medicamentosFuture =
+            consultar("medicamentos", estadisticasDAO::medicamentos);
+        CompletableFuture<EstadisticasMateriales> materialesFuture =
+            consultar("materiales", estadisticasDAO::materiales);
+        // Recetas del usuario y del mes (si se especifica)
+        CompletableFuture<EstadisticasRecetas> recetasFuture =
+            consultar("recetas", () -> estadisticasDAO.recetas(usuarioId, rango[0], rango[1]));
+        CompletableFuture<EstadisticasPacientes> pacientesFuture =
+            consultar("pacientes", estadisticasDAO::pacientes);
+        
+        esperarConsultas(medicamentosFuture, materialesFuture, recetasFuture, pacientesFuture);
+        registry.timer("enfermeria.reporte.consolidado.datos")
+            .record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+        
+        EstadisticasMedicamentos medicamentos = medicamentosFuture.join();
+        EstadisticasMateriales materiales = materialesFuture.join();
+        EstadisticasRecetas recetas = recetasFuture.join();
+        EstadisticasPacientes pacientes = pacientesFuture.join();
+        
+        Document document = abrirDocumento(out);
         
         // Encabezado
         Font tituloFont = new Font(Font.FontFamily.HELVETICA, 20, Font.BOLD, new BaseColor(0, 102, 204));
@@ -337,7 +447,7 @@ public class ReporteService {
         Font infoFont = new Font(Font.FontFamily.HELVETICA, 10, Font.NORMAL, BaseColor.GRAY);
         Paragraph info = new Paragraph(String.format(
             "Generado por: Usuario ID %d\nFecha de generación: %s\n\n", 
-            usuarioId, LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"))
+            usuarioId, LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"))
         ), infoFont);
         document.add(info);
         
@@ -347,28 +457,6 @@ public class ReporteService {
         seccionEstadisticas.setSpacingBefore(20f);
         document.add(seccionEstadisticas);
         
-        // Obtener datos
-        List<Medicamento> medicamentos = medicamentoDAO.findAll();
-        List<Material> materiales = materialDAO.findAll();
-        List<Receta> todasRecetas = recetaDAO.findAll();
-        List<Paciente> pacientes = pacienteDAO.findAll();
-        
-        // Filtrar recetas por usuario y por mes si se especifica
-        List<Receta> recetas = todasRecetas.stream()
-            .filter(r -> {
-                // Filtrar por usuario
-                boolean esUsuario = r.getUsuarioId().equals(usuarioId);
-                
-                // Filtrar por mes/año si se especifica
-                if (mes != null && año != null && r.getRecetaFecha() != null) {
-                    return esUsuario && 
-                           r.getRecetaFecha().getMonthValue() == mes && 
-                           r.getRecetaFecha().getYear() == año;
-                }
-                return esUsuario; // Si no hay filtro de mes/año, solo por usuario
-            })
-            .toList();
-        
         // Crear tabla de estadísticas
         PdfPTable statsTable = new PdfPTable(2);
         statsTable.setWidthPercentage(100);
@@ -386,9 +474,9 @@ public class ReporteService {
         
         statsTable.addCell(new Paragraph(String.format(
             "Total: %d\nStock Bajo: %d\nPróximos a Caducar: %d",
-            medicamentos.size(),
-            medicamentoDAO.findStockBajo().size(),
-            medicamentoDAO.findProximosCaducar().size()
+            medicamentos.total(),
+            medicamentos.stockBajo(),
+            medicamentos.proximosCaducar()
         ), cellValueFont));
         
         // Materiales
@@ -399,9 +487,9 @@ public class ReporteService {
         
         statsTable.addCell(new Paragraph(String.format(
             "Total: %d\nStock Bajo: %d\nEn Mantenimiento: %d",
-            materiales.size(),
-            materialDAO.findStockBajo().size(),
-            materialDAO.findEnMantenimiento().size()
+            materiales.total(),
+            materiales.stockBajo(),
+            materiales.enMantenimiento()
         ), cellValueFont));
         
         // Recetas (SOLO DEL USUARIO)
@@ -410,13 +498,9 @@ public class ReporteService {
         cell3.setPadding(8);
         statsTable.addCell(cell3);
         
-        long recetasActivas = recetas.stream().filter(r -> "ACTIVA".equals(r.getRecetaEstado())).count();
-        long recetasCompletadas = recetas.stream().filter(r -> "COMPLETADA".equals(r.getRecetaEstado())).count();
-        long recetasCanceladas = recetas.stream().filter(r -> "CANCELADA".equals(r.getRecetaEstado())).count();
-        
         statsTable.addCell(new Paragraph(String.format(
             "Total: %d\nActivas: %d\nCompletadas: %d\nCanceladas: %d",
-            recetas.size(), recetasActivas, recetasCompletadas, recetasCanceladas
+            recetas.total(), recetas.activas(), recetas.completadas(), recetas.canceladas()
         ), cellValueFont));
         
         // Pacientes
@@ -427,8 +511,8 @@ public class ReporteService {
         
         statsTable.addCell(new Paragraph(String.format(
             "Total: %d\nEdad Promedio: %.1f años",
-            pacientes.size(),
-            pacienteDAO.promedioEdad() != null ? pacienteDAO.promedioEdad() : 0
+            pacientes.total(),
+            pacientes.promedioEdad()
         ), cellValueFont));
         
         document.add(statsTable);
@@ -440,6 +524,5 @@ public class ReporteService {
         document.add(pie);
         
         document.close();
-        return baos.toByteArray();
     }
-}
\ No newline at end of file
+}
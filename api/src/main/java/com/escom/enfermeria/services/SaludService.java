@@ -0,0 +1,100 @@
+package com.escom.enfermeria.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Estado de la API para las sondas del orquestador. La conexión a la base se prueba
+// como mucho una vez por TTL y el resultado se guarda; mientras tanto las sondas solo
+// leen ese resultado y el estado del pool de Hikari (contadores en memoria, sin pedir
+// conexión). Si el pool no tiene conexiones libres tampoco se prueba, para no quitarle
+// una conexión al resto de las peticiones: se conserva el último resultado.
+@Service
+public class SaludService {
+    
+    private static final Logger log = LoggerFactory.getLogger(SaludService.class);
+    
+    public record EstadoBaseDatos(boolean conectada, String error, long verificadoEn) {}
+    
+    public record EstadoPool(int activas, int inactivas, int total, int esperando) {}
+    
+    private final DataSource dataSource;
+    private final long ttlMs;
+    
+    private volatile EstadoBaseDatos ultimo = new EstadoBaseDatos(false, "Sin verificar", 0);
+    private final AtomicBoolean verificando = new AtomicBoolean();
+    
+    public SaludService(DataSource dataSource, @Value("${salud.db.ttl-ms:5000}") long ttlMs) {
+        this.dataSource = dataSource;
+        this.ttlMs = ttlMs;
+    }
+    
+    // Resultado de la última prueba; si caducó, el primer hilo que llega la repite
+    // y los demás siguen con el resultado anterior sin esperar
+    public EstadoBaseDatos baseDatos() {
+        EstadoBaseDatos estado = ultimo;
+        if (System.currentTimeMillis() - estado.verificadoEn() < ttlMs || !verificando.compareAndSet(false, true)) {
+            return estado;
+        }
+        try {
+            return verificar(estado);
+        } finally {
+            verificando.set(false);
+        }
+    }
+    
+    // Contadores del pool, o null si el DataSource no es de Hikari o el pool aún no arrancó
+    public EstadoPool pool() {
+        HikariPoolMXBean mx = poolMXBean();
+        if (mx == null) {
+            return null;
+        }
+        return new EstadoPool(mx.getActiveConnections(), mx.getIdleConnections(),
+            mx.getTotalConnections(), mx.getThreadsAwaitingConnection());
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void verificarAlIniciar() {
+        baseDatos();
+    }
+    
+    private EstadoBaseDatos verificar(EstadoBaseDatos anterior) {
+        EstadoPool pool = pool();
+        EstadoBaseDatos nuevo;
+        if (pool != null && pool.total() > 0 && pool.inactivas() == 0) {
+            nuevo = new EstadoBaseDatos(anterior.conectada(), anterior.error(), System.currentTimeMillis());
+        } else {
+            try (Connection conexion = dataSource.getConnection()) {
+                boolean valida = conexion.isValid(2);
+                nuevo = new EstadoBaseDatos(valida, valida ? null : "Conexión no válida", System.currentTimeMillis());
+            } catch (Exception e) {
+                nuevo = new EstadoBaseDatos(false, e.getMessage(), System.currentTimeMillis());
+            }
+        }
+        if (anterior.conectada() != nuevo.conectada()) {
+            log.warn("Base de datos {}", nuevo.conectada() ? "disponible" : "no disponible: " + nuevo.error());
+        }
+        ultimo = nuevo;
+        return nuevo;
+    }
+    
+    private HikariPoolMXBean poolMXBean() {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+            }
+        } catch (Exception e) {
+            log.debug("No se pudo leer el pool de conexiones: {}", e.getMessage());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.SincronizacionDAO;
+import com.escom.enfermeria.models.Cambios;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@Service
+public class SincronizacionService {
+    
+    private static final Logger log = LoggerFactory.getLogger(SincronizacionService.class);
+    
+    private final SincronizacionDAO sincronizacionDAO;
+    private final Duration margen;
+    private final Duration retencion;
+    
+    public SincronizacionService(SincronizacionDAO sincronizacionDAO,
+                                 @Value("${sincronizacion.margen-ms:5000}") long margenMs,
+                                 @Value("${sincronizacion.retencion-dias:30}") long retencionDias) {
+        this.sincronizacionDAO = sincronizacionDAO;
+        this.margen = Duration.ofMillis(margenMs);
+        this.retencion = Duration.ofDays(retencionDias);
+    }
+    
+    // Cambios de una entidad desde la marca del cliente. updated_at toma la hora de inicio
+    // de la transacción, así que una escritura que confirma justo después de leer la marca
+    // puede quedar con una hora anterior: se relee un margen hacia atrás (el cliente aplica
+    // los cambios por ID, repetir filas no le afecta). Sin marca, o si es más vieja que la
+    // retención de bajas, se devuelve la lista completa.
+    public <T> Cambios<T> cambios(String entidad, LocalDateTime since,
+                                  Function<LocalDateTime, List<T>> modificadosDesde,
+                                  Supplier<List<T>> todos) {
+        LocalDateTime marca = sincronizacionDAO.ahora();
+        
+        LocalDateTime desde = since != null ? since.minus(margen) : null;
+        if (desde == null || desde.isBefore(marca.minus(retencion))) {
+            return new Cambios<>(todos.get(), Collections.emptyList(), marca, true);
+        }
+        
+        return new Cambios<>(
+            modificadosDesde.apply(desde),
+            sincronizacionDAO.findEliminados(entidad, desde),
+            marca,
+            false
+        );
+    }
+    
+    // Purga diaria de las bajas que ya ningún cliente puede pedir
+    @Scheduled(fixedDelayString = "${sincronizacion.purga-ms:86400000}", initialDelay = 60000)
+    public void purgarEliminados() {
+        try {
+            int purgados = sincronizacionDAO.purgarEliminados(sincronizacionDAO.ahora().minus(retencion));
+            if (purgados > 0) {
+                log.debug("{} baja(s) purgadas del registro de sincronización", purgados);
+            }
+        } catch (Exception e) {
+            log.warn("Error purgando bajas de sincronización: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.UsuarioDAO;
+import com.escom.enfermeria.models.Sesion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tokens de sesión firmados con HMAC-SHA256: base64url(datos).base64url(firma), donde
+// datos = usuarioId|rol|emitido|expira|id. Se verifican solo con la clave, sin consultar
+// la base. Para cerrar sesión o dar de baja a un usuario se guardan en memoria los tokens
+// revocados y, por usuario, la hora antes de la cual sus tokens dejan de valer.
+@Service
+public class TokenService {
+    
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+    private static final String ALGORITMO = "HmacSHA256";
+    // Largo mínimo de la clave configurada: el tamaño de bloque de la firma (256 bits)
+    static final int LARGO_MINIMO_CLAVE = 32;
+    private static final Base64.Encoder CODIFICADOR = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODIFICADOR = Base64.getUrlDecoder();
+    
+    private final UsuarioDAO usuarioDAO;
+    private final SecretKeySpec clave;
+    private final long duracionMs;
+    private final SecureRandom random = new SecureRandom();
+    
+    // Mac no es seguro entre hilos; se reutiliza uno por hilo
+    private final ThreadLocal<Mac> macs;
+    
+    // id de token -> expiración (se purgan al expirar)
+    private final Map<String, Long> revocados = new ConcurrentHashMap<>();
+    // usuarioId -> hora de la baja; los tokens emitidos antes ya no valen
+    private final Map<Integer, Long> revocadosAntesDe = new ConcurrentHashMap<>();
+    
+    public TokenService(UsuarioDAO usuarioDAO,
+                        @Value("${auth.token.secreto:}") String secreto,
+                        @Value("${auth.token.duracion-ms:43200000}") long duracionMs) {
+        this.usuarioDAO = usuarioDAO;
+        byte[] bytesClave;
+        if (secreto.isBlank()) {
+            // Sin clave configurada las sesiones se invalidan al reiniciar la API
+            bytesClave = new byte[32];
+            random.nextBytes(bytesClave);
+            log.warn("auth.token.secreto no definido: se usa una clave aleatoria para esta ejecución");
+        } else {
+            bytesClave = secreto.getBytes(StandardCharsets.UTF_8);
+            if (bytesClave.length < LARGO_MINIMO_CLAVE) {
+                throw new IllegalStateException("auth.token.secreto debe tener al menos "
+                    + LARGO_MINIMO_CLAVE + " bytes");
+            }
+        }
+        this.clave = new SecretKeySpec(bytesClave, ALGORITMO);
+        this.duracionMs = duracionMs;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITMO);
+                mac.init(clave);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(ALGORITMO + " no disponible", e);
+            }
+        });
+    }
+    
+    // Las revocaciones viven en memoria y se pierden al reiniciar. Con una clave fija los
+    // tokens anteriores siguen siendo válidos, así que al arrancar se vuelven a revocar
+    // los de los usuarios dados de baja. (Los tokens de sesiones cerradas con logout
+    // siguen valiendo hasta expirar.)
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargarBajas() {
+        try {
+            usuarioDAO.findBajas().forEach((usuarioId, fecha) ->
+                revocadosAntesDe.merge(usuarioId, fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), Math::max));
+        } catch (Exception e) {
+            log.warn("No se pudieron cargar las bajas de usuarios: {}", e.getMessage());
+        }
+    }
+    
+    public String emitir(int usuarioId, String rol) {
+        long ahora = System.currentTimeMillis();
+        String id = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+        String datos = String.join("|", Integer.toString(usuarioId), rol != null ? rol : "",
+            Long.toString(ahora), Long.toString(ahora + duracionMs), id);
+        byte[] bytesDatos = datos.getBytes(StandardCharsets.UTF_8);
+        return CODIFICADOR.encodeToString(bytesDatos) + "." + CODIFICADOR.encodeToString(firmar(bytesDatos));
+    }
+    
+    // Sesión del token, o null si está mal formado, la firma no coincide, expiró o fue revocado
+    public Sesion verificar(String token) {
+        int punto = token.indexOf('.');
+        if (punto <= 0 || punto != token.lastIndexOf('.')) {
+            return null;
+        }
+        
+        Sesion sesion;
+        try {
+            byte[] bytesDatos = DECODIFICADOR.decode(token.substring(0, punto));
+            byte[] firma = DECODIFICADOR.decode(token.substring(punto + 1));
+            if (!MessageDigest.isEqual(firma, firmar(bytesDatos))) {
+                return null;
+            }
+            String[] partes = new String(bytesDatos, StandardCharsets.UTF_8).split("\\|", -1);
+            if (partes.length != 5) {
+                return null;
+            }
+            sesion = new Sesion(Integer.parseInt(partes[0]), partes[1],
+                Long.parseLong(partes[2]), Long.parseLong(partes[3]), partes[4]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        
+        if (sesion.expira() < System.currentTimeMillis() || revocados.containsKey(sesion.id())) {
+            return null;
+        }
+        Long corte = revocadosAntesDe.get(sesion.usuarioId());
+        if (corte != null && sesion.emitido() <= corte) {
+            return null;
+        }
+        return sesion;
+    }
+    
+    // Cerrar sesión: el token deja de valer aunque no haya expirado
+    public void revocar(Sesion sesion) {
+        revocados.put(sesion.id(), sesion.expira());
+    }
+    
+    // Baja de usuario: se invalidan todos los tokens que ya tenga
+    public void revocarUsuario(int usuarioId) {
+        revocadosAntesDe.put(usuarioId, System.currentTimeMillis());
+    }
+    
+    // Quitar las revocaciones de tokens que ya expiraron por sí solos
+    @Scheduled(fixedDelayString = "${auth.token.purga-ms:600000}", initialDelay = 600000)
+    public void purgarRevocados() {
+        long ahora = System.currentTimeMillis();
+        revocados.values().removeIf(expira -> expira < ahora);
+        revocadosAntesDe.values().removeIf(corte -> corte + duracionMs < ahora);
+    }
+    
+    private byte[] firmar(byte[] datos) {
+        return macs.get().doFinal(datos);
+    }
+}
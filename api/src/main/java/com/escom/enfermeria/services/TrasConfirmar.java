@@ -0,0 +1,26 @@
+package com.escom.enfermeria.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Aplicar un cambio al estado en memoria (contadores, versiones, índices) solo si la
+// escritura en la base se confirma. Dentro de una transacción se ejecuta en afterCommit,
+// y si la transacción se revierte no se ejecuta; fuera de una transacción la escritura
+// ya está confirmada y se ejecuta en el momento.
+public final class TrasConfirmar {
+    
+    private TrasConfirmar() {}
+    
+    public static void ejecutar(Runnable cambio) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cambio.run();
+                }
+            });
+        } else {
+            cambio.run();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.models.Usuario;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caché de usuarios activos por correo normalizado para el login. Las entradas caducan
+// tras un tiempo fijo, así que un cambio hecho directamente en la base se nota a más
+// tardar en ese plazo; las bajas hechas por la API la invalidan al momento. Solo se
+// guardan usuarios encontrados: un correo desconocido siempre consulta la base.
+@Service
+public class UsuarioCacheService {
+    
+    private record Entrada(Usuario usuario, long expira) {}
+    
+    private final int maxEntradas;
+    private final long ttlMs;
+    
+    // LinkedHashMap en orden de acceso: el primer elemento es el menos usado recientemente
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    
+    // Cambia con cada invalidación; ver put
+    private long generacion = 0;
+    
+    public UsuarioCacheService(@Value("${usuarios.cache.max-entradas:500}") int maxEntradas,
+                               @Value("${usuarios.cache.ttl-ms:300000}") long ttlMs) {
+        this.maxEntradas = maxEntradas;
+        this.ttlMs = ttlMs;
+    }
+    
+    public static String normalizar(String correo) {
+        return correo.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    public synchronized Usuario get(String correo) {
+        String clave = normalizar(correo);
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null && entrada.expira() < System.currentTimeMillis()) {
+            entradas.remove(clave);
+            entrada = null;
+        }
+        if (entrada == null) {
+            fallos.incrementAndGet();
+            return null;
+        }
+        aciertos.incrementAndGet();
+        return entrada.usuario();
+    }
+    
+    // Generación actual; se lee antes de consultar la base y se pasa a put
+    public synchronized long generacion() {
+        return generacion;
+    }
+    
+    // Guardar un usuario leído de la base. Si entre la lectura y el put hubo una
+    // invalidación (una baja que pudo confirmar después de la lectura), la fila puede
+    // estar vieja y no se guarda; el siguiente login vuelve a consultar.
+    public synchronized void put(String correo, Usuario usuario, long generacionLeida) {
+        if (generacionLeida != generacion) {
+            return;
+        }
+        entradas.put(normalizar(correo), new Entrada(usuario, System.currentTimeMillis() + ttlMs));
+        
+        // Desalojar los menos usados hasta volver al límite
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (entradas.size() > maxEntradas && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+    
+    // Quitar al usuario de la caché (baja, cambio de rol o de correo)
+    public synchronized void invalidar(int usuarioId) {
+        generacion++;
+        entradas.values().removeIf(entrada -> entrada.usuario().getUsuarioId() == usuarioId);
+    }
+    
+    public synchronized Map<String, Object> getEstadisticas() {
+        return Map.of(
+            "entradas", entradas.size(),
+            "maxEntradas", maxEntradas,
+            "ttlMs", ttlMs,
+            "aciertos", aciertos.get(),
+            "fallos", fallos.get()
+        );
+    }
+}
@@ -0,0 +1,37 @@
+package com.escom.enfermeria.services;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Contador de versión por tabla, en memoria. Los DAOs lo incrementan en cada escritura
+// y los ETag de las consultas se arman con él, sin tocar la base. Los contadores empiezan
+// en cero en cada arranque, por eso la versión lleva también la hora de arranque.
+@Service
+public class VersionDatosService {
+    
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<String, AtomicLong> versiones = new ConcurrentHashMap<>();
+    
+    // Marcar tablas como modificadas. Dentro de una transacción se aplica al confirmarla:
+    // si se hiciera antes, una lectura concurrente podría guardar datos viejos con la versión nueva.
+    public void modificada(String... tablas) {
+        TrasConfirmar.ejecutar(() -> {
+            for (String tabla : tablas) {
+                versiones.computeIfAbsent(tabla, t -> new AtomicLong()).incrementAndGet();
+            }
+        });
+    }
+    
+    // Versión combinada de varias tablas, p. ej. "lq3x9k.4.0"
+    public String version(String... tablas) {
+        StringBuilder version = new StringBuilder(arranque);
+        for (String tabla : tablas) {
+            AtomicLong contador = versiones.get(tabla);
+            version.append('.').append(contador != null ? contador.get() : 0);
+        }
+        return version.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.escom.enfermeria.benchmarks;
+
+import com.escom.enfermeria.dto.ListaResponse;
+import com.escom.enfermeria.dto.MedicamentoRequest;
+import com.escom.enfermeria.models.Medicamento;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Sobre de respuesta con HashMap (como estaban los controladores) contra ListaResponse,
+// y cuerpo de POST leído como Map contra MedicamentoRequest. Correr con:
+//   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+//   java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.escom.enfermeria.benchmarks.EnvelopeBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeBenchmark {
+    
+    @Param({"1", "50", "200"})
+    int filas;
+    
+    private ObjectMapper mapper;
+    private List<Medicamento> medicamentos;
+    private byte[] cuerpoAlta;
+    
+    @Setup
+    public void setup() {
+        // Misma configuración de fechas que el ObjectMapper de Spring Boot
+        mapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        
+        medicamentos = new ArrayList<>(filas);
+        for (int i = 1; i <= filas; i++) {
+            Medicamento medicamento = new Medicamento(i, "Paracetamol " + i, "Tabletas 500 mg",
+                LocalDate.of(2024, 1, 15), LocalDate.of(2026, 1, 15), "L-" + i, "Genéricos SA",
+                "DISPONIBLE", 100 + i, 10, new BigDecimal("35.50"), 1);
+            medicamento.setCategoriaNombre("Analgésicos");
+            medicamentos.add(medicamento);
+        }
+        
+        cuerpoAlta = """
+            {"medicamentoNom": "Ibuprofeno", "medicamentoDesc": "Tabletas 400 mg",
+             "medicamentoFecComp": "2024-03-01", "medicamentoFecCad": "2026-03-01",
+             "medicamentoLote": "L-77", "medicamentoLaboratorio": "Genéricos SA",
+             "medicamentoStock": 120, "medicamentoStockMin": 15,
+             "medicamentoPrecio": 42.00, "categoriaId": 1}
+            """.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public byte[] listaHashMap() throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("total", medicamentos.size());
+        response.put("medicamentos", medicamentos);
+        return mapper.writeValueAsBytes(response);
+    }
+    
+    @Benchmark
+    public byte[] listaRecord() throws Exception {
+        return mapper.writeValueAsBytes(ListaResponse.de("medicamentos", medicamentos));
+    }
+    
+    @Benchmark
+    public Medicamento altaMap() throws Exception {
+        Map<String, Object> data = mapper.readValue(cuerpoAlta, new TypeReference<Map<String, Object>>() {});
+        Medicamento medicamento = new Medicamento();
+        medicamento.setMedicamentoNom((String) data.get("medicamentoNom"));
+        medicamento.setMedicamentoDesc((String) data.getOrDefault("medicamentoDesc", ""));
+        medicamento.setMedicamentoFecComp(LocalDate.parse((String) data.get("medicamentoFecComp")));
+        medicamento.setMedicamentoFecCad(LocalDate.parse((String) data.get("medicamentoFecCad")));
+        medicamento.setMedicamentoLote((String) data.getOrDefault("medicamentoLote", ""));
+        medicamento.setMedicamentoLaboratorio((String) data.getOrDefault("medicamentoLaboratorio", ""));
+        medicamento.setMedicamentoEstado((String) data.getOrDefault("medicamentoEstado", "DISPONIBLE"));
+        medicamento.setMedicamentoStock(Integer.parseInt(data.get("medicamentoStock").toString()));
+        medicamento.setMedicamentoStockMin(Integer.parseInt(data.getOrDefault("medicamentoStockMin", "10").toString()));
+        medicamento.setMedicamentoPrecio(new BigDecimal(data.get("medicamentoPrecio").toString()));
+        medicamento.setCategoriaId(Integer.parseInt(data.get("categoriaId").toString()));
+        return medicamento;
+    }
+    
+    @Benchmark
+    public Medicamento altaRecord() throws Exception {
+        return mapper.readValue(cuerpoAlta, MedicamentoRequest.class).nuevo();
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+            .include(EnvelopeBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opciones).run();
+    }
+}
@@ -0,0 +1,171 @@
+package com.escom.enfermeria.benchmarks;
+
+import com.escom.enfermeria.dao.MedicamentoDAO;
+import com.escom.enfermeria.models.Medicamento;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Costo por fila de mapear medicamentos: RowMapper anterior (lectura por nombre, fechas
+// leídas dos veces y SQLException atrapada cuando falta categoria_nom) contra
+// MedicamentoDAO.MedicamentoRowMapper (índices resueltos una vez con ResultSetMetaData).
+// Usa un CachedRowSet de 10 000 filas en memoria para no depender de la base. Correr con:
+//   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+//   java -cp target/test-classes:target/classes:$(cat target/cp.txt) com.escom.enfermeria.benchmarks.RowMapperBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(RowMapperBenchmark.FILAS)
+public class RowMapperBenchmark {
+    
+    static final int FILAS = 10_000;
+    
+    private static final Map<Integer, String> CATEGORIAS = Map.of(1, "Analgésicos");
+    
+    // Con JOIN a categoria (findAll) o sin él (RETURNING * de create/update)
+    @Param({"true", "false"})
+    boolean conCategoria;
+    
+    private CachedRowSet filas;
+    
+    @Setup
+    public void setup() throws SQLException {
+        List<String> columnas = new ArrayList<>(List.of(
+            "medicamento_id", "medicamento_nom", "medicamento_desc", "medicamento_fec_comp",
+            "medicamento_fec_cad", "medicamento_lote", "medicamento_laboratorio", "medicamento_estado",
+            "medicamento_stock", "medicamento_stock_min", "medicamento_precio", "categoria_id",
+            "created_at", "updated_at"));
+        List<Integer> tipos = new ArrayList<>(List.of(
+            Types.INTEGER, Types.VARCHAR, Types.VARCHAR, Types.DATE,
+            Types.DATE, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+            Types.INTEGER, Types.INTEGER, Types.NUMERIC, Types.INTEGER,
+            Types.TIMESTAMP, Types.TIMESTAMP));
+        if (conCategoria) {
+            columnas.add("categoria_nom");
+            tipos.add(Types.VARCHAR);
+        }
+        
+        RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+        meta.setColumnCount(columnas.size());
+        for (int i = 0; i < columnas.size(); i++) {
+            meta.setColumnName(i + 1, columnas.get(i));
+            meta.setColumnLabel(i + 1, columnas.get(i));
+            meta.setColumnType(i + 1, tipos.get(i));
+        }
+        
+        filas = RowSetProvider.newFactory().createCachedRowSet();
+        filas.setMetaData(meta);
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        for (int i = 1; i <= FILAS; i++) {
+            filas.moveToInsertRow();
+            filas.updateInt(1, i);
+            filas.updateString(2, "Paracetamol " + i);
+            filas.updateString(3, "Tabletas 500 mg");
+            filas.updateDate(4, Date.valueOf("2024-01-15"));
+            filas.updateDate(5, i % 10 == 0 ? null : Date.valueOf("2026-01-15"));
+            filas.updateString(6, "L-" + i);
+            filas.updateString(7, "Genéricos SA");
+            filas.updateString(8, "DISPONIBLE");
+            filas.updateInt(9, 100 + i);
+            filas.updateInt(10, 10);
+            filas.updateBigDecimal(11, new BigDecimal("35.50"));
+            filas.updateInt(12, 1);
+            filas.updateTimestamp(13, ahora);
+            filas.updateTimestamp(14, ahora);
+            if (conCategoria) {
+                filas.updateString(15, "Analgésicos");
+            }
+            filas.insertRow();
+            filas.moveToCurrentRow();
+        }
+    }
+    
+    @Benchmark
+    public List<Medicamento> porNombre() throws SQLException {
+        return mapearTodas(ANTERIOR);
+    }
+    
+    @Benchmark
+    public List<Medicamento> porIndice() throws SQLException {
+        return mapearTodas(new MedicamentoDAO.MedicamentoRowMapper(CATEGORIAS));
+    }
+    
+    private List<Medicamento> mapearTodas(RowMapper<Medicamento> mapper) throws SQLException {
+        List<Medicamento> resultado = new ArrayList<>(FILAS);
+        filas.beforeFirst();
+        int fila = 0;
+        while (filas.next()) {
+            resultado.add(mapper.mapRow(filas, fila++));
+        }
+        return resultado;
+    }
+    
+    // Copia del RowMapper de MedicamentoDAO antes del cambio
+    private static final RowMapper<Medicamento> ANTERIOR = new RowMapper<Medicamento>() {
+        @Override
+        public Medicamento mapRow(ResultSet rs, int rowNum) throws SQLException {
+            Medicamento medicamento = new Medicamento();
+            
+            medicamento.setMedicamentoId(rs.getInt("medicamento_id"));
+            medicamento.setMedicamentoNom(rs.getString("medicamento_nom"));
+            medicamento.setMedicamentoDesc(rs.getString("medicamento_desc"));
+            
+            if (rs.getDate("medicamento_fec_comp") != null) {
+                medicamento.setMedicamentoFecComp(rs.getDate("medicamento_fec_comp").toLocalDate());
+            }
+            if (rs.getDate("medicamento_fec_cad") != null) {
+                medicamento.setMedicamentoFecCad(rs.getDate("medicamento_fec_cad").toLocalDate());
+            }
+            
+            medicamento.setMedicamentoLote(rs.getString("medicamento_lote"));
+            medicamento.setMedicamentoLaboratorio(rs.getString("medicamento_laboratorio"));
+            medicamento.setMedicamentoEstado(rs.getString("medicamento_estado"));
+            medicamento.setMedicamentoStock(rs.getInt("medicamento_stock"));
+            medicamento.setMedicamentoStockMin(rs.getInt("medicamento_stock_min"));
+            medicamento.setMedicamentoPrecio(rs.getBigDecimal("medicamento_precio"));
+            medicamento.setCategoriaId(rs.getInt("categoria_id"));
+            
+            try {
+                medicamento.setCategoriaNombre(rs.getString("categoria_nom"));
+            } catch (SQLException e) {
+                // Columna no presente, ignorar
+            }
+            
+            if (rs.getTimestamp("created_at") != null) {
+                medicamento.setCreated_at(rs.getTimestamp("created_at").toLocalDateTime());
+            }
+            if (rs.getTimestamp("updated_at") != null) {
+                medicamento.setUpdated_at(rs.getTimestamp("updated_at").toLocalDateTime());
+            }
+            
+            return medicamento;
+        }
+    };
+    
+    public static void main(String[] args) throws RunnerException {
+        Options opciones = new OptionsBuilder()
+            .include(RowMapperBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opciones).run();
+    }
+}
@@ -0,0 +1,60 @@
+package com.escom.enfermeria.config;
+
+import com.escom.enfermeria.models.Sesion;
+import com.escom.enfermeria.services.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenInterceptorTest {
+    
+    private final TokenService tokenService = new TokenService(null, "clave-de-pruebas-de-al-menos-32-bytes", 60_000);
+    private final TokenInterceptor interceptor = new TokenInterceptor(tokenService, new ObjectMapper());
+    
+    @Test
+    void sinTokenSigueComoAnonima() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/recetas");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertNull(request.getAttribute(TokenInterceptor.SESION));
+    }
+    
+    @Test
+    void tokenValidoDejaLaSesion() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/recetas");
+        request.addHeader("Authorization", "Bearer " + tokenService.emitir(3, "ADMIN"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        assertTrue(interceptor.preHandle(request, response, null));
+        Sesion sesion = (Sesion) request.getAttribute(TokenInterceptor.SESION);
+        assertEquals(3, sesion.usuarioId());
+        assertEquals("ADMIN", sesion.rol());
+    }
+    
+    @Test
+    void tokenMalFormadoResponde401() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/recetas");
+        request.addHeader("Authorization", "Bearer %%%no-es-base64%%%.???");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        assertFalse(interceptor.preHandle(request, response, null));
+        assertEquals(401, response.getStatus());
+        assertTrue(response.getContentAsString().contains("\"success\":false"));
+    }
+    
+    @Test
+    void tokenRevocadoResponde401() throws Exception {
+        String token = tokenService.emitir(3, "ADMIN");
+        tokenService.revocar(tokenService.verificar(token));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/recetas");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        assertFalse(interceptor.preHandle(request, response, null));
+        assertEquals(401, response.getStatus());
+    }
+}
@@ -0,0 +1,81 @@
+package com.escom.enfermeria.controllers;
+
+import com.escom.enfermeria.dao.MaterialDAO;
+import com.escom.enfermeria.dto.ListaResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class PaginacionTest {
+    
+    @ParameterizedTest
+    @ValueSource(ints = {1, 42, Integer.MAX_VALUE})
+    void decodificaLoQueCodifica(int id) {
+        assertEquals(id, Paginacion.decodificar(Paginacion.codificar(id)));
+    }
+    
+    @Test
+    void sinCursorEsLaPrimeraPagina() {
+        assertNull(Paginacion.decodificar(null));
+        assertNull(Paginacion.decodificar(" "));
+    }
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"!!!", "aWQ6", "eHl6OjQy", "aWQ6YWJj", "aWQ6OTk5OTk5OTk5OTk5"})
+    void rechazaCursoresInvalidos(String cursor) {
+        // No es base64, "id:", "xyz:42", "id:abc" y un ID fuera de rango
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> Paginacion.decodificar(cursor));
+        assertEquals("Cursor inválido", e.getMessage());
+    }
+    
+    @Test
+    void cursorInvalidoResponde400SinConsultar() {
+        MaterialDAO materialDAO = mock(MaterialDAO.class);
+        MaterialController controller = new MaterialController(materialDAO, null, null);
+        String basura = Base64.getUrlEncoder().encodeToString("basura".getBytes(StandardCharsets.UTF_8));
+        
+        ResponseEntity<?> respuesta = controller.getAllMateriales(null, basura);
+        
+        assertEquals(HttpStatus.BAD_REQUEST, respuesta.getStatusCode());
+        verifyNoInteractions(materialDAO);
+    }
+    
+    @Test
+    void conFilaExtraHaySiguientePagina() {
+        // El DAO devolvió limite + 1 filas
+        ListaResponse<Integer> pagina = Paginacion.respuesta("ids", List.of(9, 8, 7, 6), 3, Function.identity());
+        
+        assertEquals(List.of(9, 8, 7), pagina.elementos());
+        assertEquals(7, Paginacion.decodificar(pagina.siguiente()));
+    }
+    
+    @Test
+    void ultimaPaginaNoTieneSiguiente() {
+        ListaResponse<Integer> llena = Paginacion.respuesta("ids", List.of(3, 2, 1), 3, Function.identity());
+        ListaResponse<Integer> vacia = Paginacion.respuesta("ids", List.of(), 3, Function.identity());
+        
+        assertEquals(List.of(3, 2, 1), llena.elementos());
+        assertNull(llena.siguiente());
+        assertTrue(vacia.elementos().isEmpty());
+        assertNull(vacia.siguiente());
+    }
+    
+    @Test
+    void ajustaElLimiteAlRangoPermitido() {
+        assertEquals(Paginacion.LIMITE_DEFECTO, Paginacion.limite(null));
+        assertEquals(1, Paginacion.limite(0));
+        assertEquals(Paginacion.LIMITE_MAXIMO, Paginacion.limite(10_000));
+    }
+}
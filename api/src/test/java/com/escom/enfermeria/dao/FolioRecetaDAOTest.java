@@ -0,0 +1,73 @@
+package com.escom.enfermeria.dao;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FolioRecetaDAOTest {
+    
+    private static final int HILOS = 8;
+    private static final int FOLIOS_POR_HILO = 250;
+    
+    @Test
+    void foliosConcurrentesNoSeRepitenYUsanUnNextvalPorBloque() throws Exception {
+        // La secuencia avanza de BLOQUE en BLOQUE: 1, 51, 101, ...
+        AtomicLong secuencia = new AtomicLong(1 - FolioRecetaDAO.BLOQUE);
+        AtomicInteger nextvals = new AtomicInteger();
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT nextval"), eq(Long.class))).thenAnswer(inv -> {
+            nextvals.incrementAndGet();
+            return secuencia.addAndGet(FolioRecetaDAO.BLOQUE);
+        });
+        FolioRecetaDAO folioRecetaDAO = new FolioRecetaDAO(jdbcTemplate);
+        
+        Set<Long> numeros = ConcurrentHashMap.newKeySet();
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int h = 0; h < HILOS; h++) {
+                tareas.add(pool.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < FOLIOS_POR_HILO; i++) {
+                        String folio = folioRecetaDAO.siguienteFolio();
+                        assertTrue(folio.matches("REC-\\d{6}-\\d+"), folio);
+                        long numero = Long.parseLong(folio.substring(folio.lastIndexOf('-') + 1));
+                        assertTrue(numeros.add(numero), "Folio repetido: " + folio);
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> tarea : tareas) {
+                tarea.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        int total = HILOS * FOLIOS_POR_HILO;
+        assertEquals(total, numeros.size());
+        assertEquals(total / FolioRecetaDAO.BLOQUE, nextvals.get());
+        // Sin huecos: cada bloque reservado se repartió completo
+        assertEquals(1L, numeros.stream().mapToLong(Long::longValue).min().orElseThrow());
+        assertEquals(total, numeros.stream().mapToLong(Long::longValue).max().orElseThrow());
+    }
+}
@@ -0,0 +1,75 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.EstadisticasDAO;
+import com.escom.enfermeria.models.EstadisticasMateriales;
+import com.escom.enfermeria.models.EstadisticasMedicamentos;
+import com.escom.enfermeria.models.EstadisticasPacientes;
+import com.escom.enfermeria.models.EstadisticasRecetas;
+import com.escom.enfermeria.models.Medicamento;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EstadisticasCacheServiceTest {
+    
+    private final EstadisticasDAO estadisticasDAO = mock(EstadisticasDAO.class);
+    private final EstadisticasCacheService cache = new EstadisticasCacheService(estadisticasDAO);
+    
+    @BeforeEach
+    void datos() {
+        when(estadisticasDAO.medicamentos()).thenReturn(new EstadisticasMedicamentos(10, 0, 0, 0));
+        when(estadisticasDAO.materiales()).thenReturn(new EstadisticasMateriales(5, 0, 0, 0));
+        when(estadisticasDAO.recetas(any(), any(), any())).thenReturn(new EstadisticasRecetas(7, 0, 0, 0));
+        when(estadisticasDAO.pacientes()).thenReturn(new EstadisticasPacientes(3, 20.0, 0, 0, 0, 0, 0));
+    }
+    
+    @Test
+    void cargaLosContadoresDesdeLaBase() {
+        cache.reconciliar();
+        
+        Map<String, Object> estadisticas = cache.getEstadisticas(null, null);
+        assertEquals(10, estadisticas.get("medicamentos"));
+        assertEquals(5, estadisticas.get("materiales"));
+        assertEquals(7, estadisticas.get("recetas"));
+        assertEquals(3, estadisticas.get("pacientes"));
+    }
+    
+    @Test
+    void reaplicaLosAjustesConfirmadosDuranteLasConsultas() {
+        cache.reconciliar();
+        
+        // Un alta y una baja se confirman mientras corren las consultas de la reconciliación;
+        // la base todavía reporta los totales anteriores
+        when(estadisticasDAO.pacientes()).thenAnswer(inv -> {
+            cache.medicamentoCreado(medicamento(11));
+            cache.pacienteEliminado();
+            return new EstadisticasPacientes(3, 20.0, 0, 0, 0, 0, 0);
+        });
+        cache.reconciliar();
+        
+        Map<String, Object> estadisticas = cache.getEstadisticas(null, null);
+        assertEquals(11, estadisticas.get("medicamentos"));
+        assertEquals(2, estadisticas.get("pacientes"));
+        
+        // Fuera de una reconciliación los ajustes ya no se guardan para reaplicarse
+        when(estadisticasDAO.pacientes()).thenReturn(new EstadisticasPacientes(2, 20.0, 0, 0, 0, 0, 0));
+        when(estadisticasDAO.medicamentos()).thenReturn(new EstadisticasMedicamentos(11, 0, 0, 0));
+        cache.reconciliar();
+        
+        estadisticas = cache.getEstadisticas(null, null);
+        assertEquals(11, estadisticas.get("medicamentos"));
+        assertEquals(2, estadisticas.get("pacientes"));
+    }
+    
+    private static Medicamento medicamento(int id) {
+        Medicamento medicamento = new Medicamento();
+        medicamento.setMedicamentoId(id);
+        return medicamento;
+    }
+}
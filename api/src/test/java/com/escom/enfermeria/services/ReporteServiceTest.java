@@ -0,0 +1,153 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.dao.EstadisticasDAO;
+import com.escom.enfermeria.dao.MaterialDAO;
+import com.escom.enfermeria.dao.MedicamentoDAO;
+import com.escom.enfermeria.dao.RecetaDAO;
+import com.escom.enfermeria.models.EstadisticasMateriales;
+import com.escom.enfermeria.models.EstadisticasMedicamentos;
+import com.escom.enfermeria.models.EstadisticasPacientes;
+import com.escom.enfermeria.models.EstadisticasRecetas;
+import com.escom.enfermeria.models.Material;
+import com.escom.enfermeria.models.Medicamento;
+import com.escom.enfermeria.models.Receta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ReporteServiceTest {
+    
+    // Varias páginas (FILAS_POR_CONSULTA = 200) y varios bloques (FILAS_POR_BLOQUE = 50)
+    private static final int FILAS = 450;
+    
+    private final MedicamentoDAO medicamentoDAO = mock(MedicamentoDAO.class);
+    private final MaterialDAO materialDAO = mock(MaterialDAO.class);
+    private final RecetaDAO recetaDAO = mock(RecetaDAO.class);
+    private final EstadisticasDAO estadisticasDAO = mock(EstadisticasDAO.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    
+    private final ReporteService reporteService = new ReporteService(medicamentoDAO, materialDAO,
+        recetaDAO, estadisticasDAO, Runnable::run, 10_000, registry, mock(PlatformTransactionManager.class));
+    
+    @BeforeEach
+    void datos() {
+        when(estadisticasDAO.medicamentos()).thenReturn(new EstadisticasMedicamentos(FILAS, 3, 2, 1));
+        when(estadisticasDAO.materiales()).thenReturn(new EstadisticasMateriales(FILAS, 4, 1, 0));
+        when(estadisticasDAO.recetas(anyInt(), any(), any())).thenReturn(new EstadisticasRecetas(FILAS, 100, 15, 5));
+        when(estadisticasDAO.pacientes()).thenReturn(new EstadisticasPacientes(30, 21.5, 4, 1, 20, 6, 3));
+        
+        // Las páginas devuelven hasta limite + 1 filas con IDs menores que la última entregada
+        when(medicamentoDAO.findPagina(any(), anyInt())).thenAnswer(inv -> {
+            List<Medicamento> pagina = new ArrayList<>();
+            for (int i : ids(inv.getArgument(0), inv.getArgument(1))) {
+                Medicamento med = new Medicamento();
+                med.setMedicamentoId(i);
+                med.setMedicamentoNom("Paracetamol " + i);
+                med.setMedicamentoStock(i);
+                med.setMedicamentoEstado("DISPONIBLE");
+                med.setMedicamentoFecCad(LocalDate.of(2030, 1, 1));
+                med.setMedicamentoPrecio(new BigDecimal("12.50"));
+                pagina.add(med);
+            }
+            return pagina;
+        });
+        
+        when(materialDAO.findPagina(any(), anyInt())).thenAnswer(inv -> {
+            List<Material> pagina = new ArrayList<>();
+            for (int i : ids(inv.getArgument(0), inv.getArgument(1))) {
+                Material mat = new Material();
+                mat.setMaterialId(i);
+                mat.setMaterialNom("Gasa " + i);
+                mat.setMaterialStock(i);
+                mat.setMaterialEstado("DISPONIBLE");
+                pagina.add(mat);
+            }
+            return pagina;
+        });
+        
+        when(recetaDAO.findPaginaByUsuarioYPeriodo(anyInt(), any(), any(), any(), anyInt())).thenAnswer(inv -> {
+            Receta despuesDe = inv.getArgument(3);
+            List<Receta> pagina = new ArrayList<>();
+            for (int i : ids(despuesDe != null ? despuesDe.getRecetaId() : null, inv.getArgument(4))) {
+                Receta receta = new Receta();
+                receta.setRecetaId(i);
+                receta.setRecetaFolio("REC-" + i);
+                receta.setRecetaFecha(LocalDateTime.of(2025, 3, 1, 10, 0));
+                receta.setRecetaDiag("Cefalea");
+                receta.setRecetaEstado("ACTIVA");
+                receta.setPacienteId(i);
+                receta.setUsuarioId(1);
+                pagina.add(receta);
+            }
+            return pagina;
+        });
+    }
+    
+    @Test
+    void generaReporteDeMedicamentos() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reporteService.generarReporteMedicamentos(1, 3, 2025, out);
+        assertEsPdf(out);
+        
+        // 450 filas en páginas de 200: cada página sigue a la última fila de la anterior
+        verify(medicamentoDAO).findPagina(null, 200);
+        verify(medicamentoDAO).findPagina(251, 200);
+        verify(medicamentoDAO).findPagina(51, 200);
+        verifyNoMoreInteractions(medicamentoDAO);
+    }
+    
+    @Test
+    void generaReporteDeMateriales() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reporteService.generarReporteMateriales(1, null, null, out);
+        assertEsPdf(out);
+    }
+    
+    @Test
+    void generaReporteDeRecetas() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reporteService.generarReporteRecetas(1, 3, 2025, out);
+        assertEsPdf(out);
+    }
+    
+    @Test
+    void generaReporteConsolidadoYMideCadaConsulta() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reporteService.generarReporteConsolidado(1, 3, 2025, out);
+        assertEsPdf(out);
+        
+        for (String consulta : new String[]{"medicamentos", "materiales", "recetas", "pacientes"}) {
+            assertEquals(1, registry.get("enfermeria.reporte.consulta")
+                .tags("consulta", consulta, "outcome", "SUCCESS").timer().count(), consulta);
+        }
+    }
+    
+    // IDs de FILAS hacia abajo, como ORDER BY id DESC con keyset
+    private static List<Integer> ids(Integer antesDeId, int limite) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = antesDeId != null ? antesDeId - 1 : FILAS; i > 0 && ids.size() <= limite; i--) {
+            ids.add(i);
+        }
+        return ids;
+    }
+    
+    private static void assertEsPdf(ByteArrayOutputStream out) {
+        String contenido = out.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(contenido.startsWith("%PDF-"), "no empieza con la cabecera PDF");
+        assertTrue(contenido.stripTrailing().endsWith("%%EOF"), "el documento no se cerró");
+    }
+}
@@ -0,0 +1,105 @@
+package com.escom.enfermeria.services;
+
+import com.escom.enfermeria.models.Sesion;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+    
+    private static final String SECRETO = "clave-de-pruebas-de-al-menos-32-bytes";
+    
+    private final TokenService tokenService = new TokenService(null, SECRETO, 60_000);
+    
+    @Test
+    void verificaElTokenQueEmite() {
+        Sesion sesion = tokenService.verificar(tokenService.emitir(7, "ENFERMERO"));
+        
+        assertNotNull(sesion);
+        assertEquals(7, sesion.usuarioId());
+        assertEquals("ENFERMERO", sesion.rol());
+        assertTrue(sesion.expira() > System.currentTimeMillis());
+    }
+    
+    @Test
+    void rechazaDatosModificados() {
+        String token = tokenService.emitir(7, "ENFERMERO");
+        String[] partes = token.split("\\.");
+        String datos = new String(Base64.getUrlDecoder().decode(partes[0]), StandardCharsets.UTF_8);
+        String datosAdmin = datos.replaceFirst("^7\\|ENFERMERO", "1|ADMIN");
+        String falsificado = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(datosAdmin.getBytes(StandardCharsets.UTF_8)) + "." + partes[1];
+        
+        assertNull(tokenService.verificar(falsificado));
+    }
+    
+    @Test
+    void rechazaFirmaModificada() {
+        String token = tokenService.emitir(7, "ENFERMERO");
+        // Un carácter a la mitad de la firma (el último puede llevar bits de relleno)
+        int i = token.indexOf('.') + 10;
+        char c = token.charAt(i);
+        String alterado = token.substring(0, i) + (c == 'A' ? 'B' : 'A') + token.substring(i + 1);
+        
+        assertNull(tokenService.verificar(alterado));
+    }
+    
+    @Test
+    void rechazaTokenDeOtraClave() {
+        TokenService otro = new TokenService(null, "otra-clave-de-pruebas-de-32-bytes-o-mas", 60_000);
+        
+        assertNull(tokenService.verificar(otro.emitir(7, "ENFERMERO")));
+    }
+    
+    @Test
+    void rechazaTokenExpirado() {
+        TokenService vencido = new TokenService(null, SECRETO, -1);
+        
+        assertNull(vencido.verificar(vencido.emitir(7, "ENFERMERO")));
+    }
+    
+    @Test
+    void rechazaTokenRevocado() {
+        String token = tokenService.emitir(7, "ENFERMERO");
+        String otroToken = tokenService.emitir(7, "ENFERMERO");
+        
+        tokenService.revocar(tokenService.verificar(token));
+        
+        assertNull(tokenService.verificar(token));
+        assertNotNull(tokenService.verificar(otroToken));
+    }
+    
+    @Test
+    void revocarUsuarioInvalidaSoloSusTokensAnteriores() throws InterruptedException {
+        String anterior = tokenService.emitir(7, "ENFERMERO");
+        String deOtroUsuario = tokenService.emitir(8, "ENFERMERO");
+        
+        tokenService.revocarUsuario(7);
+        Thread.sleep(5);
+        String posterior = tokenService.emitir(7, "ENFERMERO");
+        
+        assertNull(tokenService.verificar(anterior));
+        assertNotNull(tokenService.verificar(deOtroUsuario));
+        assertNotNull(tokenService.verificar(posterior));
+    }
+    
+    @Test
+    void tokenMalFormadoDevuelveNull() {
+        assertNull(tokenService.verificar(""));
+        assertNull(tokenService.verificar("sin-punto"));
+        assertNull(tokenService.verificar("a.b.c"));
+        assertNull(tokenService.verificar("%%%.&&&"));
+        assertNull(tokenService.verificar(".firma"));
+        // base64 válido pero con datos que no son un token
+        String basura = Base64.getUrlEncoder().withoutPadding().encodeToString("x|y".getBytes(StandardCharsets.UTF_8));
+        assertNull(tokenService.verificar(basura + "." + basura));
+    }
+    
+    @Test
+    void rechazaClaveCorta() {
+        assertThrows(IllegalStateException.class, () -> new TokenService(null, "corta", 60_000));
+    }
+}
@@ -145,7 +145,7 @@ CREATE TABLE IF NOT EXISTS reporte (
     reporte_fecha TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     reporte_periodo VARCHAR(20), -- 'DIARIO', 'SEMANAL', 'MENSUAL'
     reporte_desc TEXT,
-    reporte_url VARCHAR(255), -- URL del archivo generado
+    reporte_url VARCHAR(255), -- Nombre del archivo generado (relativo al directorio de reportes)
     usuario_id INTEGER REFERENCES usuario(usuario_id),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
\ No newline at end of file
@@ -0,0 +1,7 @@
+-- ============================================
+-- ÍNDICES PARA REPORTES
+-- ============================================
+
+-- Recetas por usuario y rango de fechas (ReporteService / RecetaDAO.findByUsuarioYPeriodo)
+CREATE INDEX IF NOT EXISTS idx_receta_usuario_fecha
+    ON receta (usuario_id, receta_fecha);
@@ -0,0 +1,12 @@
+-- ============================================
+-- ESTADO DE REPORTES GENERADOS EN SEGUNDO PLANO
+-- ============================================
+
+-- Estado del trabajo de generación: PENDIENTE -> EN_PROCESO -> COMPLETADO | ERROR
+ALTER TABLE reporte
+    ADD COLUMN IF NOT EXISTS reporte_estado VARCHAR(20) DEFAULT 'COMPLETADO'
+    CHECK (reporte_estado IN ('PENDIENTE', 'EN_PROCESO', 'COMPLETADO', 'ERROR'));
+
+-- Consultas de reportes por usuario (más recientes primero)
+CREATE INDEX IF NOT EXISTS idx_reporte_usuario_fecha
+    ON reporte (usuario_id, reporte_fecha DESC);
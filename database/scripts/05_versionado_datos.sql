@@ -0,0 +1,13 @@
+-- ============================================
+-- MARCAS DE VERSIÓN PARA CACHÉ DE REPORTES
+-- ============================================
+
+-- receta y paciente no tenían updated_at: sin él, un cambio de estado o de
+-- nombre no modifica la versión de los datos y el reporte en caché queda viejo
+ALTER TABLE receta ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+ALTER TABLE paciente ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
+
+-- max(updated_at) se resuelve leyendo el extremo del índice
+CREATE INDEX IF NOT EXISTS idx_medicamento_updated_at ON medicamento (updated_at);
+CREATE INDEX IF NOT EXISTS idx_material_updated_at ON material (updated_at);
+CREATE INDEX IF NOT EXISTS idx_paciente_updated_at ON paciente (updated_at);
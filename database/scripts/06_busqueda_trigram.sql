@@ -0,0 +1,24 @@
+-- ============================================
+-- ÍNDICES DE BÚSQUEDA (pg_trgm)
+-- ============================================
+
+-- Los buscadores filtran con ILIKE '%término%', que un índice B-tree no puede
+-- usar. Un índice GIN de trigramas sí, y además permite ordenar por similitud.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Pacientes
+CREATE INDEX IF NOT EXISTS idx_paciente_nombre_trgm ON paciente USING gin (paciente_nombre gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_paciente_escuela_trgm ON paciente USING gin (paciente_escuela gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_paciente_email_trgm ON paciente USING gin (paciente_email gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_paciente_telefono_trgm ON paciente USING gin (paciente_telefono gin_trgm_ops);
+
+-- Medicamentos y materiales
+CREATE INDEX IF NOT EXISTS idx_medicamento_nom_trgm ON medicamento USING gin (medicamento_nom gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_material_nom_trgm ON material USING gin (material_nom gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_material_desc_trgm ON material USING gin (material_desc gin_trgm_ops);
+
+-- Recetas (la búsqueda por nombre de paciente usa idx_paciente_nombre_trgm
+-- y llega a las recetas por paciente_id)
+CREATE INDEX IF NOT EXISTS idx_receta_folio_trgm ON receta USING gin (receta_folio gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_receta_diag_trgm ON receta USING gin (receta_diag gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_receta_paciente ON receta (paciente_id);
@@ -0,0 +1,22 @@
+-- ============================================
+-- ÍNDICES DE LA BITÁCORA DE MOVIMIENTOS
+-- ============================================
+
+-- El historial de un artículo filtra por su id y un rango de fechas, y ordena
+-- por fecha descendente. Los índices parciales omiten las filas del otro tipo
+-- de artículo (cada movimiento es de un medicamento o de un material).
+CREATE INDEX IF NOT EXISTS idx_movimiento_medicamento_fecha
+    ON movimiento (medicamento_id, movimiento_fecha)
+    WHERE medicamento_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_movimiento_material_fecha
+    ON movimiento (material_id, movimiento_fecha)
+    WHERE material_id IS NOT NULL;
+
+-- Consultas por periodo de todo el inventario
+CREATE INDEX IF NOT EXISTS idx_movimiento_fecha ON movimiento (movimiento_fecha);
+
+-- Salidas de una receta (consulta y desligado al eliminarla)
+CREATE INDEX IF NOT EXISTS idx_movimiento_receta
+    ON movimiento (receta_id)
+    WHERE receta_id IS NOT NULL;
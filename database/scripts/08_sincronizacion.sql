@@ -0,0 +1,22 @@
+-- ============================================
+-- SINCRONIZACIÓN INCREMENTAL (?since=)
+-- ============================================
+
+-- Registro de bajas: al borrar un medicamento o material ya no queda fila con
+-- updated_at, así que el cliente se entera de la baja por aquí. Se purgan las
+-- que superan la retención configurada (sincronizacion.retencion-dias).
+CREATE TABLE IF NOT EXISTS eliminacion (
+    entidad VARCHAR(20) NOT NULL,
+    registro_id INTEGER NOT NULL,
+    eliminado_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (entidad, registro_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_eliminacion_entidad_fecha
+    ON eliminacion (entidad, eliminado_at);
+
+-- Las altas y cambios se leen con updated_at > marca; usan los índices
+-- idx_medicamento_updated_at e idx_material_updated_at (creados en 05_versionado_datos.sql;
+-- se repiten aquí con IF NOT EXISTS para que este script funcione por sí solo)
+CREATE INDEX IF NOT EXISTS idx_medicamento_updated_at ON medicamento (updated_at);
+CREATE INDEX IF NOT EXISTS idx_material_updated_at ON material (updated_at);
@@ -0,0 +1,11 @@
+-- ============================================
+-- FOLIOS DE RECETA
+-- ============================================
+
+-- Números para los folios REC-aammdd-N. La API reserva bloques de 50 números con
+-- una sola llamada a nextval y los reparte en memoria, así que INCREMENT BY debe
+-- coincidir con FolioRecetaDAO.BLOQUE. Empieza en 1000 para no chocar con los folios
+-- anteriores, que llevaban un número aleatorio de 3 dígitos.
+CREATE SEQUENCE IF NOT EXISTS receta_folio_seq
+    START WITH 1000
+    INCREMENT BY 50;
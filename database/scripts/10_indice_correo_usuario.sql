@@ -0,0 +1,10 @@
+-- ============================================
+-- BÚSQUEDA DE USUARIOS POR CORREO
+-- ============================================
+
+-- El login compara LOWER(usuario_correo) = LOWER(?), que no puede usar el índice
+-- único de usuario_correo. Índice sobre la expresión, solo de usuarios activos
+-- (la consulta también filtra usuario_activo = true).
+CREATE INDEX IF NOT EXISTS idx_usuario_correo_lower
+    ON usuario (LOWER(usuario_correo))
+    WHERE usuario_activo = true;
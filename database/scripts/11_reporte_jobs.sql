@@ -0,0 +1,21 @@
+-- ============================================
+-- CICLO DE VIDA DE LOS REPORTES EN SEGUNDO PLANO
+-- ============================================
+
+-- Latido de los trabajos en curso: la instancia que genera un reporte lo renueva
+-- periódicamente. Un trabajo PENDIENTE/EN_PROCESO sin latido reciente quedó
+-- huérfano (su instancia se detuvo) y se marca como ERROR; los de otras
+-- instancias vivas no se tocan.
+ALTER TABLE reporte
+    ADD COLUMN IF NOT EXISTS reporte_latido TIMESTAMP;
+
+-- Nuevo estado EXPIRADO: el PDF se borró del disco al cumplir su retención
+ALTER TABLE reporte DROP CONSTRAINT IF EXISTS reporte_reporte_estado_check;
+ALTER TABLE reporte
+    ADD CONSTRAINT reporte_reporte_estado_check
+    CHECK (reporte_estado IN ('PENDIENTE', 'EN_PROCESO', 'COMPLETADO', 'ERROR', 'EXPIRADO'));
+
+-- Barridos de trabajos huérfanos y de reportes a expirar
+CREATE INDEX IF NOT EXISTS idx_reporte_estado_fecha
+    ON reporte (reporte_estado, reporte_fecha)
+    WHERE reporte_estado IN ('PENDIENTE', 'EN_PROCESO', 'COMPLETADO');
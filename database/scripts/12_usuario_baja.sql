@@ -0,0 +1,9 @@
+-- ============================================
+-- FECHA DE BAJA DE USUARIOS
+-- ============================================
+
+-- Hora en que se desactivó al usuario. Al arrancar, la API invalida los tokens
+-- de sesión emitidos antes de esta hora (la lista de revocados vive en memoria
+-- y se pierde al reiniciar).
+ALTER TABLE usuario
+    ADD COLUMN IF NOT EXISTS usuario_fec_baja TIMESTAMP;
@@ -88,6 +88,7 @@ const RecetaForm: React.FC<RecetaFormProps> = ({ recetaId, onSuccess, onCancel }
           recetaObs: receta.recetaObs || "",
           pacienteId: receta.pacienteId,
           detalles: detalles.map((d) => ({
+            detRecetaId: d.detRecetaId,
             detRecetaMed: d.detRecetaMed,
             detRecetaCant: d.detRecetaCant,
             detRecetaDosis: d.detRecetaDosis || "",
@@ -30,6 +30,10 @@ export interface MaterialResponse {
   material?: Material;
   materiales?: Material[];
   total?: number;
+  siguiente?: string | null; // Cursor de la siguiente página (solo en respuestas paginadas)
+  eliminados?: number[]; // IDs dados de baja (solo en /cambios)
+  marca?: string; // Marca para la próxima sincronización (solo en /cambios)
+  completo?: boolean; // true si /cambios devolvió la lista completa
   totalMateriales?: number;
   stockBajo?: number;
   enMantenimiento?: number;
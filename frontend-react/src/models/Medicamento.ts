@@ -42,7 +42,24 @@ export interface MedicamentoResponse {
   medicamento?: Medicamento;
   medicamentos?: Medicamento[];
   total?: number;
+  siguiente?: string | null; // Cursor de la siguiente página (solo en respuestas paginadas)
+  eliminados?: number[]; // IDs dados de baja (solo en /cambios)
+  marca?: string; // Marca para la próxima sincronización (solo en /cambios)
+  completo?: boolean; // true si /cambios devolvió la lista completa
   totalMedicamentos?: number;
   stockBajo?: number;
   proximosCaducar?: number;
 }
+
+export interface SugerenciaMedicamento {
+  medicamentoId: number;
+  medicamentoNom: string;
+  medicamentoStock: number;
+  medicamentoEstado: string;
+}
+
+export interface SugerenciaMedicamentoResponse {
+  success: boolean;
+  total: number;
+  sugerencias: SugerenciaMedicamento[];
+}
@@ -0,0 +1,40 @@
+export interface Movimiento {
+  movimientoId: number;
+  movimientoTipo: 'ENTRADA' | 'SALIDA';
+  movimientoFecha: string;
+  movimientoCant: number;
+  movimientoMotivo: string | null;
+  movimientoRef: string | null;
+  usuarioId: number;
+  medicamentoId: number | null;
+  materialId: number | null;
+  recetaId: number | null;
+  medicamentoNombre: string | null;
+  materialNombre: string | null;
+  created_at?: string;
+}
+
+// Se indica medicamentoId o materialId, nunca los dos. El usuario sale de la sesión
+export interface MovimientoFormData {
+  movimientoTipo: 'ENTRADA' | 'SALIDA';
+  movimientoCant: number;
+  movimientoMotivo?: string;
+  movimientoRef?: string;
+  medicamentoId?: number;
+  materialId?: number;
+}
+
+// Filtros de consulta: desde/hasta como yyyy-MM-dd (hasta incluye el día) o fecha y hora
+export interface MovimientoFiltros {
+  tipo?: 'ENTRADA' | 'SALIDA';
+  desde?: string;
+  hasta?: string;
+  limit?: number;
+}
+
+export interface MovimientoResponse {
+  success: boolean;
+  message?: string;
+  movimientos?: Movimiento[];
+  total?: number;
+}
@@ -22,5 +22,6 @@ export interface PacienteResponse {
   paciente?: Paciente;
   pacientes?: Paciente[];
   total?: number;
+  siguiente?: string | null; // Cursor de la siguiente página (solo en respuestas paginadas)
   totalPacientes?: number;
 }
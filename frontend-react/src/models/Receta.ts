@@ -38,6 +38,7 @@ export interface RecetaFormData {
 }
 
 export interface DetalleRecetaFormData {
+  detRecetaId?: number; // Solo en líneas ya guardadas
   detRecetaMed: string;
   detRecetaCant: number;
   detRecetaDosis: string;
@@ -53,6 +54,7 @@ export interface RecetaResponse {
   recetas?: Receta[];
   recetaCompleta?: RecetaCompleta;
   total?: number;
+  siguiente?: string | null; // Cursor de la siguiente página (solo en respuestas paginadas)
   totalRecetas?: number;
   activas?: number;
   completadas?: number;
@@ -3,3 +3,4 @@ export * from './Material';
 export * from './Paciente';
 export * from './Receta';
 export * from './LoginRequest';
+export * from './Movimiento';
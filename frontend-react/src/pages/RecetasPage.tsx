@@ -114,7 +114,8 @@ const ReportesPage: React.FC = () => {
           await reporteService.descargarReporteRecetas(mes, año)
           break
         case "consolidado":
-          await reporteService.descargarReporteConsolidado(mes, año)
+          // El consolidado es el más pesado: se genera en segundo plano para no agotar el timeout
+          await reporteService.generarReporteEnSegundoPlano("consolidado", mes, año)
           break
       }
 
@@ -21,4 +21,19 @@ api.interceptors.request.use(
   (error) => Promise.reject(error)
 );
 
+// Token inválido, expirado o revocado: cerrar la sesión local y volver al login
+api.interceptors.response.use(
+  (response) => response,
+  (error) => {
+    const teniaToken = !!error.config?.headers?.Authorization;
+    const esLogin = error.config?.url?.startsWith('/auth/login');
+    if (error.response?.status === 401 && teniaToken && !esLogin) {
+      localStorage.removeItem('user_data');
+      localStorage.removeItem('auth_token');
+      window.location.href = '/login';
+    }
+    return Promise.reject(error);
+  }
+);
+
 export default api;
@@ -27,7 +27,8 @@ export const authService = {
 
       if (response.data.success) {
         const userData = response.data.user || response.data.usuario
-        const token = response.data.token || "fake-jwt-token"
+        // Token firmado por la API; se manda como Bearer en cada petición (ver api.ts)
+        const token = response.data.token
 
         // Asegurar compatibilidad con DashboardPage
         const user: User = {
@@ -55,6 +56,10 @@ export const authService = {
   },
 
   logout() {
+    // Revocar el token en la API; la sesión local se cierra aunque la llamada falle
+    if (localStorage.getItem("auth_token")) {
+      api.post("/auth/logout").catch(() => {})
+    }
     localStorage.removeItem("user_data")
     localStorage.removeItem("auth_token")
     window.location.href = "/login"
@@ -12,6 +12,29 @@ export const materialService = {
     }
   },
 
+  // Obtener una página de materiales (más recientes primero).
+  // Para la siguiente página se envía como "after" el valor "siguiente" de la respuesta.
+  async getPagina(limit: number, after?: string | null): Promise<MaterialResponse> {
+    try {
+      const response = await api.get('/materiales', { params: { limit, after: after || undefined } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Obtener solo lo que cambió desde la última sincronización. Sin "since" (o si la
+  // marca es muy vieja) llega la lista completa con completo = true. La "marca" de la
+  // respuesta se guarda y se envía como "since" en la próxima llamada.
+  async getCambios(since?: string | null): Promise<MaterialResponse> {
+    try {
+      const response = await api.get('/materiales/cambios', { params: { since: since || undefined } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
   // Obtener material por ID
   async getById(id: number): Promise<MaterialResponse> {
     try {
@@ -1,5 +1,5 @@
 import api from './api';
-import type { Medicamento, MedicamentoFormData, MedicamentoResponse, Categoria } from '../models/Medicamento';
+import type { Medicamento, MedicamentoFormData, MedicamentoResponse, SugerenciaMedicamentoResponse, Categoria } from '../models/Medicamento';
 
 export const medicamentoService = {
   // Obtener todos los medicamentos
@@ -12,6 +12,29 @@ export const medicamentoService = {
     }
   },
 
+  // Obtener una página de medicamentos (más recientes primero).
+  // Para la siguiente página se envía como "after" el valor "siguiente" de la respuesta.
+  async getPagina(limit: number, after?: string | null): Promise<MedicamentoResponse> {
+    try {
+      const response = await api.get('/medicamentos', { params: { limit, after: after || undefined } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Obtener solo lo que cambió desde la última sincronización. Sin "since" (o si la
+  // marca es muy vieja) llega la lista completa con completo = true. La "marca" de la
+  // respuesta se guarda y se envía como "since" en la próxima llamada.
+  async getCambios(since?: string | null): Promise<MedicamentoResponse> {
+    try {
+      const response = await api.get('/medicamentos/cambios', { params: { since: since || undefined } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
   // Obtener medicamento por ID
   async getById(id: number): Promise<MedicamentoResponse> {
     try {
@@ -62,6 +85,16 @@ export const medicamentoService = {
     }
   },
 
+  // Sugerencias para autocompletar el nombre (servidas desde memoria)
+  async sugerir(q: string, limit = 10): Promise<SugerenciaMedicamentoResponse> {
+    try {
+      const response = await api.get('/medicamentos/sugerencias', { params: { q, limit } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
   // Obtener por estado
   async getByEstado(estado: string): Promise<MedicamentoResponse> {
     try {
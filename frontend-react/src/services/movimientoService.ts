@@ -0,0 +1,64 @@
+import api from './api';
+import type { MovimientoFiltros, MovimientoFormData, MovimientoResponse } from '../models/Movimiento';
+
+export const movimientoService = {
+  // Obtener movimientos de todo el inventario (más recientes primero)
+  async getAll(filtros: MovimientoFiltros = {}): Promise<MovimientoResponse> {
+    try {
+      const response = await api.get('/movimientos', { params: filtros });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Historial de stock de un medicamento
+  async getByMedicamento(id: number, filtros: Omit<MovimientoFiltros, 'tipo'> = {}): Promise<MovimientoResponse> {
+    try {
+      const response = await api.get(`/movimientos/medicamento/${id}`, { params: filtros });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Historial de stock de un material
+  async getByMaterial(id: number, filtros: Omit<MovimientoFiltros, 'tipo'> = {}): Promise<MovimientoResponse> {
+    try {
+      const response = await api.get(`/movimientos/material/${id}`, { params: filtros });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Salidas generadas al surtir una receta
+  async getByReceta(id: number): Promise<MovimientoResponse> {
+    try {
+      const response = await api.get(`/movimientos/receta/${id}`);
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Registrar una entrada o salida (ajusta el stock del artículo)
+  async create(data: MovimientoFormData): Promise<MovimientoResponse> {
+    try {
+      const response = await api.post('/movimientos', data);
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
+  // Registrar varios movimientos en una sola transacción (todo o nada)
+  async createLote(data: MovimientoFormData[]): Promise<MovimientoResponse> {
+    try {
+      const response = await api.post('/movimientos/lote', data);
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  }
+};
@@ -12,6 +12,17 @@ export const pacienteService = {
     }
   },
 
+  // Obtener una página de pacientes (más recientes primero).
+  // Para la siguiente página se envía como "after" el valor "siguiente" de la respuesta.
+  async getPagina(limit: number, after?: string | null): Promise<PacienteResponse> {
+    try {
+      const response = await api.get('/pacientes', { params: { limit, after: after || undefined } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
   // Obtener paciente por ID
   async getById(id: number): Promise<PacienteResponse> {
     try {
@@ -19,6 +19,17 @@ export const recetaService = {
     }
   },
 
+  // Obtener una página de recetas (más recientes primero).
+  // Para la siguiente página se envía como "after" el valor "siguiente" de la respuesta.
+  async getPagina(limit: number, after?: string | null): Promise<RecetaResponse> {
+    try {
+      const response = await api.get('/recetas', { params: { limit, after: after || undefined } });
+      return response.data;
+    } catch (error) {
+      throw error;
+    }
+  },
+
   // Obtener receta por ID con detalles
   async getById(id: number): Promise<RecetaResponse> {
     try {
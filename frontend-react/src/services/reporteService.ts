@@ -18,14 +18,26 @@ export interface EstadisticasReporte {
   proximosCaducar: number;
 }
 
+export type TipoReporte = 'medicamentos' | 'materiales' | 'recetas' | 'consolidado';
+
+export interface ReporteJob {
+  reporteId: number;
+  reporteTipo: string;
+  reporteEstado: 'PENDIENTE' | 'EN_PROCESO' | 'COMPLETADO' | 'ERROR' | 'EXPIRADO';
+  reporteDesc?: string;
+  reporteFecha?: string;
+  reporteDescarga?: string;
+}
+
 class ReporteService {
-  private getAuthHeaders() {
-    const token = localStorage.getItem('token');
-    const userId = localStorage.getItem('userId');
-    return {
-      'Authorization': token ? `Bearer ${token}` : '',
-      'X-User-Id': userId || '1'
-    };
+  private getAuthHeaders(): Record<string, string> {
+    // Misma clave que guarda authService al iniciar sesión; el usuario sale del token
+    const token = localStorage.getItem('auth_token');
+    const headers: Record<string, string> = {};
+    if (token) {
+      headers['Authorization'] = `Bearer ${token}`;
+    }
+    return headers;
   }
 
   // Obtener opciones de filtro
@@ -104,6 +116,43 @@ class ReporteService {
     this.descargarPDF(response.data, 'reporte-consolidado.pdf');
   }
 
+  // Encolar un reporte para generarlo en segundo plano
+  async encolarReporte(tipo: TipoReporte, mes?: number, año?: number): Promise<ReporteJob> {
+    const response = await axios.post(`${API_URL}/reportes/jobs`, { tipo, mes, año }, {
+      headers: this.getAuthHeaders()
+    });
+    return response.data.reporte;
+  }
+
+  // Consultar el estado de un reporte encolado
+  async obtenerEstadoReporte(reporteId: number): Promise<ReporteJob> {
+    const response = await axios.get(`${API_URL}/reportes/jobs/${reporteId}`, {
+      headers: this.getAuthHeaders()
+    });
+    return response.data.reporte;
+  }
+
+  // Generar un reporte en segundo plano: encola, consulta el estado hasta que termine y descarga
+  async generarReporteEnSegundoPlano(tipo: TipoReporte, mes?: number, año?: number, intervaloMs = 2000): Promise<void> {
+    let job = await this.encolarReporte(tipo, mes, año);
+
+    while (job.reporteEstado === 'PENDIENTE' || job.reporteEstado === 'EN_PROCESO') {
+      await new Promise(resolve => setTimeout(resolve, intervaloMs));
+      job = await this.obtenerEstadoReporte(job.reporteId);
+    }
+
+    if (job.reporteEstado === 'ERROR') {
+      throw new Error(job.reporteDesc || 'Error generando reporte');
+    }
+
+    const response = await axios.get(`${API_URL}/reportes/jobs/${job.reporteId}/pdf`, {
+      headers: this.getAuthHeaders(),
+      responseType: 'blob'
+    });
+
+    this.descargarPDF(response.data, `reporte-${tipo}.pdf`);
+  }
+
   // Método auxiliar para descargar archivos PDF
   private descargarPDF(blob: Blob, filename: string): void {
     const url = window.URL.createObjectURL(blob);